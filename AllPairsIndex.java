@@ -0,0 +1,225 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * This class precomputes the shortest paths between every pair of nodes of a
+ * small ImmutableCsrGraph, so that queries become table lookups instead of
+ * searches. For V nodes it stores three V x V tables, 12 bytes per pair:
+ *   - the cost of the shortest path from each node to each other node, as a
+ *     float (infinity when there is no path),
+ *   - the next hop: the first node after the source on that path, and
+ *   - the order in which a search from each source settles the nodes, which
+ *     lists every node's closest destinations by increasing cost.
+ * That is about 300 KB for the 160 nodes of campus.dot, but grows with the
+ * square of V, so the index is only meant for graphs of a few thousand nodes
+ * at most.
+ *
+ * The tables are filled by one search from every node. The searches are
+ * independent, so they run in parallel on a fork-join pool, and once built
+ * the index is read-only and can be shared between threads.
+ *
+ * @param <NodeType> the data type stored at each graph node
+ */
+public class AllPairsIndex<NodeType> {
+
+  protected final ImmutableCsrGraph<NodeType> graph;
+  protected final int nodeCount;
+  // the row of source s starts at s * nodeCount in every table: costs[row + t]
+  // is the cost from s to t, nextHops[row + t] the node after s on that path
+  // (-1 for s itself and for nodes it can't reach), and orders[row + i] the
+  // i-th node settled by a search from s, starting with s itself
+  protected final float[] costs;
+  protected final int[] nextHops;
+  protected final int[] orders;
+  // the number of nodes reachable from each source, including itself
+  protected final int[] reachableCounts;
+
+  /**
+   * Builds the index of a graph, running the searches on the common
+   * fork-join pool.
+   *
+   * @param graph the graph to index
+   * @throws IllegalArgumentException if the graph is too large to index
+   */
+  public AllPairsIndex(ImmutableCsrGraph<NodeType> graph) {
+    this(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Builds the index of a graph, running the searches on a new fork-join
+   * pool with the provided number of threads.
+   *
+   * @param graph   the graph to index
+   * @param threads the number of threads to search with, at least 1
+   * @throws IllegalArgumentException if threads is less than 1, or if the
+   *                                  graph is too large to index
+   */
+  public AllPairsIndex(ImmutableCsrGraph<NodeType> graph, int threads) {
+    this(graph, newPool(threads), true);
+  }
+
+  private AllPairsIndex(ImmutableCsrGraph<NodeType> graph, ForkJoinPool pool) {
+    this(graph, pool, false);
+  }
+
+  private AllPairsIndex(ImmutableCsrGraph<NodeType> graph, ForkJoinPool pool,
+      boolean shutdown) {
+    this.graph = graph;
+    nodeCount = graph.getNodeCount();
+    if ((long) nodeCount * nodeCount > Integer.MAX_VALUE - 8) {
+      if (shutdown)
+        pool.shutdown();
+      throw new IllegalArgumentException("The graph is too large for an all-pairs index.");
+    }
+    costs = new float[nodeCount * nodeCount];
+    nextHops = new int[nodeCount * nodeCount];
+    orders = new int[nodeCount * nodeCount];
+    reachableCounts = new int[nodeCount];
+    try {
+      // the sources are split into a few blocks per thread, and each block
+      // reuses one search space for all of its searches
+      int blocks = Math.min(nodeCount, pool.getParallelism() * 4);
+      pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(block -> {
+        SearchSpace space = new SearchSpace(nodeCount, graph.heapArity);
+        for (int source = block; source < nodeCount; source += blocks)
+          searchFrom(source, space);
+      })).join();
+    } finally {
+      if (shutdown)
+        pool.shutdown();
+    }
+  }
+
+  // creates the pool for the constructor that takes a number of threads
+  private static ForkJoinPool newPool(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("At least one thread is needed.");
+    return new ForkJoinPool(threads);
+  }
+
+  /**
+   * Runs Dijkstra's algorithm from one source until every reachable node is
+   * settled, and fills in the source's row of every table. Each node's next
+   * hop is known as soon as it is settled, since its parent was settled
+   * before it.
+   *
+   * @param source the id of the node to search from
+   * @param space  the search state to use, sized for the graph
+   */
+  private void searchFrom(int source, SearchSpace space) {
+    int row = source * nodeCount;
+    Arrays.fill(costs, row, row + nodeCount, Float.POSITIVE_INFINITY);
+    Arrays.fill(nextHops, row, row + nodeCount, -1);
+    int settled = 0;
+    space.begin(source);
+    while (!space.frontier.isEmpty()) {
+      int currentId = space.settleNext();
+      double currentCost = space.cost[currentId];
+      costs[row + currentId] = (float) currentCost;
+      orders[row + settled++] = currentId;
+      int parentId = space.parent[currentId];
+      if (parentId >= 0)
+        nextHops[row + currentId] = parentId == source ? currentId : nextHops[row + parentId];
+      for (int edge = graph.offsets[currentId]; edge < graph.offsets[currentId + 1]; edge++)
+        space.relax(graph.targets[edge], currentCost + graph.weights[edge], currentId);
+    }
+    reachableCounts[source] = settled;
+  }
+
+  /**
+   * Returns the graph that this index was built from.
+   *
+   * @return the indexed graph
+   */
+  public ImmutableCsrGraph<NodeType> getGraph() {
+    return graph;
+  }
+
+  /**
+   * Returns the number of bytes taken up by the tables of this index.
+   *
+   * @return the size of the tables in bytes
+   */
+  public long getMemoryBytes() {
+    return 12L * nodeCount * nodeCount + 4L * nodeCount;
+  }
+
+  /**
+   * Returns the cost of the shortest path from the node containing the start
+   * data to the node containing the end data, in O(1). The cost is stored as
+   * a float, so it is only accurate to about 7 significant digits; the total
+   * cost of the path returned by shortestPath is exact.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the cost of the shortest path between these nodes
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  public double shortestPathCost(NodeType start, NodeType end) {
+    float cost = costs[graph.idOf(start) * nodeCount + graph.idOf(end)];
+    if (cost == Float.POSITIVE_INFINITY)
+      throw new NoSuchElementException("No path here exists");
+    return cost;
+  }
+
+  /**
+   * Returns the shortest path from the node containing the start data to the
+   * node containing the end data, by following the next hop towards end from
+   * each node along the way, in time proportional to the length of the path.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the nodes and costs along this shortest path
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+    int startId = graph.idOf(start);
+    int endId = graph.idOf(end);
+    if (costs[startId * nodeCount + endId] == Float.POSITIVE_INFINITY)
+      throw new NoSuchElementException("No path here exists");
+    int[] path = new int[8];
+    int length = 0;
+    path[length++] = startId;
+    for (int id = startId; id != endId; ) {
+      id = nextHops[id * nodeCount + endId];
+      // with edges of weight 0, equally short paths from different nodes can
+      // lead back to a node that was already visited; search instead
+      if (length == nodeCount)
+        return graph.shortestPath(start, end);
+      if (length == path.length)
+        path = Arrays.copyOf(path, length * 2);
+      path[length++] = id;
+    }
+    return graph.pathResult(Arrays.copyOf(path, length));
+  }
+
+  /**
+   * Returns the (up to) k nodes that can be reached most cheaply from the
+   * node containing the start data, not counting the start node itself, in
+   * order of increasing cost.
+   *
+   * @param start the data item in the node to search from
+   * @param k     the largest number of nodes to return
+   * @return the data of those nodes, closest first
+   * @throws NoSuchElementException   if the start node is not in the graph
+   * @throws IllegalArgumentException if k is negative
+   */
+  public List<NodeType> closest(NodeType start, int k) {
+    if (k < 0)
+      throw new IllegalArgumentException("k can't be negative.");
+    int startId = graph.idOf(start);
+    int row = startId * nodeCount;
+    int count = Math.min(k, reachableCounts[startId] - 1);
+    List<NodeType> nearest = new ArrayList<>(count);
+    // the first node settled is always the start itself
+    for (int i = 1; i <= count; i++)
+      nearest.add(graph.nodeData[orders[row + i]]);
+    return nearest;
+  }
+}
@@ -1,8 +1,15 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * This class handles the backend logic for working with a graph of locations.
@@ -10,47 +17,399 @@ import java.util.stream.Collectors;
  */
 public class Backend implements BackendInterface {
 
-    private GraphADT<String, Double> graph;
+    // the edge attributes that can hold an edge's weight, in order of preference
+    private static final String[] WEIGHT_ATTRIBUTES = {"seconds", "label", "weight"};
+
+    // the graph that dot files are loaded into
+    private final GraphADT<String, Double> dotGraph;
+    // the graph that answers queries: dotGraph, or the graph read by loadSnapshot
+    private volatile GraphADT<String, Double> graph;
+
+    // the number of results each cache keeps unless the constructor says otherwise
+    public static final int DEFAULT_CACHE_ENTRIES = 1024;
+
+    // recent results of findShortestPath, keyed by [start, end], and of
+    // getClosestDestinations, keyed by [start, k]; both are dropped whenever
+    // the graph's version changes or another graph is loaded
+    private final LruCache<List<String>, PathResult<String>> pathCache;
+    private final LruCache<List<Object>, List<String>> nearestCache;
+
+    // graphs with at most this many nodes are answered from an AllPairsIndex
+    public static final int DEFAULT_ALL_PAIRS_THRESHOLD = 1000;
+
+    // an all-pairs index along with the graph and the version it was built for,
+    // and the number of nodes it has, so queries never have to ask the graph
+    private static class IndexedGraph {
+        private final AllPairsIndex<String> index;
+        private final GraphADT<String, Double> graph;
+        private final long version;
+        private final int nodeCount;
+
+        private IndexedGraph(AllPairsIndex<String> index, GraphADT<String, Double> graph, long version) {
+            this.index = index;
+            this.graph = graph;
+            this.version = version;
+            this.nodeCount = index.getGraph().getNodeCount();
+        }
+    }
+
+    private volatile int allPairsThreshold = DEFAULT_ALL_PAIRS_THRESHOLD;
+    // the latest index, which is only used while it matches graph and its version;
+    // it is replaced by a background thread after the graph changes
+    private volatile IndexedGraph allPairs = null;
+    // the graph and version of the last index that was requested, and its build;
+    // queries read the first two without locking, to skip a repeated request
+    private volatile GraphADT<String, Double> requestedGraph = null;
+    private volatile long requestedVersion = -1;
+    private Future<?> allPairsBuild = null;
+    private ExecutorService allPairsBuilder = null;
+
+    // the number of times a graph was loaded, which getGraphVersion adds to
+    // the graph's own version so that it also changes when a graph is replaced
+    private volatile long loads = 0;
+
+    // the number of threads that search the start locations of findShortestPaths
+    private int batchThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService batchExecutor = null;
+
+    // the paths found by one search of findShortestPaths, along with the
+    // indexes of their pairs
+    private static class SourceBatch {
+        private final List<Integer> indexes;
+        private final List<PathResult<String>> paths;
+
+        private SourceBatch(List<Integer> indexes, List<PathResult<String>> paths) {
+            this.indexes = indexes;
+            this.paths = paths;
+        }
+    }
 
     // constructor that accepts a graph to work with
     public Backend(GraphADT<String, Double> graph) {
+        this(graph, DEFAULT_CACHE_ENTRIES, 0);
+    }
+
+    /**
+     * Creates a backend that caches the results of recent path and
+     * closest-destination queries.
+     *
+     * @param graph            the graph to work with
+     * @param cacheEntries     the most results each cache keeps, or 0 to
+     *                         disable caching
+     * @param timeToLiveMillis the time after which a cached result expires
+     *                         in milliseconds, or 0 for results that only
+     *                         expire when the graph changes
+     */
+    public Backend(GraphADT<String, Double> graph, int cacheEntries, long timeToLiveMillis) {
+        this.dotGraph = graph;
         this.graph = graph;
+        this.pathCache = new LruCache<>(cacheEntries, timeToLiveMillis);
+        this.nearestCache = new LruCache<>(cacheEntries, timeToLiveMillis);
     }
 
-    @Override
-    public void loadGraphData(String filename) throws IOException {
-        // clear any existing nodes and edges before loading a new file
-        graph.clear();
+    /**
+     * Returns the cache of findShortestPath results, whose counters show how
+     * often queries were answered without a search.
+     *
+     * @return the cache of shortest paths
+     */
+    public LruCache<List<String>, PathResult<String>> getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Returns the cache of getClosestDestinations results.
+     *
+     * @return the cache of closest destinations
+     */
+    public LruCache<List<Object>, List<String>> getNearestCache() {
+        return nearestCache;
+    }
+
+    // drops every cached result, since they may belong to the replaced graph
+    private void clearCaches() {
+        pathCache.clear();
+        nearestCache.clear();
+        loads++;
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
+    /**
+     * Returns a version number for the data this backend answers queries
+     * from. It changes whenever the graph changes, and whenever another
+     * graph is loaded, so results that were computed with the same version
+     * are still up to date. Reading it never searches or locks the graph.
+     *
+     * @return the current version of the graph data
+     */
+    public long getGraphVersion() {
+        long loaded = loads;
+        return versionOf(loaded, graph);
+    }
 
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
+    /**
+     * Combines the number of loads with a graph's own version, like
+     * getGraphVersion. Callers read loads before graph: every load replaces
+     * graph before it counts itself, so a graph is never paired with the
+     * count of an earlier load, whose cached results would then be reused.
+     *
+     * @param loaded the number of loads, read before current
+     * @param current the graph that answers queries
+     * @return the version to key cached results of current by
+     */
+    private static long versionOf(long loaded, GraphADT<String, Double> current) {
+        // the graph's version stays far below 2^40 in practice
+        return (loaded << 40) + current.getVersion();
+    }
 
-                // skip empty lines, comments, or non-edge lines
-                if (line.startsWith("//") || line.isEmpty() || line.contains("digraph") || line.equals("}"))
-                    continue;
+    /**
+     * Sets the largest number of nodes for which queries are answered from an
+     * AllPairsIndex, which turns every path and closest-destination query into
+     * table lookups. The index takes 12 bytes per pair of nodes, so it is only
+     * worth it for small graphs (about 12 MB at the default of 1000 nodes). It
+     * is built right after a graph is loaded, and again in the background after
+     * the graph changes; queries search the graph until the new index is ready.
+     *
+     * @param nodes the most nodes an indexed graph may have, or 0 to never
+     *              build an index
+     * @throws IllegalArgumentException if nodes is negative
+     */
+    public synchronized void setAllPairsThreshold(int nodes) {
+        if (nodes < 0)
+            throw new IllegalArgumentException("The threshold can't be negative.");
+        allPairsThreshold = nodes;
+        // the current graph may now need an index
+        requestedGraph = null;
+    }
 
-                // expected format: A -> B [label="5.0"];
-                if (line.contains("->") && line.contains("label=")) {
-                    String[] parts = line.split("->");
-                    String from = parts[0].trim();
+    /**
+     * Returns the all-pairs index that answers queries about the current graph,
+     * and starts building a new one in the background if the index is missing
+     * or out of date.
+     *
+     * @return the index of the current graph, or null if there is none yet
+     */
+    public AllPairsIndex<String> getAllPairsIndex() {
+        return getAllPairsIndex(graph);
+    }
 
-                    String[] destAndLabel = parts[1].split("\\[label=");
-                    String to = destAndLabel[0].trim();
+    /**
+     * Returns the all-pairs index that answers queries about a graph, like
+     * getAllPairsIndex above. Queries only take a lock when a new index has
+     * to be requested, which happens at most once per version of the graph.
+     *
+     * @param current the graph that answers queries
+     * @return the index of that graph, or null if there is none yet
+     */
+    private AllPairsIndex<String> getAllPairsIndex(GraphADT<String, Double> current) {
+        IndexedGraph indexed = allPairs;
+        long version = current.getVersion();
+        if (indexed != null && indexed.graph == current && indexed.version == version
+                && indexed.nodeCount <= allPairsThreshold)
+            return indexed.index;
+        // graphs above the threshold never get an index, and the index of this
+        // version may already be requested
+        if (nodeCountOf(current) > allPairsThreshold
+                || (current == requestedGraph && version == requestedVersion))
+            return null;
+        requestAllPairsIndex(false);
+        return null;
+    }
 
-                    // extract the number from the label, removing extra characters
-                    String labelStr = destAndLabel[1].replaceAll("[^0-9.]", "");
-                    Double weight = Double.parseDouble(labelStr);
+    /**
+     * Returns the number of nodes in a graph, which is read from its snapshot
+     * when it has one, so that it doesn't lock the graph.
+     *
+     * @param graph the graph to count the nodes of
+     * @return the number of nodes in the graph
+     */
+    private static int nodeCountOf(GraphADT<String, Double> graph) {
+        ImmutableCsrGraph<String> snapshot = snapshotOf(graph);
+        return snapshot != null ? snapshot.getNodeCount() : graph.getNodeCount();
+    }
 
-                    // add the nodes and edge to the graph
-                    graph.insertNode(from);
-                    graph.insertNode(to);
-                    graph.insertEdge(from, to, weight);
-                }
+    /**
+     * Waits until the all-pairs index of the current graph is built, if it is
+     * being built in the background.
+     *
+     * @return the index of the current graph, or null if it gets none
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public AllPairsIndex<String> awaitAllPairsIndex() throws InterruptedException {
+        getAllPairsIndex();
+        Future<?> build;
+        synchronized (this) {
+            build = allPairsBuild;
+        }
+        if (build != null) {
+            try {
+                build.get();
+            } catch (ExecutionException | CancellationException e) {
+                // the graph keeps being searched without an index
             }
         }
+        return getAllPairsIndex();
+    }
+
+    /**
+     * Builds an all-pairs index of the current graph, if it is small enough and
+     * its version has no index built or being built yet. The graph's snapshot
+     * is taken on the calling thread, so only the immutable snapshot is used by
+     * the background thread. A build that was requested earlier and hasn't
+     * started is cancelled, and a build returns right away if the graph changed
+     * again before it started, so a burst of changes only builds one index.
+     *
+     * @param now true to build the index on the calling thread
+     */
+    private synchronized void requestAllPairsIndex(boolean now) {
+        GraphADT<String, Double> current = graph;
+        long version = current.getVersion();
+        if (current == requestedGraph && version == requestedVersion)
+            return;
+        requestedGraph = current;
+        requestedVersion = version;
+        if (current.getNodeCount() == 0 || current.getNodeCount() > allPairsThreshold)
+            return;
+        ImmutableCsrGraph<String> snapshot = snapshotOf(current);
+        if (snapshot == null)
+            return; // other graphs can't be indexed
+        Runnable build = () -> {
+            synchronized (this) {
+                // the graph may have changed again while this build was queued
+                if (current != requestedGraph || version != requestedVersion)
+                    return;
+            }
+            AllPairsIndex<String> index = new AllPairsIndex<>(snapshot);
+            synchronized (this) {
+                // an index that was requested later may already be in place
+                if (current == requestedGraph && version == requestedVersion)
+                    allPairs = new IndexedGraph(index, current, version);
+            }
+        };
+        // the index of an older version is of no use once it is built
+        if (allPairsBuild != null)
+            allPairsBuild.cancel(false);
+        if (now) {
+            allPairsBuild = null;
+            build.run();
+            return;
+        }
+        if (allPairsBuilder == null) {
+            // a single daemon thread builds the indexes in the order they are requested
+            allPairsBuilder = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "all-pairs-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        allPairsBuild = allPairsBuilder.submit(build);
+    }
+
+    /**
+     * Returns the immutable CSR snapshot of a graph: the graph itself if it is
+     * one already, or the snapshot of a DijkstraGraph.
+     *
+     * @param graph the graph to take a snapshot of
+     * @return the snapshot, or null if the graph is of another type
+     */
+    @SuppressWarnings("unchecked")
+    private static ImmutableCsrGraph<String> snapshotOf(GraphADT<String, Double> graph) {
+        if (graph instanceof DijkstraGraph)
+            return ((DijkstraGraph<String, Double>) graph).freeze();
+        if (graph instanceof ImmutableCsrGraph)
+            return (ImmutableCsrGraph<String>) graph;
+        return null;
+    }
+
+    @Override
+    public void loadGraphData(String filename) throws IOException {
+        // clear any existing nodes and edges before loading a new file
+        graph = dotGraph;
+        graph.clear();
+        clearCaches();
+
+        // a single pass over the file reports each node and edge statement, with
+        // names already unquoted and the same String used for every occurrence;
+        // the builder collects them, and drops duplicate edges (the last weight wins)
+        GraphBuilder<String> builder = new GraphBuilder<>();
+        DotParser.parse(Path.of(filename), new DotParser.Handler() {
+            @Override
+            public void node(String name, DotParser.Attributes attributes) {
+                // optional node statements with coordinates: A [lat=43.07, lon=-89.40];
+                if (attributes.contains("lat") && attributes.contains("lon"))
+                    builder.setNodeCoordinates(name, attributes.getDouble("lat"), attributes.getDouble("lon"));
+                else
+                    builder.addNode(name);
+            }
+
+            @Override
+            public void edge(String from, String to, DotParser.Attributes attributes) {
+                // campus.dot stores walking times as seconds=, other files as label= or weight=
+                for (String key : WEIGHT_ATTRIBUTES) {
+                    if (attributes.contains(key)) {
+                        builder.addEdge(from, to, attributes.getDouble(key));
+                        return;
+                    }
+                }
+                // an edge without a weight still adds its nodes
+                builder.addNode(from);
+                builder.addNode(to);
+            }
+        });
+        // then the whole graph is built in one step
+        builder.addTo(graph);
+        requestAllPairsIndex(true);
+    }
+
+    /**
+     * Loads graph data from a large dot file on several threads: the file is
+     * memory-mapped and parsed in chunks of whole lines at the same time, and
+     * the parsed nodes and edges are then added to the graph in one batch. Any
+     * nodes and edges already in the graph are removed first.
+     *
+     * @param filename the path to a dot file to read graph data from
+     * @param threads  the number of threads to parse the file with
+     * @throws IOException if there was any problem reading or parsing the file
+     */
+    public void loadGraphData(String filename, int threads) throws IOException {
+        graph = dotGraph;
+        graph.clear();
+        clearCaches();
+        ParallelDotLoader.load(Path.of(filename), threads, WEIGHT_ATTRIBUTES, graph);
+        requestAllPairsIndex(true);
+    }
+
+    /**
+     * Writes the current graph to a binary snapshot file (see GraphSnapshot),
+     * which loadSnapshot reads back far faster than loadGraphData can parse
+     * the dot file the graph came from.
+     *
+     * @param filename the path of the snapshot file to write
+     * @throws IOException if the file can't be written
+     * @throws UnsupportedOperationException if the graph can't be turned into
+     *                                       a CSR snapshot (it is neither a
+     *                                       DijkstraGraph nor a snapshot)
+     */
+    public void writeSnapshot(String filename) throws IOException {
+        ImmutableCsrGraph<String> csr = snapshotOf(graph);
+        if (csr == null)
+            throw new UnsupportedOperationException("Only a DijkstraGraph can be written to a snapshot.");
+        GraphSnapshot.write(csr, Path.of(filename));
+    }
+
+    /**
+     * Replaces the graph with one read from a snapshot file written by
+     * writeSnapshot. The file is memory-mapped and copied straight into the
+     * arrays of an ImmutableCsrGraph, which then answers every query, until
+     * the next call to loadGraphData loads a dot file into the original graph
+     * again.
+     *
+     * @param filename the path of the snapshot file to read
+     * @throws IOException if the file can't be read, or is not a valid snapshot
+     */
+    public void loadSnapshot(String filename) throws IOException {
+        graph = GraphSnapshot.read(Path.of(filename), DijkstraGraph.DEFAULT_HEAP_ARITY);
+        clearCaches();
+        requestAllPairsIndex(true);
     }
 
     @Override
@@ -63,7 +422,7 @@ public class Backend implements BackendInterface {
     public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
         // try to get the shortest path as a list of node names
         try {
-            return graph.shortestPathData(startLocation, endLocation);
+            return findShortestPath(startLocation, endLocation).getNodes();
         } catch (Exception e) {
             // if something goes wrong or path doesn't exist, return an empty list
             return new ArrayList<>();
@@ -74,29 +433,214 @@ public class Backend implements BackendInterface {
     public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
         // try to get the travel time (weights) between each pair of nodes on the path
         try {
-            return graph.shortestPathCostBetweenSteps(startLocation, endLocation);
+            return findShortestPath(startLocation, endLocation).getLegCosts();
         } catch (Exception e) {
             // if there's an issue or no path, return an empty list
             return new ArrayList<>();
         }
     }
 
+    @Override
+    public PathResult<String> findShortestPath(String startLocation, String endLocation)
+            throws NoSuchElementException {
+        // one search finds both the locations and the times along the path, and
+        // its result is reused until the graph changes (a PathResult is immutable);
+        // the graph is read once, so the version, index and search all belong to
+        // the same graph, even when another one is loaded meanwhile; the version
+        // includes the loads, since a loaded snapshot always has version 0
+        long loaded = loads;
+        GraphADT<String, Double> current = graph;
+        long version = versionOf(loaded, current);
+        List<String> key = Arrays.asList(startLocation, endLocation);
+        PathResult<String> result = pathCache.get(key, version);
+        if (result == null) {
+            AllPairsIndex<String> index = getAllPairsIndex(current);
+            result = index != null ? index.shortestPath(startLocation, endLocation)
+                : current.shortestPath(startLocation, endLocation);
+            pathCache.put(key, result, version);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the number of threads that findShortestPaths searches different
+     * start locations on. Batches that are running keep their threads.
+     *
+     * @param threads the number of threads, at least 1
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public synchronized void setBatchThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed.");
+        batchThreads = threads;
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+            batchExecutor = null;
+        }
+    }
+
+    // returns the pool of findShortestPaths, which is created on first use
+    private synchronized ExecutorService batchExecutor() {
+        if (batchExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            batchExecutor = Executors.newFixedThreadPool(batchThreads, task -> {
+                Thread thread = new Thread(task, "batch-routing-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
+
+    @Override
+    public void findShortestPaths(List<List<String>> pairs,
+            BiConsumer<Integer, PathResult<String>> results) throws InterruptedException {
+        // the indexes of the pairs that start at each location
+        Map<String, List<Integer>> bySource = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i++)
+            bySource.computeIfAbsent(pairs.get(i).get(0), source -> new ArrayList<>()).add(i);
+
+        // every search uses the same index or snapshot, which is taken on this thread
+        GraphADT<String, Double> current = graph;
+        AllPairsIndex<String> index = getAllPairsIndex(current);
+        ImmutableCsrGraph<String> snapshot = index == null ? snapshotOf(current) : null;
+
+        CompletionService<SourceBatch> searches = new ExecutorCompletionService<>(batchExecutor());
+        List<Future<SourceBatch>> futures = new ArrayList<>(bySource.size());
+        for (Map.Entry<String, List<Integer>> entry : bySource.entrySet()) {
+            String source = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            futures.add(searches.submit(() -> {
+                List<String> ends = new ArrayList<>(indexes.size());
+                for (int i : indexes)
+                    ends.add(pairs.get(i).get(1));
+                List<PathResult<String>> paths;
+                if (snapshot != null) {
+                    // one search from the source finds the paths to all of its ends
+                    try {
+                        paths = snapshot.shortestPaths(source, ends);
+                    } catch (NoSuchElementException e) {
+                        paths = Collections.nCopies(ends.size(), null);
+                    }
+                } else {
+                    // an all-pairs index answers each pair without searching, and
+                    // other graphs can only be searched one pair at a time
+                    paths = new ArrayList<>(ends.size());
+                    for (String end : ends) {
+                        try {
+                            paths.add(index != null ? index.shortestPath(source, end)
+                                    : current.shortestPath(source, end));
+                        } catch (NoSuchElementException e) {
+                            paths.add(null);
+                        }
+                    }
+                }
+                return new SourceBatch(indexes, paths);
+            }));
+        }
+
+        // hand over the paths of each source as soon as its search is done
+        boolean done = false;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                SourceBatch batch;
+                try {
+                    batch = searches.take().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+                for (int j = 0; j < batch.indexes.size(); j++)
+                    results.accept(batch.indexes.get(j), batch.paths.get(j));
+            }
+            done = true;
+        } finally {
+            // after an error or an interrupt, the searches that are left are not needed
+            if (!done) {
+                for (Future<SourceBatch> future : futures)
+                    future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Finds the shortest paths between many pairs of locations like the
+     * streaming findShortestPaths, and returns them all at once.
+     *
+     * @param pairs the [startLocation, endLocation] pairs to find paths for
+     * @return the shortest path of each pair in the same order, or null for
+     *         a pair without a path
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              waiting for the searches
+     */
+    public List<PathResult<String>> findShortestPaths(List<List<String>> pairs)
+            throws InterruptedException {
+        List<PathResult<String>> paths = new ArrayList<>(Collections.nCopies(pairs.size(), null));
+        findShortestPaths(pairs, paths::set);
+        return paths;
+    }
+
+    @Override
+    public double[][] findTravelTimeMatrix(List<String> sources, List<String> targets)
+            throws NoSuchElementException {
+        // a snapshot shares the searches of all pairs through buckets, and keeps
+        // the exact costs (which an all-pairs index rounds to floats); other
+        // graphs are searched one pair at a time
+        GraphADT<String, Double> current = graph;
+        ImmutableCsrGraph<String> snapshot = snapshotOf(current);
+        for (List<String> locations : List.of(sources, targets)) {
+            for (String location : locations) {
+                if (snapshot != null ? !snapshot.containsNode(location) : !current.containsNode(location))
+                    throw new NoSuchElementException("There is no location named " + location);
+            }
+        }
+        if (snapshot != null)
+            return snapshot.distanceMatrix(sources, targets);
+        double[][] matrix = new double[sources.size()][targets.size()];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                try {
+                    matrix[i][j] = current.shortestPathCost(sources.get(i), targets.get(j));
+                } catch (NoSuchElementException e) {
+                    matrix[i][j] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return matrix;
+    }
+
     @Override
     public List<String> getTenClosestDestinations(String startLocation) throws NoSuchElementException {
+        return getClosestDestinations(startLocation, 10);
+    }
+
+    @Override
+    public List<String> getClosestDestinations(String startLocation, int k) throws NoSuchElementException {
+        // the graph is read once, and its snapshot (when it has one) answers
+        // both the check and the search without locking the graph
+        long loaded = loads;
+        GraphADT<String, Double> current = graph;
+        long version = versionOf(loaded, current);
+        ImmutableCsrGraph<String> snapshot = snapshotOf(current);
+        GraphADT<String, Double> searched = snapshot != null ? snapshot : current;
+
         // check if the starting location is in the graph
-        if (!graph.containsNode(startLocation)) {
+        if (!searched.containsNode(startLocation)) {
             throw new NoSuchElementException("start location not found");
         }
 
-        // get the shortest path cost to every reachable node
-        Map<String, Double> shortestPaths = graph.shortestPathCostFrom(startLocation);
-
-        // return the 10 closest (fastest to reach) destinations, excluding the start
-        return shortestPaths.entrySet().stream()
-                .filter(e -> !e.getKey().equals(startLocation))
-                .sorted(Map.Entry.comparingByValue())
-                .limit(10)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        // the search stops once the k closest destinations (excluding the start)
+        // are found, and returns them in order of increasing travel time; callers
+        // get a copy, so they can't change the cached list
+        List<Object> key = Arrays.asList(startLocation, k);
+        List<String> closest = nearestCache.get(key, version);
+        if (closest == null) {
+            AllPairsIndex<String> index = getAllPairsIndex(current);
+            closest = List.copyOf(index != null ? index.closest(startLocation, k)
+                : searched.nearestK(startLocation, k).keySet());
+            nearestCache.put(key, closest, version);
+        }
+        return new ArrayList<>(closest);
     }
 }
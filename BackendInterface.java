@@ -1,6 +1,7 @@
 import java.io.IOException;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
 
 /**
  * This is the interface that a backend developer will implement, so that
@@ -52,6 +53,19 @@ public interface BackendInterface {
    */
   public List<Double> findTimesOnShortestPath(String startLocation, String endLocation);
 
+  /**
+   * Finds the shortest path from startLocation to endLocation with a single
+   * search, and returns the locations along it together with the walking
+   * time in seconds of each leg, the cumulative walking time to each
+   * location and the total walking time.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return the locations and walking times along the shortest path
+   * @throws NoSuchElementException if either location does not exist, or if
+   *         there is no path from startLocation to endLocation
+   */
+  public PathResult<String> findShortestPath(String startLocation, String endLocation) throws NoSuchElementException;
+
   /**
    * Returns a list of the ten closest destinations that can be reached most
    * quickly when starting from the specified startLocation.
@@ -62,4 +76,48 @@ public interface BackendInterface {
    */
   public List<String> getTenClosestDestinations(String startLocation) throws NoSuchElementException;
 
+  /**
+   * Returns a list of the k closest destinations that can be reached most
+   * quickly when starting from the specified startLocation, ordered from the
+   * closest to the farthest.
+   * @param startLocation the location to find the closest destinations from
+   * @param k the largest number of destinations to return
+   * @return the k closest destinations from the specified startLocation
+   * @throws NoSuchElementException if startLocation does not exist, or if
+   *         there are no other locations that can be reached from there
+   */
+  public List<String> getClosestDestinations(String startLocation, int k) throws NoSuchElementException;
+
+  /**
+   * Finds the shortest paths between many pairs of locations in one call.
+   * Pairs that share a start location are answered by a single search from
+   * that location, and different start locations are searched in parallel.
+   * Each result is passed to the provided consumer, on the calling thread,
+   * as soon as its search finishes, so the results of one start location
+   * arrive together but in no particular order relative to others. This
+   * method returns once every pair has been passed to the consumer.
+   * @param pairs the [startLocation, endLocation] pairs to find paths for
+   * @param results called with the index of each pair within pairs, and
+   *        the shortest path between its locations, or null if there is no
+   *        such path
+   * @throws InterruptedException if the calling thread is interrupted while
+   *         waiting for the searches
+   */
+  public void findShortestPaths(List<List<String>> pairs,
+      BiConsumer<Integer, PathResult<String>> results) throws InterruptedException;
+
+  /**
+   * Finds the travel time of the shortest path from every source location to
+   * every target location, without the paths themselves. The searches from
+   * all sources and all targets share their work, so this is much faster
+   * than finding the paths of every pair.
+   * @param sources the locations to start from
+   * @param targets the locations to travel to
+   * @return matrix[i][j] is the travel time from sources[i] to targets[j],
+   *         or infinity if there is no path between them
+   * @throws NoSuchElementException if a source or target does not exist
+   */
+  public double[][] findTravelTimeMatrix(List<String> sources, List<String> targets)
+      throws NoSuchElementException;
+
 }
@@ -1,18 +1,30 @@
+import java.util.ArrayList;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
  * directed and weighted edges connecting those nodes.
+ *
+ * The public methods are synchronized on the graph, so one graph can be read
+ * and changed by several threads. Subclasses that answer queries from an
+ * immutable snapshot (such as DijkstraGraph) only take the lock to build a
+ * new snapshot after the graph changed. When the nodes are kept in a map
+ * that is thread-safe (see MapADT.isThreadSafe), containsNode reads it
+ * without taking the lock.
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
   // Each node contains unique data along with two lists of directed edges
   protected class Node {
     public NodeType data;
-    public List<Edge> edgesLeaving = new LinkedList<>();
-    public List<Edge> edgesEntering = new LinkedList<>();
+    public int id; // dense index of this node within nodesById
+    // geographic position in degrees, or NaN when it is not known
+    public double latitude = Double.NaN;
+    public double longitude = Double.NaN;
+    // each edge knows its position in both lists, so it can be removed in O(1)
+    public List<Edge> edgesLeaving = new ArrayList<>(4);
+    public List<Edge> edgesEntering = new ArrayList<>(4);
 
     public Node(NodeType data) {
       this.data = data;
@@ -22,11 +34,16 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
   // Nodes can be retrieved from this map by their unique data
   protected MapADT<NodeType, Node> nodes = null;
 
+  // Nodes can also be retrieved by their id, which is always in [0, nodeCount)
+  protected List<Node> nodesById = new ArrayList<>();
+
   // Each edge contains data/weight, and two nodes that it connects
   protected class Edge {
     public EdgeType data; // the weight or cost of this edge
     public Node predecessor;
     public Node successor;
+    public int leavingIndex; // position within predecessor.edgesLeaving
+    public int enteringIndex; // position within successor.edgesEntering
 
     public Edge(EdgeType data, Node pred, Node succ) {
       this.data = data;
@@ -36,7 +53,14 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
   }
 
   protected int edgeCount = 0;
-  // Edges can be retrieved through the edge lists in either connected node
+  // Edges can be retrieved through the edge lists in either connected node,
+  // or in O(1) from this index by the ids of their nodes (see edgeKey)
+  protected LongHashtableMap<Edge> edgeIndex = new LongHashtableMap<>();
+
+  // Incremented by every change to the nodes or edges of this graph, so that
+  // data derived from the graph can tell whether it is out of date; it is
+  // volatile so that other threads can check it without locking
+  protected volatile long version = 0;
 
   /**
    * Constructor for BaseGraph that provides the map the graph uses.
@@ -56,10 +80,16 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *         or false if this data is already in the graph
    * @throws NullPointerException if data is null
    */
-  public boolean insertNode(NodeType data) {
+  public synchronized boolean insertNode(NodeType data) {
     if (nodes.containsKey(data))
       return false; // throws NPE when data's null
-    nodes.put(data, new Node(data));
+    Node newNode = new Node(data);
+    // the map rejects null data, so the node only gets an id (the next free one
+    // at the end of nodesById) once it is stored there
+    nodes.put(data, newNode);
+    newNode.id = nodesById.size();
+    nodesById.add(newNode);
+    version++;
     return true;
   }
 
@@ -72,17 +102,40 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *         false if that data value is not found in the graph
    * @throws NullPointerException if data is null
    */
-  public boolean removeNode(NodeType data) {
+  public synchronized boolean removeNode(NodeType data) {
     // remove this node from nodes collection
     if (!nodes.containsKey(data))
       return false; // throws NPE when data==null
     Node oldNode = nodes.remove(data);
     // remove all edges entering neighboring nodes from this one
-    for (Edge edge : oldNode.edgesLeaving)
-      edge.successor.edgesEntering.remove(edge);
-    // remove all edges leaving neighboring nodes toward this one
-    for (Edge edge : oldNode.edgesEntering)
-      edge.predecessor.edgesLeaving.remove(edge);
+    for (Edge edge : oldNode.edgesLeaving) {
+      removeEntering(edge);
+      edgeIndex.remove(edgeKey(oldNode.id, edge.successor.id));
+      edgeCount--;
+    }
+    // remove all edges leaving neighboring nodes toward this one (a self loop
+    // was already removed from this list with the leaving edges)
+    for (Edge edge : oldNode.edgesEntering) {
+      removeLeaving(edge);
+      edgeIndex.remove(edgeKey(edge.predecessor.id, oldNode.id));
+      edgeCount--;
+    }
+    // keep ids dense by moving the last node into the removed node's slot
+    Node lastNode = nodesById.remove(nodesById.size() - 1);
+    if (lastNode != oldNode) {
+      // the moved node's edges are indexed by its id, so they get new keys
+      for (Edge edge : lastNode.edgesLeaving)
+        edgeIndex.remove(edgeKey(lastNode.id, edge.successor.id));
+      for (Edge edge : lastNode.edgesEntering)
+        edgeIndex.remove(edgeKey(edge.predecessor.id, lastNode.id));
+      lastNode.id = oldNode.id;
+      nodesById.set(lastNode.id, lastNode);
+      for (Edge edge : lastNode.edgesLeaving)
+        edgeIndex.put(edgeKey(lastNode.id, edge.successor.id), edge);
+      for (Edge edge : lastNode.edgesEntering)
+        edgeIndex.put(edgeKey(edge.predecessor.id, lastNode.id), edge);
+    }
+    version++;
     return true;
   }
 
@@ -94,7 +147,33 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *         false otherwise
    */
   public boolean containsNode(NodeType data) {
-    return nodes.containsKey(data);
+    // some maps can be read while another thread changes them
+    if (nodes.isThreadSafe())
+      return nodes.containsKey(data);
+    synchronized (this) {
+      return nodes.containsKey(data);
+    }
+  }
+
+  /**
+   * Sets the geographic position of a node. When every node has a position,
+   * searches can use it to estimate the remaining distance to their
+   * destination.
+   *
+   * @param data      the data item stored in the node
+   * @param latitude  the latitude of the node in degrees
+   * @param longitude the longitude of the node in degrees
+   * @return true if the node was found and updated, or false if data is not
+   *         found in the graph
+   */
+  public synchronized boolean setNodeCoordinates(NodeType data, double latitude, double longitude) {
+    if (!nodes.containsKey(data))
+      return false;
+    Node node = nodes.get(data);
+    node.latitude = latitude;
+    node.longitude = longitude;
+    version++;
+    return true;
   }
 
   /**
@@ -102,7 +181,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *
    * @return list of all node data
    */
-  public List<NodeType> getAllNodes(){
+  public synchronized List<NodeType> getAllNodes(){
     return nodes.getKeys();
   }
 
@@ -111,7 +190,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *
    * @return the number of nodes in the graph
    */
-  public int getNodeCount() {
+  public synchronized int getNodeCount() {
     return nodes.getSize();
   }
 
@@ -126,27 +205,107 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    * @return true if the edge could be inserted or updated, or
    *         false if the pred or succ data are not found in any graph nodes
    */
-  public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+  public synchronized boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
     // find nodes associated with node data, and return false when not found
+    if (!nodes.containsKey(pred) || !nodes.containsKey(succ))
+      return false;
     Node predNode = nodes.get(pred);
     Node succNode = nodes.get(succ);
-    if (predNode == null || succNode == null)
-      return false;
-    try {
+    long key = edgeKey(predNode.id, succNode.id);
+    Edge existingEdge = edgeIndex.get(key);
+    if (existingEdge != null) {
       // when an edge alread exists within the graph, update its weight
-      Edge existingEdge = getEdgeHelper(pred, succ);
       existingEdge.data = weight;
-    } catch (NoSuchElementException e) {
-      // otherwise create a new edges
-      Edge newEdge = new Edge(weight, predNode, succNode);
-      this.edgeCount++;
-      // and insert it into each of its adjacent nodes' respective lists
-      predNode.edgesLeaving.add(newEdge);
-      succNode.edgesEntering.add(newEdge);
+    } else {
+      // otherwise create a new edge
+      addEdge(key, new Edge(weight, predNode, succNode));
     }
+    version++;
     return true;
   }
 
+  /**
+   * Returns the key of the edge from the node with id predId to the node
+   * with id succId in edgeIndex: both ids packed into one long.
+   *
+   * @param predId the id of the edge's predecessor node
+   * @param succId the id of the edge's successor node
+   * @return the key of that edge
+   */
+  protected static long edgeKey(int predId, int succId) {
+    return (long) predId << 32 | (succId & 0xFFFFFFFFL);
+  }
+
+  // adds a new edge to the lists of both its nodes, and to the index
+  private void addEdge(long key, Edge edge) {
+    edge.leavingIndex = edge.predecessor.edgesLeaving.size();
+    edge.predecessor.edgesLeaving.add(edge);
+    edge.enteringIndex = edge.successor.edgesEntering.size();
+    edge.successor.edgesEntering.add(edge);
+    edgeIndex.put(key, edge);
+    this.edgeCount++;
+  }
+
+  // removes an edge from its predecessor's leaving edges in O(1), by moving
+  // the last edge of that list into its place
+  private void removeLeaving(Edge edge) {
+    List<Edge> edges = edge.predecessor.edgesLeaving;
+    Edge last = edges.remove(edges.size() - 1);
+    if (last != edge) {
+      last.leavingIndex = edge.leavingIndex;
+      edges.set(last.leavingIndex, last);
+    }
+  }
+
+  // removes an edge from its successor's entering edges in the same way
+  private void removeEntering(Edge edge) {
+    List<Edge> edges = edge.successor.edgesEntering;
+    Edge last = edges.remove(edges.size() - 1);
+    if (last != edge) {
+      last.enteringIndex = edge.enteringIndex;
+      edges.set(last.enteringIndex, last);
+    }
+  }
+
+  /**
+   * Fills an empty graph with nodes and the edges between them in one step.
+   * The edges leaving the node with data[i] are given in compressed sparse
+   * row form, at positions offsets[i] to offsets[i+1]-1 of targets (which
+   * holds indexes into data) and weights. Unlike insertNode and insertEdge,
+   * nothing is checked for duplicates, so data must be unique and the edges
+   * must be distinct, as GraphBuilder makes sure they are.
+   *
+   * @param data       the data items of the new nodes
+   * @param latitudes  the latitude of each node in degrees, or NaN
+   * @param longitudes the longitude of each node in degrees, or NaN
+   * @param offsets    the start of each node's edges, with length data.length+1
+   * @param targets    the index of each edge's successor node
+   * @param weights    the weight of each edge
+   * @throws IllegalStateException if the graph is not empty
+   */
+  protected synchronized void insertAll(NodeType[] data, double[] latitudes, double[] longitudes,
+      int[] offsets, int[] targets, EdgeType[] weights) {
+    if (!nodesById.isEmpty())
+      throw new IllegalStateException("Only an empty graph can be filled in one step.");
+    // size the index so that it never has to grow while being filled
+    edgeIndex = new LongHashtableMap<>(Math.max(64, offsets[data.length] * 2));
+    for (int id = 0; id < data.length; id++) {
+      Node newNode = new Node(data[id]);
+      newNode.id = id;
+      newNode.latitude = latitudes[id];
+      newNode.longitude = longitudes[id];
+      nodesById.add(newNode);
+      nodes.put(data[id], newNode);
+    }
+    for (Node predNode : nodesById) {
+      for (int edge = offsets[predNode.id]; edge < offsets[predNode.id + 1]; edge++) {
+        Node succNode = nodesById.get(targets[edge]);
+        addEdge(edgeKey(predNode.id, succNode.id), new Edge(weights[edge], predNode, succNode));
+      }
+    }
+    version++;
+  }
+
   /**
    * Remove an edge from the graph.
    *
@@ -155,20 +314,19 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    * @return true if the edge could be removed, or
    *         false if such an edge is not found in the graph
    */
-  public boolean removeEdge(NodeType pred, NodeType succ) {
-    try {
-      // when an edge exists
-      Edge oldEdge = getEdgeHelper(pred, succ);
-      // remove it from the edge lists of each adjacent node
-      oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-      oldEdge.successor.edgesEntering.remove(oldEdge);
-      // and decrement the edge count before removing
-      this.edgeCount--;
-      return true;
-    } catch (NoSuchElementException e) {
-      // when no such edge exists, return false instead
+  public synchronized boolean removeEdge(NodeType pred, NodeType succ) {
+    Edge oldEdge = findEdge(pred, succ);
+    // when no such edge exists, return false
+    if (oldEdge == null)
       return false;
-    }
+    // remove it from the edge lists of each adjacent node, and from the index
+    removeLeaving(oldEdge);
+    removeEntering(oldEdge);
+    edgeIndex.remove(edgeKey(oldEdge.predecessor.id, oldEdge.successor.id));
+    // and decrement the edge count
+    this.edgeCount--;
+    version++;
+    return true;
   }
 
   /**
@@ -178,13 +336,8 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    * @param succ the data item contained in the target node for the edge
    * @return true if the edge is found in the graph, or false other
    */
-  public boolean containsEdge(NodeType pred, NodeType succ) {
-    try {
-      getEdgeHelper(pred, succ);
-      return true;
-    } catch (NoSuchElementException e) {
-      return false;
-    }
+  public synchronized boolean containsEdge(NodeType pred, NodeType succ) {
+    return findEdge(pred, succ) != null;
   }
 
   /**
@@ -196,20 +349,32 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    * @throws NoSuchElementException if either node or the edge between them
    *                                are not found within this graph
    */
-  public EdgeType getEdge(NodeType pred, NodeType succ) {
+  public synchronized EdgeType getEdge(NodeType pred, NodeType succ) {
     return getEdgeHelper(pred, succ).data;
   }
 
   protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-    Node predNode = nodes.get(pred);
-    // search for edge through the predecessor's list of leaving edges
-    for (Edge edge : predNode.edgesLeaving)
-      // compare succ to the data in each leaving edge's successor
-      if (edge.successor.data.equals(succ))
-        return edge;
+    Edge edge = findEdge(pred, succ);
     // when no such edge can be found, throw NSE
-    throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-        succ.toString());
+    if (edge == null)
+      throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+          succ.toString());
+    return edge;
+  }
+
+  /**
+   * Finds an edge in O(1) through the edge index, without throwing when it
+   * is missing.
+   *
+   * @param pred the data item contained in the source node for the edge
+   * @param succ the data item contained in the target node for the edge
+   * @return the edge between those nodes, or null if either node or the
+   *         edge is not found within this graph
+   */
+  protected Edge findEdge(NodeType pred, NodeType succ) {
+    if (!nodes.containsKey(pred) || !nodes.containsKey(succ))
+      return null;
+    return edgeIndex.get(edgeKey(nodes.get(pred).id, nodes.get(succ).id));
   }
 
   /**
@@ -217,8 +382,29 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
    *
    * @return the number of edges in the graph
    */
-  public int getEdgeCount() {
+  public synchronized int getEdgeCount() {
     return this.edgeCount;
   }
 
+  /**
+   * Returns a number that is incremented by every change to the nodes or
+   * edges of this graph.
+   *
+   * @return the current version of this graph
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Remove every node and edge from the graph.
+   */
+  public synchronized void clear() {
+    nodes.clear();
+    nodesById.clear();
+    edgeIndex.clear();
+    this.edgeCount = 0;
+    version++;
+  }
+
 }
@@ -0,0 +1,327 @@
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This MapADT implementation can be read and changed by any number of threads
+ * at the same time. Keys are spread over a fixed number of segments by their
+ * hash code, and each segment is a small chained hashtable with its own lock
+ * (lock striping), so writers only wait for other writers to the same
+ * segment. Readers never lock at all:
+ *   - entries never change once they are linked into a bin, so a reader
+ *     walking a chain always sees a consistent list, and removing an entry
+ *     copies the entries before it instead of unlinking it in place,
+ *   - the heads of the bins are read and written through an
+ *     AtomicReferenceArray, so a new entry is visible as soon as it is
+ *     linked, and
+ *   - a segment grows by copying its entries into a new, larger table, and
+ *     only then publishing that table through a volatile field. Readers that
+ *     started on the old table finish on it, and it stays valid. Only one
+ *     segment is copied at a time, by the writer that filled it, so no
+ *     single put ever rehashes the whole map.
+ *
+ * getSize, getCapacity and getKeys do not lock either, so while writes are
+ * in progress they reflect some of those writes and not others.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  // a segment grows once it holds more than this many entries per bin
+  protected static final double MAX_LOAD_FACTOR = 0.75;
+  // the number of segments, and so the number of writers that never wait for
+  // each other as long as they use different segments
+  protected static final int SEGMENT_COUNT = 16;
+
+  // one key,value pair in a chain; entries are never changed once created
+  protected static final class Entry<KeyType, ValueType> {
+    protected final int hash;
+    protected final KeyType key;
+    protected final ValueType value;
+    protected final Entry<KeyType, ValueType> next;
+
+    protected Entry(int hash, KeyType key, ValueType value, Entry<KeyType, ValueType> next) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  // one part of the map; writers hold the segment's lock, readers only read
+  // its volatile fields
+  protected static final class Segment<KeyType, ValueType> {
+    protected volatile AtomicReferenceArray<Entry<KeyType, ValueType>> table;
+    protected volatile int count = 0;
+
+    protected Segment(int tableLength) {
+      table = new AtomicReferenceArray<>(tableLength);
+    }
+  }
+
+  protected final Segment<KeyType, ValueType>[] segments;
+  // the length of each segment's table when the map is created or cleared
+  protected final int initialTableLength;
+
+  public ConcurrentHashtableMap() {
+    this(64);
+  }
+
+  // generic arrays can only be created raw
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public ConcurrentHashtableMap(int capacity) {
+    //checks to ensure the capacity held is correct
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than 0.");
+    }
+    //the capacity is split over the segments, rounded up to a power of two each
+    int perSegment = Math.max(2, (capacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+    initialTableLength = Integer.highestOneBit(perSegment - 1) << 1;
+    segments = new Segment[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment<>(initialTableLength);
+    }
+  }
+
+  /**
+   * Computes the hash stored for a key, scrambled as in ProbingHashtableMap
+   * so that keys with consecutive hash codes spread over every segment.
+   *
+   * @param key a non-null key
+   * @return the scrambled hash code of key
+   */
+  protected static int hash(Object key) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the segment that holds a key. The segment is picked by the top
+   * bits of the hash, and the bin within its table by the low bits, so the
+   * two choices don't depend on each other.
+   *
+   * @param hash the hash of a key
+   * @return the segment for that key
+   */
+  protected Segment<KeyType, ValueType> segmentFor(int hash) {
+    return segments[hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT))];
+  }
+
+  /**
+   * Finds the entry of a key without locking.
+   *
+   * @param key a non-null key
+   * @return the entry holding key, or null if it is not in this collection
+   */
+  protected Entry<KeyType, ValueType> findEntry(Object key) {
+    int hash = hash(key);
+    AtomicReferenceArray<Entry<KeyType, ValueType>> table = segmentFor(hash).table;
+    Entry<KeyType, ValueType> entry = table.get(hash & (table.length() - 1));
+    while (entry != null) {
+      if (entry.hash == hash && entry.key.equals(key)) {
+        return entry;
+      }
+      entry = entry.next;
+    }
+    return null;
+  }
+
+  /**
+   * Adds a new key,value pair/mapping to this collection.
+   * @param key the key of the key,value pair
+   * @param value the value that key maps to
+   * @throws IllegalArgumentException if key already maps to a value
+   * @throws NullPointerException if key is null
+   */
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    //checks to make sure the key isn't null or repeated
+    if (key == null) {
+      throw new NullPointerException("The key value can't be null.");
+    }
+    int hash = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    synchronized (segment) {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> table = segment.table;
+      int bin = hash & (table.length() - 1);
+      Entry<KeyType, ValueType> head = table.get(bin);
+      for (Entry<KeyType, ValueType> entry = head; entry != null; entry = entry.next) {
+        if (entry.hash == hash && entry.key.equals(key)) {
+          throw new IllegalArgumentException("The key already exists in the program.");
+        }
+      }
+      //the new entry is linked in front of the chain in one step
+      table.set(bin, new Entry<>(hash, key, value, head));
+      segment.count++;
+      //doubles this segment's table once the load factor is reached
+      if (segment.count > table.length() * MAX_LOAD_FACTOR) {
+        resize(segment);
+      }
+    }
+  }
+
+  /**
+   * Copies a segment's entries into a table of twice the length, and then
+   * publishes the new table. The old table is left as it was, so readers
+   * that are still walking it see every entry. The caller must hold the
+   * segment's lock.
+   *
+   * @param segment the segment to grow
+   */
+  protected void resize(Segment<KeyType, ValueType> segment) {
+    AtomicReferenceArray<Entry<KeyType, ValueType>> oldTable = segment.table;
+    AtomicReferenceArray<Entry<KeyType, ValueType>> newTable =
+        new AtomicReferenceArray<>(oldTable.length() * 2);
+    int mask = newTable.length() - 1;
+    for (int bin = 0; bin < oldTable.length(); bin++) {
+      for (Entry<KeyType, ValueType> entry = oldTable.get(bin); entry != null;
+          entry = entry.next) {
+        int newBin = entry.hash & mask;
+        newTable.set(newBin, new Entry<>(entry.hash, entry.key, entry.value, newTable.get(newBin)));
+      }
+    }
+    segment.table = newTable;
+  }
+
+  /**
+   * Checks whether a key maps to a value in this collection.
+   * @param key the key to check
+   * @return true if the key maps to a value, and false is the
+   *         key doesn't map to a value
+   */
+  @Override
+  public boolean containsKey(KeyType key) {
+    //checks to see if the key is null, and if so returns false
+    if (key == null) {
+      return false;
+    }
+    return findEntry(key) != null;
+  }
+
+  /**
+   * Retrieves the specific value that a key maps to.
+   * @param key the key to look up
+   * @return the value that key maps to
+   * @throws NoSuchElementException when key is not stored in this
+   *         collection
+   */
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    //checks to see if the key is null, and if so returns exception
+    if (key == null) {
+      throw new NoSuchElementException("The key value can't be null.");
+    }
+    Entry<KeyType, ValueType> entry = findEntry(key);
+    if (entry == null) {
+      throw new NoSuchElementException("The key can't be found.");
+    }
+    return entry.value;
+  }
+
+  /**
+   * Remove the mapping for a key from this collection.
+   * @param key the key whose mapping to remove
+   * @return the value that the removed key mapped to
+   * @throws NoSuchElementException when key is not stored in this
+   *         collection
+   */
+  @Override
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    //checks to see if the key is null, and if so returns exception
+    if (key == null) {
+      throw new NoSuchElementException("The key value can't be null.");
+    }
+    int hash = hash(key);
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    synchronized (segment) {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> table = segment.table;
+      int bin = hash & (table.length() - 1);
+      Entry<KeyType, ValueType> head = table.get(bin);
+      Entry<KeyType, ValueType> removed = head;
+      while (removed != null && !(removed.hash == hash && removed.key.equals(key))) {
+        removed = removed.next;
+      }
+      if (removed == null) {
+        throw new NoSuchElementException("The key can't be found.");
+      }
+      //the entries after the removed one are kept, and the ones before it are
+      //copied in front of them, so readers never see a half-changed chain
+      Entry<KeyType, ValueType> chain = removed.next;
+      for (Entry<KeyType, ValueType> entry = head; entry != removed; entry = entry.next) {
+        chain = new Entry<>(entry.hash, entry.key, entry.value, chain);
+      }
+      table.set(bin, chain);
+      segment.count--;
+      return removed.value;
+    }
+  }
+
+  /**
+   * Removes all key,value pairs from this collection.
+   */
+  @Override
+  public void clear() {
+    for (Segment<KeyType, ValueType> segment : segments) {
+      synchronized (segment) {
+        segment.table = new AtomicReferenceArray<>(initialTableLength);
+        segment.count = 0;
+      }
+    }
+  }
+
+  /**
+   * Retrieves the number of keys stored in this collection.
+   * @return the number of keys stored in this collection
+   */
+  @Override
+  public int getSize() {
+    int size = 0;
+    for (Segment<KeyType, ValueType> segment : segments) {
+      size += segment.count;
+    }
+    return size;
+  }
+
+  /**
+   * Retrieves this collection's capacity.
+   * @return the total number of bins in the tables of every segment
+   */
+  @Override
+  public int getCapacity() {
+    int capacity = 0;
+    for (Segment<KeyType, ValueType> segment : segments) {
+      capacity += segment.table.length();
+    }
+    return capacity;
+  }
+
+  /**
+   * Retrieves this collection's keys.
+   *
+   * @return a list of keys in the tables of every segment
+   */
+  @Override
+  public List<KeyType> getKeys() {
+    LinkedList<KeyType> keyList = new LinkedList<>();
+    for (Segment<KeyType, ValueType> segment : segments) {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> table = segment.table;
+      for (int bin = 0; bin < table.length(); bin++) {
+        for (Entry<KeyType, ValueType> entry = table.get(bin); entry != null;
+            entry = entry.next) {
+          keyList.add(entry.key);
+        }
+      }
+    }
+    return keyList;
+  }
+
+  /**
+   * Checks whether this collection can be read while another thread changes
+   * it, which is always the case for this map.
+   * @return true
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+}
@@ -0,0 +1,691 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class answers shortest path queries on a read-only graph using a
+ * Contraction Hierarchy. While it is built, nodes are contracted (removed) one
+ * at a time in order of importance, and a shortcut edge is added between two
+ * neighbors of each contracted node whenever the only shortest path between
+ * them went through that node. Every shortest path then has a version that
+ * only goes up the order of contraction and then down again, so a query only
+ * needs a forward search over upward edges and a backward search over
+ * downward edges, which settle very few nodes even on city-sized graphs.
+ *
+ * Shortcuts remember the node they skip over, and are unpacked into the
+ * original edges before paths are returned. All methods that would change the
+ * graph throw an UnsupportedOperationException, and queries can run on any
+ * number of threads at the same time.
+ */
+public class ContractionHierarchy<NodeType> implements GraphADT<NodeType, Double> {
+
+  // witness searches stop after settling this many nodes; a witness that is
+  // missed only costs an unnecessary shortcut, never a wrong answer
+  protected static final int WITNESS_SETTLE_LIMIT = 500;
+  // the cheaper limit used while only estimating the shortcuts of a node
+  protected static final int PRIORITY_SETTLE_LIMIT = 20;
+
+  // an edge while the hierarchy is being built, which is either an original
+  // edge (middle == -1) or a shortcut that skips over the middle node
+  private static class Arc {
+    final int from;
+    final int to;
+    double weight;
+    int middle;
+
+    Arc(int from, int to, double weight, int middle) {
+      this.from = from;
+      this.to = to;
+      this.weight = weight;
+      this.middle = middle;
+    }
+  }
+
+  /**
+   * The state of the graph while nodes are being contracted. The arc lists
+   * only ever hold arcs between nodes that are not contracted yet: contracting
+   * a node removes its arcs from its neighbors' lists, but not from its own
+   * lists, which are left holding exactly its arcs to higher ranked nodes.
+   */
+  private static class Contractor {
+    final List<Arc>[] leaving;
+    final List<Arc>[] entering;
+    // the number of contracted neighbors of each remaining node
+    final int[] contractedNeighbors;
+    final SearchSpace witness;
+    // targetStamp[id] == stamp marks the targets of the current witness search
+    final int[] targetStamp;
+    int stamp = 0;
+
+    Contractor(ImmutableCsrGraph<?> graph) {
+      int nodeCount = graph.getNodeCount();
+      leaving = newArcLists(nodeCount);
+      entering = newArcLists(nodeCount);
+      for (int from = 0; from < nodeCount; from++) {
+        for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++) {
+          // self loops are never part of a shortest path
+          if (graph.targets[edge] != from)
+            addArc(from, graph.targets[edge], graph.weights[edge], -1);
+        }
+      }
+      contractedNeighbors = new int[nodeCount];
+      witness = new SearchSpace(nodeCount, graph.heapArity);
+      targetStamp = new int[nodeCount];
+    }
+
+    // creates an array of empty arc lists, one for each node (generic arrays
+    // can only be created raw)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static List<Arc>[] newArcLists(int nodeCount) {
+      List<Arc>[] lists = new List[nodeCount];
+      for (int id = 0; id < nodeCount; id++)
+        lists[id] = new ArrayList<>();
+      return lists;
+    }
+
+    /**
+     * Adds an arc, or lowers the weight of the existing arc between the same
+     * nodes, so that there is at most one arc from any node to another.
+     */
+    void addArc(int from, int to, double weight, int middle) {
+      for (Arc arc : leaving[from]) {
+        if (arc.to == to) {
+          if (weight < arc.weight) {
+            arc.weight = weight;
+            arc.middle = middle;
+          }
+          return;
+        }
+      }
+      Arc arc = new Arc(from, to, weight, middle);
+      leaving[from].add(arc);
+      entering[to].add(arc);
+    }
+
+    /**
+     * Computes the contraction priority of a node: its edge difference (the
+     * number of shortcuts contracting it would add, minus the number of edges
+     * it would remove), plus the number of its neighbors that are already
+     * contracted, which spreads contractions evenly across the graph.
+     */
+    int priority(int id) {
+      int removed = leaving[id].size() + entering[id].size();
+      int added = shortcuts(id, PRIORITY_SETTLE_LIMIT, false);
+      return added - removed + contractedNeighbors[id];
+    }
+
+    /**
+     * Contracts a node: adds its shortcuts, then removes it from the lists of
+     * its remaining neighbors.
+     *
+     * @return the number of shortcuts that were added
+     */
+    int contract(int id) {
+      int added = shortcuts(id, WITNESS_SETTLE_LIMIT, true);
+      for (Arc arc : entering[id]) {
+        leaving[arc.from].remove(arc);
+        contractedNeighbors[arc.from]++;
+      }
+      for (Arc arc : leaving[id]) {
+        entering[arc.to].remove(arc);
+        contractedNeighbors[arc.to]++;
+      }
+      return added;
+    }
+
+    /**
+     * Finds (and optionally adds) the shortcuts needed to contract a node:
+     * for every pair of remaining neighbors u -> id -> x, a shortcut u -> x
+     * is needed unless a witness search from u finds a path to x that avoids
+     * id and is no longer than the path through id.
+     *
+     * @return the number of shortcuts that are (or would be) added
+     */
+    int shortcuts(int id, int settleLimit, boolean add) {
+      int shortcuts = 0;
+      for (Arc in : entering[id]) {
+        int from = in.from;
+        // mark the nodes that the witness search has to reach
+        stamp++;
+        int targets = 0;
+        double maxOut = -1.0;
+        for (Arc out : leaving[id]) {
+          if (out.to != from) {
+            targetStamp[out.to] = stamp;
+            targets++;
+            maxOut = Math.max(maxOut, out.weight);
+          }
+        }
+        if (targets == 0)
+          continue;
+        witnessSearch(from, id, in.weight + maxOut, targets, settleLimit);
+        for (Arc out : leaving[id]) {
+          double via = in.weight + out.weight;
+          if (out.to == from || witness.isReached(out.to) && witness.cost[out.to] <= via)
+            continue;
+          shortcuts++;
+          // a shortcut never starts or ends at id, so the lists being
+          // iterated over don't change
+          if (add)
+            addArc(from, out.to, via, id);
+        }
+      }
+      return shortcuts;
+    }
+
+    /**
+     * Runs a Dijkstra search from source over the remaining nodes other than
+     * skipped, until it settles every target, passes the limit cost, or
+     * settles settleLimit nodes.
+     */
+    void witnessSearch(int source, int skipped, double limit, int targets, int settleLimit) {
+      witness.begin(source);
+      while (!witness.frontier.isEmpty() && witness.settledCount < settleLimit) {
+        if (witness.frontier.peekMinKey() > limit)
+          break;
+        int current = witness.settleNext();
+        if (targetStamp[current] == stamp && --targets == 0)
+          break;
+        double cost = witness.cost[current];
+        for (Arc arc : leaving[current])
+          if (arc.to != skipped)
+            witness.relax(arc.to, cost + arc.weight, current);
+      }
+    }
+  }
+
+  // the original graph, which answers all questions other than queries
+  protected final ImmutableCsrGraph<NodeType> graph;
+  // rank[id] is the position of each node in the order of contraction
+  protected final int[] rank;
+  protected final int shortcutCount;
+
+  // edges (including shortcuts) from each node to higher ranked nodes
+  protected final int[] upOffsets;
+  protected final int[] upTargets;
+  protected final double[] upWeights;
+  protected final int[] upMiddles;
+  // edges (including shortcuts) into each node from higher ranked nodes
+  protected final int[] downOffsets;
+  protected final int[] downSources;
+  protected final double[] downWeights;
+  protected final int[] downMiddles;
+
+  // the scratch state of one query: its upward searches from the start and
+  // the end, and the highest ranked node on the path it found, with its cost
+  protected static class Search {
+    protected final SearchSpace forward;
+    protected final SearchSpace backward;
+    protected int meeting;
+    protected double pathCost;
+
+    protected Search(int nodeCount, int heapArity) {
+      forward = new SearchSpace(nodeCount, heapArity);
+      backward = new SearchSpace(nodeCount, heapArity);
+    }
+  }
+
+  // each query takes a search state from this pool, so any number of threads
+  // can query the hierarchy at the same time without locking
+  protected final ScratchPool<Search> searches;
+  // the number of nodes settled by the most recent query of any thread
+  protected volatile int settledCount = 0;
+
+  /**
+   * Builds a contraction hierarchy for the provided graph.
+   *
+   * @param graph the graph to answer queries for
+   */
+  public ContractionHierarchy(ImmutableCsrGraph<NodeType> graph) {
+    this.graph = graph;
+    int nodeCount = graph.getNodeCount();
+    Contractor contractor = new Contractor(graph);
+    List<Arc>[] leaving = contractor.leaving;
+    List<Arc>[] entering = contractor.entering;
+
+    // contract the nodes in order of priority, starting with the least
+    // important ones
+    rank = new int[nodeCount];
+    IndexedDaryHeap queue = new IndexedDaryHeap(graph.heapArity, nodeCount);
+    for (int id = 0; id < nodeCount; id++)
+      queue.insertOrDecrease(id, contractor.priority(id));
+    int shortcuts = 0;
+    int order = 0;
+    while (!queue.isEmpty()) {
+      int id = queue.pollMin();
+      // contracting other nodes may have made this one less urgent
+      double priority = contractor.priority(id);
+      if (!queue.isEmpty() && priority > queue.peekMinKey()) {
+        queue.insertOrDecrease(id, priority);
+        continue;
+      }
+      shortcuts += contractor.contract(id);
+      rank[id] = order++;
+      // the priorities of the neighbors are the ones that changed the most
+      for (Arc arc : leaving[id])
+        queue.insertOrUpdate(arc.to, contractor.priority(arc.to));
+      for (Arc arc : entering[id])
+        queue.insertOrUpdate(arc.from, contractor.priority(arc.from));
+    }
+    shortcutCount = shortcuts;
+
+    // the leaving arcs of each node become its upward edges, and its entering
+    // arcs become its downward edges
+    upOffsets = new int[nodeCount + 1];
+    downOffsets = new int[nodeCount + 1];
+    for (int id = 0; id < nodeCount; id++) {
+      upOffsets[id + 1] = upOffsets[id] + leaving[id].size();
+      downOffsets[id + 1] = downOffsets[id] + entering[id].size();
+    }
+    upTargets = new int[upOffsets[nodeCount]];
+    upWeights = new double[upTargets.length];
+    upMiddles = new int[upTargets.length];
+    downSources = new int[downOffsets[nodeCount]];
+    downWeights = new double[downSources.length];
+    downMiddles = new int[downSources.length];
+    for (int id = 0; id < nodeCount; id++) {
+      int up = upOffsets[id];
+      for (Arc arc : leaving[id]) {
+        upTargets[up] = arc.to;
+        upWeights[up] = arc.weight;
+        upMiddles[up++] = arc.middle;
+      }
+      int down = downOffsets[id];
+      for (Arc arc : entering[id]) {
+        downSources[down] = arc.from;
+        downWeights[down] = arc.weight;
+        downMiddles[down++] = arc.middle;
+      }
+    }
+    searches = new ScratchPool<>(() -> new Search(nodeCount, graph.heapArity));
+  }
+
+  /**
+   * Returns the number of shortcut edges that were added to the graph.
+   *
+   * @return the number of shortcuts in this hierarchy
+   */
+  public int getShortcutCount() {
+    return shortcutCount;
+  }
+
+  /**
+   * Returns the number of nodes settled by the most recent query, counting
+   * both the forward and the backward search. When several threads query
+   * the hierarchy at the same time, it is the count of whichever query ended
+   * last.
+   *
+   * @return the number of nodes settled by the last query
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+
+  // takes a search state out of the pool for one query
+  private Search acquireSearch() {
+    return searches.acquire();
+  }
+
+  // returns a search state to the pool, and records how many nodes it settled
+  private void releaseSearch(Search state) {
+    settledCount = state.forward.settledCount + state.backward.settledCount;
+    searches.release(state);
+  }
+
+  /**
+   * Finds the shortest path from startId to endId, by searching upward from
+   * both ends until neither search can improve on the best meeting node.
+   * Afterwards, state.meeting and state.pathCost describe the path that was
+   * found.
+   *
+   * @param state   the search state to use
+   * @param startId the id of the node to start from
+   * @param endId   the id of the node to find a shortest path to
+   * @throws NoSuchElementException when there is no path from start to end
+   */
+  protected void search(Search state, int startId, int endId) {
+    SearchSpace forward = state.forward;
+    SearchSpace backward = state.backward;
+    forward.begin(startId);
+    backward.begin(endId);
+    double best = startId == endId ? 0.0 : Double.POSITIVE_INFINITY;
+    int meeting = startId == endId ? startId : -1;
+    while (true) {
+      // each search stops once its closest frontier node can't improve best
+      boolean forwardActive = !forward.frontier.isEmpty() && forward.frontier.peekMinKey() < best;
+      boolean backwardActive =
+          !backward.frontier.isEmpty() && backward.frontier.peekMinKey() < best;
+      if (!forwardActive && !backwardActive)
+        break;
+      boolean stepForward = forwardActive && (!backwardActive
+          || forward.frontier.peekMinKey() <= backward.frontier.peekMinKey());
+      SearchSpace space = stepForward ? forward : backward;
+      SearchSpace other = stepForward ? backward : forward;
+      int[] rowOffsets = stepForward ? upOffsets : downOffsets;
+      int[] neighbors = stepForward ? upTargets : downSources;
+      double[] rowWeights = stepForward ? upWeights : downWeights;
+      int[] stallOffsets = stepForward ? downOffsets : upOffsets;
+      int[] stallNeighbors = stepForward ? downSources : upTargets;
+      double[] stallWeights = stepForward ? downWeights : upWeights;
+
+      int current = space.settleNext();
+      double cost = space.cost[current];
+      if (other.isReached(current) && cost + other.cost[current] < best) {
+        best = cost + other.cost[current];
+        meeting = current;
+      }
+      if (!isStalled(space, current, stallOffsets, stallNeighbors, stallWeights))
+        for (int edge = rowOffsets[current]; edge < rowOffsets[current + 1]; edge++)
+          space.relax(neighbors[edge], cost + rowWeights[edge], current);
+    }
+    if (meeting < 0)
+      throw new NoSuchElementException("No path here exists");
+    state.meeting = meeting;
+    state.pathCost = best;
+  }
+
+  /**
+   * Checks whether a settled node can be reached more cheaply by going down
+   * from a higher ranked node that this search already reached (stall on
+   * demand). Such a node is not on any shortest up-then-down path, so there
+   * is no need to relax its edges.
+   *
+   * @param space     the search that settled the node
+   * @param id        the id of the settled node
+   * @param offsets   the edges into id from higher ranked nodes, in the
+   *                  direction of this search
+   * @param neighbors the higher ranked end of each of those edges
+   * @param weights   the weight of each of those edges
+   * @return true if the node can be skipped
+   */
+  private static boolean isStalled(SearchSpace space, int id, int[] offsets, int[] neighbors,
+      double[] weights) {
+    double cost = space.cost[id];
+    for (int edge = offsets[id]; edge < offsets[id + 1]; edge++) {
+      int neighbor = neighbors[edge];
+      if (space.isReached(neighbor) && space.cost[neighbor] + weights[edge] < cost)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the node that an edge of the hierarchy skips over.
+   *
+   * @param from the id of the edge's predecessor
+   * @param to   the id of the edge's successor
+   * @return the middle node of that shortcut, or -1 for an original edge
+   */
+  protected int middleOf(int from, int to) {
+    if (rank[to] > rank[from]) {
+      for (int edge = upOffsets[from]; edge < upOffsets[from + 1]; edge++)
+        if (upTargets[edge] == to)
+          return upMiddles[edge];
+    } else {
+      for (int edge = downOffsets[to]; edge < downOffsets[to + 1]; edge++)
+        if (downSources[edge] == from)
+          return downMiddles[edge];
+    }
+    throw new IllegalStateException("No edge from " + from + " to " + to);
+  }
+
+  /**
+   * Appends the ids of the original nodes along an edge of the hierarchy to
+   * a path, replacing each shortcut with the two edges it stands for until
+   * only original edges are left. The predecessor itself is not appended.
+   */
+  private void unpack(int from, int to, List<Integer> path) {
+    // pairs of node ids that are still to be unpacked, in order
+    int[] stack = new int[16];
+    int size = 0;
+    stack[size++] = from;
+    stack[size++] = to;
+    while (size > 0) {
+      int b = stack[--size];
+      int a = stack[--size];
+      int middle = middleOf(a, b);
+      if (middle < 0) {
+        path.add(b);
+        continue;
+      }
+      if (size + 4 > stack.length)
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      // unpack (a, middle) before (middle, b)
+      stack[size++] = middle;
+      stack[size++] = b;
+      stack[size++] = a;
+      stack[size++] = middle;
+    }
+  }
+
+  /**
+   * Finds the shortest path from the node containing the start data to the
+   * node containing the end data, with every shortcut unpacked into its
+   * original edges.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the nodes and costs along this shortest path
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+    int startId = graph.idOf(start);
+    int endId = graph.idOf(end);
+    List<Integer> path = new ArrayList<>();
+    Search state = acquireSearch();
+    try {
+      search(state, startId, endId);
+      // the upward path from the start to the meeting node, ordered from start
+      LinkedList<Integer> up = new LinkedList<>();
+      for (int id = state.meeting; id >= 0; id = state.forward.parent[id])
+        up.addFirst(id);
+      path.add(up.getFirst());
+      int previous = up.removeFirst();
+      for (int id : up) {
+        unpack(previous, id, path);
+        previous = id;
+      }
+      // then the downward path from the meeting node to the end
+      for (int id = state.backward.parent[state.meeting]; id >= 0;
+          id = state.backward.parent[id]) {
+        unpack(previous, id, path);
+        previous = id;
+      }
+    } finally {
+      releaseSearch(state);
+    }
+    return graph.pathResult(path.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /**
+   * Returns the list of data values from nodes along the shortest path from
+   * the node with the provided start value through the node with the provided
+   * end value, with every shortcut unpacked into its original edges.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return list of data item from node along this shortest path
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+    return shortestPath(start, end).getNodes();
+  }
+
+  /**
+   * Returns the cost of the shortest path from the node containing the start
+   * data to the node containing the end data.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the cost of the shortest path between these nodes
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public double shortestPathCost(NodeType start, NodeType end) {
+    int startId = graph.idOf(start);
+    int endId = graph.idOf(end);
+    Search state = acquireSearch();
+    try {
+      search(state, startId, endId);
+      return state.pathCost;
+    } finally {
+      releaseSearch(state);
+    }
+  }
+
+  /**
+   * Finds the cost of the shortest path from every source to every
+   * destination (the many-to-many algorithm of Knopp et al.). An upward
+   * search over the downward edges into each destination adds every node it
+   * settles to the buckets (see DistanceBuckets), with its cost to that
+   * destination. An upward search from each source then joins every node it
+   * settles with that node's bucket. Since every shortest path goes up to
+   * its highest ranked node and then down, that node is settled by both
+   * searches, so the smallest join of each pair is its cost. The upward
+   * searches are so small that they run until their frontiers are empty.
+   *
+   * @param sources      the data items in the nodes to find paths from
+   * @param destinations the data items in the nodes to find paths to
+   * @return matrix[i][j] is the cost of the shortest path from sources[i] to
+   *         destinations[j], or infinity if there is no such path
+   * @throws NoSuchElementException if a source or destination is not in the
+   *                                graph
+   */
+  public double[][] distanceMatrix(List<NodeType> sources, List<NodeType> destinations) {
+    int[] sourceIds = new int[sources.size()];
+    for (int i = 0; i < sourceIds.length; i++)
+      sourceIds[i] = graph.idOf(sources.get(i));
+    int[] destinationIds = new int[destinations.size()];
+    for (int j = 0; j < destinationIds.length; j++)
+      destinationIds[j] = graph.idOf(destinations.get(j));
+    double[][] matrix = new double[sourceIds.length][destinationIds.length];
+    if (sourceIds.length == 0 || destinationIds.length == 0)
+      return matrix;
+
+    DistanceBuckets buckets = new DistanceBuckets(destinationIds.length * 64);
+    Search state = acquireSearch();
+    try {
+      SearchSpace backward = state.backward;
+      for (int j = 0; j < destinationIds.length; j++) {
+        backward.begin(destinationIds[j]);
+        while (!backward.frontier.isEmpty()) {
+          int current = backward.settleNext();
+          double cost = backward.cost[current];
+          // a stalled node isn't on any shortest path, so it needs no entry
+          if (isStalled(backward, current, upOffsets, upTargets, upWeights))
+            continue;
+          buckets.add(current, j, cost);
+          for (int edge = downOffsets[current]; edge < downOffsets[current + 1]; edge++)
+            backward.relax(downSources[edge], cost + downWeights[edge], current);
+        }
+      }
+      buckets.groupByNode(rank.length);
+
+      SearchSpace forward = state.forward;
+      for (int i = 0; i < sourceIds.length; i++) {
+        double[] row = matrix[i];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        forward.begin(sourceIds[i]);
+        while (!forward.frontier.isEmpty()) {
+          int current = forward.settleNext();
+          double cost = forward.cost[current];
+          if (isStalled(forward, current, downOffsets, downSources, downWeights))
+            continue;
+          for (int entry = buckets.offsets[current]; entry < buckets.offsets[current + 1];
+              entry++) {
+            int column = buckets.targets[entry];
+            row[column] = Math.min(row[column], cost + buckets.costs[entry]);
+          }
+          for (int edge = upOffsets[current]; edge < upOffsets[current + 1]; edge++)
+            forward.relax(upTargets[edge], cost + upWeights[edge], current);
+        }
+      }
+    } finally {
+      releaseSearch(state);
+    }
+    return matrix;
+  }
+
+  /**
+   * Returns the (up to) k nodes that can be reached most cheaply from the
+   * node containing the start data. Upward searches can't answer this, so it
+   * runs a bounded Dijkstra search over the original graph.
+   *
+   * @param start the data item in the node to search from
+   * @param k     the largest number of nodes to return
+   * @return a map from the data of each of those nodes to the cost of the
+   *         shortest path to it, iterating in order of increasing cost
+   */
+  @Override
+  public Map<NodeType, Double> nearestK(NodeType start, int k) {
+    return graph.nearestK(start, k);
+  }
+
+  @Override
+  public boolean containsNode(NodeType data) {
+    return graph.containsNode(data);
+  }
+
+  @Override
+  public List<NodeType> getAllNodes() {
+    return graph.getAllNodes();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return graph.getNodeCount();
+  }
+
+  @Override
+  public boolean containsEdge(NodeType pred, NodeType succ) {
+    return graph.containsEdge(pred, succ);
+  }
+
+  @Override
+  public Double getEdge(NodeType pred, NodeType succ) {
+    return graph.getEdge(pred, succ);
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return graph.getEdgeCount();
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public long getVersion() {
+    return 0; // this graph never changes
+  }
+}
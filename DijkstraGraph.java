@@ -1,9 +1,14 @@
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 
 /**
@@ -11,107 +16,344 @@ import java.util.NoSuchElementException;
  * computing the total cost and list of node data along the shortest path
  * connecting a provided starting to ending nodes. This class makes use of
  * Dijkstra's shortest path algorithm.
+ *
+ * Searches do not walk the linked edge lists of this graph. Instead, they run
+ * over a compressed sparse row snapshot (see freeze()) which is built on the
+ * first query after the graph changes, and then reused until the next change.
+ *
+ * One graph can serve queries from many threads at once. Changes to the graph
+ * are synchronized (see BaseGraph), and the snapshot is copied on write: the
+ * first query after a change builds a new snapshot while holding the lock and
+ * publishes it, and every other query runs without any lock against the
+ * published snapshot, which never changes. Each query takes its own search
+ * arrays from a pool in the snapshot, so queries never share any state.
  */
 public class DijkstraGraph<NodeType, EdgeType extends Number>
     extends BaseGraph<NodeType, EdgeType>
     implements GraphADT<NodeType, EdgeType> {
 
   /**
-   * While searching for the shortest path between two nodes, a SearchNode
-   * contains data about one specific path between the start node and another
-   * node in the graph. The final node in this path is stored in its node
-   * field. The total cost of this path is stored in its cost field. And the
-   * predecessor SearchNode within this path is referened by the predecessor
-   * field (this field is null within the SearchNode containing the starting
-   * node in its node field).
+   * The MapADT implementations that a DijkstraGraph can use to look up its
+   * nodes (and the node ids within its snapshots) by their data.
+   */
+  public enum MapType {
+    CHAINED, // HashtableMap, an array of linked lists of key,value pairs
+    OPEN_ADDRESSING, // ProbingHashtableMap, linear probing over parallel arrays
+    CONCURRENT; // ConcurrentHashtableMap, lock-striped segments with lock-free reads
+
+    /**
+     * Creates an empty map of this type.
+     *
+     * @param capacity the initial capacity of the map
+     * @return a new, empty map
+     */
+    <KeyType, ValueType> MapADT<KeyType, ValueType> createMap(int capacity) {
+      if (this == OPEN_ADDRESSING)
+        return new ProbingHashtableMap<>(capacity);
+      if (this == CONCURRENT)
+        return new ConcurrentHashtableMap<>(capacity);
+      return new HashtableMap<>(capacity);
+    }
+  }
+
+  // the number of children per node in the frontier heap, unless specified
+  public static final int DEFAULT_HEAP_ARITY = 4;
+
+  // the arity of the heap used by searches within snapshots of this graph
+  protected int heapArity = DEFAULT_HEAP_ARITY;
+  // the type of map used by this graph and its snapshots
+  protected MapType mapType = MapType.CHAINED;
+  // the algorithm used by point-to-point queries
+  protected volatile SearchStrategy strategy = SearchStrategy.DIJKSTRA;
+  // the number of landmarks selected for each snapshot, or 0 for none
+  protected int landmarkCount = 0;
+
+  // the most recent snapshot of this graph, which is up to date while
+  // snapshotVersion == version; both are only written while holding the lock
+  protected volatile ImmutableCsrGraph<NodeType> snapshot = null;
+  protected volatile long snapshotVersion = -1;
+
+  // the shortest path trees of recent sources by source id, least recently
+  // used first, all from treeSnapshot; the fields below are guarded by trees
+  protected final LinkedHashMap<Integer, ShortestPathTree<NodeType>> trees =
+      new LinkedHashMap<>(16, 0.75f, true);
+  protected ImmutableCsrGraph<NodeType> treeSnapshot = null;
+  // the most bytes the trees may take up (0 disables them), and their size
+  protected volatile long treeBudget = 0;
+  protected long treeBytes = 0;
+  protected long treeHits = 0;
+  protected long treeMisses = 0;
+
+  /**
+   * Constructor that sets the map that the graph uses. This is the only
+   * constructor, since JUnit needs exactly one to run the tests below; use
+   * withArity or withMap for the other configurations.
+   */
+  public DijkstraGraph() {
+    super(MapType.CHAINED.createMap(64));
+  }
+
+  /**
+   * Creates an empty graph with the given arity for the heap that is used as
+   * the frontier of each search.
    *
-   * SearchNodes are Comparable and are sorted by cost so that the lowest cost
-   * SearchNode has the highest priority within a java.util.PriorityQueue.
+   * @param heapArity the number of children per heap node, at least 2
+   * @return the new graph
+   * @throws IllegalArgumentException if heapArity is less than 2
    */
-  protected class SearchNode implements Comparable<SearchNode> {
-    public Node node;
-    public double cost;
-    public SearchNode predecessor;
-
-    public SearchNode(Node node, double cost, SearchNode predecessor) {
-      this.node = node;
-      this.cost = cost;
-      this.predecessor = predecessor;
+  public static <N, E extends Number> DijkstraGraph<N, E> withArity(int heapArity) {
+    return withMap(MapType.CHAINED, heapArity);
+  }
+
+  /**
+   * Creates an empty graph with the given type of map, along with the arity
+   * of the heap that is used as the frontier of each search.
+   *
+   * @param mapType   the kind of map used to look up nodes by their data
+   * @param heapArity the number of children per heap node, at least 2
+   * @return the new graph
+   * @throws IllegalArgumentException if heapArity is less than 2
+   */
+  public static <N, E extends Number> DijkstraGraph<N, E> withMap(MapType mapType,
+      int heapArity) {
+    if (heapArity < 2)
+      throw new IllegalArgumentException("Heap arity must be at least 2.");
+    DijkstraGraph<N, E> graph = new DijkstraGraph<>();
+    graph.nodes = mapType.createMap(64);
+    graph.heapArity = heapArity;
+    graph.mapType = mapType;
+    return graph;
+  }
+
+  /**
+   * Sets the algorithm used by shortestPathData and shortestPathCost. Every
+   * strategy returns a shortest path, but bidirectional and A* search
+   * usually settle far fewer nodes on large graphs. A* search needs the
+   * coordinates of every node (see setNodeCoordinates), and ALT search needs
+   * landmarks (see preprocessLandmarks).
+   *
+   * @param strategy the search strategy to use for later queries
+   */
+  public synchronized void setSearchStrategy(SearchStrategy strategy) {
+    this.strategy = strategy;
+    if (snapshot != null)
+      snapshot.setSearchStrategy(strategy);
+  }
+
+  /**
+   * Returns the algorithm used by shortestPathData and shortestPathCost.
+   *
+   * @return the current search strategy
+   */
+  public SearchStrategy getSearchStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Selects landmark nodes and precomputes the cost of the shortest paths to
+   * and from each of them, which lets ALT searches (see SearchStrategy.ALT)
+   * settle far fewer nodes without needing node coordinates. The tables use
+   * 16 bytes per node and landmark. They are computed right away for the
+   * current graph, and again on the first query after each change.
+   *
+   * @param count the number of landmarks to select, at least 1
+   * @throws IllegalArgumentException if count is less than 1
+   */
+  public synchronized void preprocessLandmarks(int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("At least one landmark is needed.");
+    landmarkCount = count;
+    ImmutableCsrGraph<NodeType> current = freeze();
+    current.setLandmarks(new LandmarkIndex(current, count));
+  }
+
+  /**
+   * Returns a read-only snapshot of the current nodes and edges of this
+   * graph, stored in compressed sparse row form with node ids that match the
+   * ids of this graph's nodes. The snapshot is cached, so calling this again
+   * before the graph changes returns the same object in O(1), without
+   * locking.
+   *
+   * @return an immutable snapshot of this graph
+   */
+  public ImmutableCsrGraph<NodeType> freeze() {
+    // snapshotVersion is read before snapshot, and written after it, so the
+    // snapshot read here is at least as new as that version
+    long current = snapshotVersion;
+    ImmutableCsrGraph<NodeType> published = snapshot;
+    if (published != null && current == version)
+      return published;
+    return rebuildSnapshot();
+  }
+
+  /**
+   * Builds and publishes a snapshot of the current nodes and edges, unless
+   * another thread did so while this one was waiting for the lock.
+   *
+   * @return an up to date snapshot of this graph
+   */
+  @SuppressWarnings("unchecked")
+  protected synchronized ImmutableCsrGraph<NodeType> rebuildSnapshot() {
+    if (snapshot != null && snapshotVersion == version)
+      return snapshot;
+    int nodeCount = nodesById.size();
+    NodeType[] nodeData = (NodeType[]) new Object[nodeCount];
+    int[] offsets = new int[nodeCount + 1];
+    int[] targets = new int[edgeCount];
+    double[] weights = new double[edgeCount];
+    // coordinates are only used when every node has them
+    double[] latitudes = new double[nodeCount];
+    double[] longitudes = new double[nodeCount];
+    boolean allCoordinates = true;
+    int edge = 0;
+    for (Node node : nodesById) {
+      nodeData[node.id] = node.data;
+      latitudes[node.id] = node.latitude;
+      longitudes[node.id] = node.longitude;
+      allCoordinates &= !Double.isNaN(node.latitude) && !Double.isNaN(node.longitude);
+      offsets[node.id] = edge;
+      for (Edge leaving : node.edgesLeaving) {
+        targets[edge] = leaving.successor.id;
+        weights[edge] = leaving.data.doubleValue();
+        edge++;
+      }
     }
+    offsets[nodeCount] = edge;
+    ImmutableCsrGraph<NodeType> built = new ImmutableCsrGraph<>(nodeData, offsets, targets,
+        weights, heapArity, mapType.createMap(Math.max(16, nodeCount * 2)),
+        allCoordinates ? latitudes : null, allCoordinates ? longitudes : null);
+    built.setSearchStrategy(strategy);
+    if (landmarkCount > 0)
+      built.setLandmarks(new LandmarkIndex(built, landmarkCount));
+    // the snapshot is only published once it is complete
+    snapshot = built;
+    snapshotVersion = version;
+    return built;
+  }
+
+  /**
+   * Builds a contraction hierarchy over the current snapshot of this graph,
+   * which answers shortest path queries much faster than searching the graph
+   * itself, after a preprocessing step that takes far longer than one query.
+   * The hierarchy does not change along with this graph, so it has to be
+   * built again after the graph changes.
+   *
+   * @return a contraction hierarchy for the current nodes and edges
+   */
+  public ContractionHierarchy<NodeType> buildContractionHierarchy() {
+    return new ContractionHierarchy<>(freeze());
+  }
 
-    public int compareTo(SearchNode other) {
-      if (cost > other.cost)
-        return +1;
-      if (cost < other.cost)
-        return -1;
-      return 0;
+  /**
+   * Sets the memory budget for caching the shortest path trees of recent
+   * sources. With a budget, the first query from a source settles every
+   * node reachable from it (which is slower than a query that stops at its
+   * destination), and keeps the tree. Later queries from the same source
+   * then walk the tree instead of searching, until the graph changes. The
+   * least recently used trees are dropped to stay within the budget, and
+   * each tree takes about 12 bytes per node (see
+   * ShortestPathTree.estimateBytes).
+   *
+   * @param bytes the most bytes the cached trees may take up, or 0 to cache
+   *              none
+   * @throws IllegalArgumentException if bytes is negative
+   */
+  public void setTreeCacheBudget(long bytes) {
+    if (bytes < 0)
+      throw new IllegalArgumentException("The budget can't be negative.");
+    synchronized (trees) {
+      treeBudget = bytes;
+      evictTrees();
     }
   }
 
   /**
-   * Constructor that sets the map that the graph uses.
+   * Returns the number of shortest path trees that are currently cached.
+   *
+   * @return the number of cached trees
    */
-  public DijkstraGraph() {
-    super(new HashtableMap<>());
+  public int getCachedTreeCount() {
+    synchronized (trees) {
+      return trees.size();
+    }
   }
 
   /**
-   * This helper method creates a network of SearchNodes while computing the
-   * shortest path between the provided start and end locations. The
-   * SearchNode that is returned by this method is represents the end of the
-   * shortest path that is found: it's cost is the cost of that shortest path,
-   * and the nodes linked together through predecessor references represent
-   * all of the nodes along that shortest path (ordered from end to start).
+   * Returns the number of queries answered by a cached shortest path tree.
    *
-   * @param start the data item in the starting node for the path
-   * @param end   the data item in the destination node for the path
-   * @return SearchNode for the final end node within the shortest path
-   * @throws NoSuchElementException when no path from start to end is found
-   *                                or when either start or end data do not
-   *                                correspond to a graph node
+   * @return the number of tree cache hits
    */
-  protected SearchNode computeShortestPath(NodeType start, NodeType end) {
-    //check to see if the graph has both the starting node and the end node
-    if (!nodes.containsKey(start) || !nodes.containsKey(end)) {
-      throw new NoSuchElementException("The nodes don't exist in the graph.");
+  public long getTreeCacheHits() {
+    synchronized (trees) {
+      return treeHits;
     }
-    //make a priority queue and list
-    PriorityQueue<SearchNode> priorityQueue = new PriorityQueue<>();
-    List<Node> visitedNodes = new LinkedList<>();
-
-    //get the start node and end node values and set them
-    Node starterNode = nodes.get(start);
-    Node finalNode = nodes.get(end);
-
-    //add a new node to the priority queue
-    priorityQueue.add(new SearchNode(starterNode, 0.0, null));
-
-    //while the priority queue isn't empty, check the nodes
-    while (!priorityQueue.isEmpty()) {
-      //sets the head of the queue to current
-      SearchNode current = priorityQueue.poll();
-      //when the current node is equal to the final node, it's returned
-      if (current.node == finalNode) {
-        return current;
+  }
+
+  /**
+   * Returns the number of queries that had to build a new shortest path
+   * tree.
+   *
+   * @return the number of tree cache misses
+   */
+  public long getTreeCacheMisses() {
+    synchronized (trees) {
+      return treeMisses;
+    }
+  }
+
+  /**
+   * Returns the shortest path tree of a source node, building and caching it
+   * if needed. The tree is built without holding the cache's lock, so other
+   * threads keep querying meanwhile.
+   *
+   * @param start the data item in the source node
+   * @return the tree of start, or null when trees are not cached (or one
+   *         tree doesn't fit in the budget)
+   * @throws NoSuchElementException if start is not in the graph
+   */
+  protected ShortestPathTree<NodeType> treeOf(NodeType start) {
+    if (treeBudget == 0)
+      return null;
+    ImmutableCsrGraph<NodeType> current = freeze();
+    if (treeBudget < ShortestPathTree.estimateBytes(current.getNodeCount()))
+      return null;
+    int startId = current.idOf(start);
+    synchronized (trees) {
+      if (treeSnapshot != current) {
+        // every tree belongs to an older version of the graph
+        trees.clear();
+        treeBytes = 0;
+        treeSnapshot = current;
       }
-      //if the visited nodes have the current node, then the loop of searching should continue
-      if (visitedNodes.contains(current.node)) {
-        continue;
+      ShortestPathTree<NodeType> tree = trees.get(startId);
+      if (tree != null) {
+        treeHits++;
+        return tree;
       }
-      //now it's visited, it's added to the visited list
-      visitedNodes.add(current.node);
-      //go throughout the edge and update the costs
-      for (Edge edges : current.node.edgesLeaving) {
-        Node nextNode = edges.successor;
-        double newCost = current.cost + edges.data.doubleValue();
-        //if the visited nodes list doesn't have the next node, add to priority queue
-        if (!visitedNodes.contains(nextNode)) {
-          priorityQueue.add(new SearchNode(nextNode, newCost, current));
-        }
+      treeMisses++;
+    }
+    ShortestPathTree<NodeType> tree = current.shortestPathTree(start);
+    synchronized (trees) {
+      // the graph may have changed while the tree was built
+      if (treeSnapshot == current) {
+        ShortestPathTree<NodeType> previous = trees.put(startId, tree);
+        if (previous != null)
+          treeBytes -= previous.getMemoryBytes(); // another thread built it too
+        treeBytes += tree.getMemoryBytes();
+        evictTrees();
       }
     }
-    //if there's no potential path, returns error
-    throw new NoSuchElementException("No path here exists");
+    return tree;
+  }
+
+  // drops the least recently used trees until the rest fit in the budget; the
+  // caller holds the lock of trees
+  private void evictTrees() {
+    Iterator<ShortestPathTree<NodeType>> leastRecent = trees.values().iterator();
+    while (treeBytes > treeBudget && leastRecent.hasNext()) {
+      treeBytes -= leastRecent.next().getMemoryBytes();
+      leastRecent.remove();
+    }
   }
 
   /**
@@ -127,16 +369,25 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
    * @return list of data item from node along this shortest path
    */
   public List<NodeType> shortestPathData(NodeType start, NodeType end) {
-    // implement in step 5.4
-    LinkedList<NodeType> path = new LinkedList<>();
-    //finds the shortest path using computerShortestPath
-    SearchNode finalNode = computeShortestPath(start, end);
-    //using this data, it goes through the path of the nodes and adds them to the linked list
-    for (SearchNode node = finalNode; node != null; node = node.predecessor) {
-      path.addFirst(node.node.data);
-    }
-    //returns list of nodes in shortest path
-    return path;
+    return shortestPath(start, end).getNodes();
+  }
+
+  /**
+   * Finds the shortest path from the node containing the start data to the
+   * node containing the end data, and returns its nodes along with the cost
+   * of each edge, the cumulative cost to each node and the total cost, all
+   * from a single search.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the nodes and costs along this shortest path
+   */
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+    //walk the cached tree of start, or else search the current snapshot
+    ShortestPathTree<NodeType> tree = treeOf(start);
+    if (tree != null)
+      return tree.pathTo(end);
+    return freeze().shortestPath(start, end);
   }
 
   /**
@@ -150,9 +401,44 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
    * @return the cost of the shortest path between these nodes
    */
   public double shortestPathCost(NodeType start, NodeType end) {
-    //use the method computeShortestPath and use the inbuilt cost function
-    double cost = computeShortestPath(start, end).cost;
-    return cost;
+    //look up the cost in the cached tree of start, or else search the current snapshot
+    ShortestPathTree<NodeType> tree = treeOf(start);
+    if (tree != null)
+      return tree.costTo(end);
+    return freeze().shortestPathCost(start, end);
+  }
+
+  /**
+   * Returns the (up to) k nodes that can be reached most cheaply from the
+   * node containing the start data, not counting the start node itself. The
+   * search stops as soon as those k nodes are settled.
+   *
+   * @param start the data item in the node to search from
+   * @param k     the largest number of nodes to return
+   * @return a map from the data of each of those nodes to the cost of the
+   *         shortest path to it, iterating in order of increasing cost
+   */
+  public Map<NodeType, Double> nearestK(NodeType start, int k) {
+    //search the current snapshot of this graph
+    return freeze().nearestK(start, k);
+  }
+
+  /**
+   * Finds the cost of the shortest path from every source to every
+   * destination at once, with backward searches from the destinations that
+   * are joined with forward searches from the sources through buckets (see
+   * ImmutableCsrGraph.distanceMatrix), instead of one search per pair.
+   *
+   * @param sources      the data items in the nodes to find paths from
+   * @param destinations the data items in the nodes to find paths to
+   * @return matrix[i][j] is the cost of the shortest path from sources[i] to
+   *         destinations[j], or infinity if there is no such path
+   * @throws NoSuchElementException if a source or destination is not in the
+   *                                graph
+   */
+  public double[][] distanceMatrix(List<NodeType> sources, List<NodeType> destinations) {
+    //search the current snapshot of this graph
+    return freeze().distanceMatrix(sources, destinations);
   }
 
   // TODO: implement 3+ tests in step 4.1
@@ -210,6 +496,11 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
     double cost = graph.shortestPathCost("D", "I");
     assertEquals(13.0, cost, "Shortest path cost from D to I should be 13");
 
+    //null data is rejected without leaving a node behind, so later queries still work
+    assertThrows(NullPointerException.class, () -> graph.insertNode(null));
+    assertTrue(graph.insertNode("Z"));
+    assertEquals(11, graph.getNodeCount());
+    assertEquals(List.of("D", "G", "H", "I"), graph.shortestPathData("D", "I"));
   }
 
   @Test
@@ -368,5 +659,645 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
     assertEquals(20.0, cost, "Shortest path cost from F to I should be 20");
   }
 
-}
+  @Test
+  public void testFive() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertNode("D");
+    graph.insertEdge("A", "B", 1.0);
+    graph.insertEdge("B", "D", 1.0);
+    graph.insertEdge("A", "C", 5.0);
+    graph.insertEdge("C", "D", 5.0);
+    assertEquals(List.of("A", "B", "D"), graph.shortestPathData("A", "D"));
+
+    //removing B moves D into B's old id, so searches must still work afterwards
+    graph.removeNode("B");
+    assertEquals(List.of("A", "C", "D"), graph.shortestPathData("A", "D"));
+    assertEquals(10.0, graph.shortestPathCost("A", "D"));
+
+    //nodes inserted after a removal take the next dense id
+    graph.insertNode("E");
+    graph.insertEdge("A", "E", 1.0);
+    graph.insertEdge("E", "D", 1.0);
+    assertEquals(List.of("A", "E", "D"), graph.shortestPathData("A", "D"));
+  }
 
+  @Test
+  public void testSix() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 2.0);
+    graph.insertEdge("B", "C", 3.0);
+
+    //the snapshot has the same nodes and edges, and is reused until a change
+    ImmutableCsrGraph<String> frozen = graph.freeze();
+    assertEquals(3, frozen.getNodeCount());
+    assertEquals(2, frozen.getEdgeCount());
+    assertTrue(frozen.containsEdge("A", "B"));
+    assertFalse(frozen.containsEdge("B", "A"));
+    assertEquals(3.0, frozen.getEdge("B", "C"));
+    assertEquals(5.0, frozen.shortestPathCost("A", "C"));
+    assertSame(frozen, graph.freeze());
+    assertThrows(UnsupportedOperationException.class, () -> frozen.insertNode("D"));
+
+    //changing the graph leaves the old snapshot alone and builds a new one
+    graph.insertEdge("A", "C", 1.0);
+    assertEquals(List.of("A", "C"), graph.shortestPathData("A", "C"));
+    assertNotSame(frozen, graph.freeze());
+    assertEquals(5.0, frozen.shortestPathCost("A", "C"));
+  }
+
+  @Test
+  public void testSeven() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    //insert the nodes and edges like the class example
+    for (String node : List.of("A", "B", "M", "I", "E", "D", "F", "G", "H", "L"))
+      graph.insertNode(node);
+    graph.insertEdge("A", "B", 1.0);
+    graph.insertEdge("A", "M", 5.0);
+    graph.insertEdge("A", "H", 7.0);
+    graph.insertEdge("B", "M", 3.0);
+    graph.insertEdge("M", "I", 4.0);
+    graph.insertEdge("M", "E", 3.0);
+    graph.insertEdge("M", "F", 4.0);
+    graph.insertEdge("I", "H", 2.0);
+    graph.insertEdge("I", "D", 1.0);
+    graph.insertEdge("D", "F", 4.0);
+    graph.insertEdge("D", "G", 2.0);
+    graph.insertEdge("D", "A", 7.0);
+    graph.insertEdge("F", "G", 9.0);
+    graph.insertEdge("G", "L", 7.0);
+    graph.insertEdge("G", "H", 9.0);
+    graph.insertEdge("G", "A", 4.0);
+    graph.insertEdge("H", "L", 2.0);
+    graph.insertEdge("H", "B", 6.0);
+    graph.insertEdge("H", "I", 2.0);
+
+    //bidirectional search must find the same paths as the forward search
+    graph.setSearchStrategy(SearchStrategy.BIDIRECTIONAL);
+    assertEquals(List.of("D", "G", "H", "I"), graph.shortestPathData("D", "I"));
+    assertEquals(13.0, graph.shortestPathCost("D", "I"));
+    assertEquals(List.of("F", "G", "H", "I"), graph.shortestPathData("F", "I"));
+    assertEquals(20.0, graph.shortestPathCost("F", "I"));
+    assertEquals(List.of("D"), graph.shortestPathData("D", "D"));
+    assertThrows(NoSuchElementException.class, () -> graph.shortestPathData("E", "A"));
+  }
+
+  @Test
+  public void testEight() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.setSearchStrategy(SearchStrategy.ASTAR);
+    //three buildings along a street, plus a slow detour through "Far"
+    graph.insertNode("West");
+    graph.insertNode("Middle");
+    graph.insertNode("East");
+    graph.insertNode("Far");
+    graph.insertEdge("West", "Middle", 80.0);
+    graph.insertEdge("Middle", "East", 80.0);
+    graph.insertEdge("West", "Far", 150.0);
+    graph.insertEdge("Far", "East", 200.0);
+
+    //without coordinates, A* falls back to a plain Dijkstra search
+    assertFalse(graph.freeze().hasCoordinates());
+    assertEquals(List.of("West", "Middle", "East"), graph.shortestPathData("West", "East"));
+
+    //with coordinates, the search heads east and never settles "Far"
+    graph.setNodeCoordinates("West", 43.0760, -89.4050);
+    graph.setNodeCoordinates("Middle", 43.0760, -89.4040);
+    graph.setNodeCoordinates("East", 43.0760, -89.4030);
+    graph.setNodeCoordinates("Far", 43.0780, -89.4050);
+    assertTrue(graph.freeze().hasCoordinates());
+    assertEquals(List.of("West", "Middle", "East"), graph.shortestPathData("West", "East"));
+    assertEquals(160.0, graph.shortestPathCost("West", "East"));
+    assertEquals(3, graph.freeze().getSettledCount());
+
+    //a free edge to a door at the same place as West has no speed, so it
+    //doesn't turn the estimates into NaN
+    graph.insertNode("Door");
+    graph.setNodeCoordinates("Door", 43.0760, -89.4050);
+    graph.insertEdge("Door", "West", 0.0);
+    assertEquals(List.of("Door", "West", "Middle", "East"), graph.shortestPathData("Door", "East"));
+    assertEquals(160.0, graph.shortestPathCost("Door", "East"));
+    assertEquals(4, graph.freeze().getSettledCount());
+
+    //a free edge between different places is infinitely fast, so A* settles
+    //nodes like Dijkstra, and still finds the shortest path
+    graph.insertEdge("Far", "Middle", 0.0);
+    assertEquals(List.of("Door", "West", "Middle", "East"), graph.shortestPathData("Door", "East"));
+    assertEquals(160.0, graph.shortestPathCost("Door", "East"));
+  }
+
+  @Test
+  public void testNine() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    //a line of nodes A - B - C - D - E with two-way edges
+    for (String node : List.of("A", "B", "C", "D", "E"))
+      graph.insertNode(node);
+    for (String[] pair : new String[][] {{"A", "B"}, {"B", "C"}, {"C", "D"}, {"D", "E"}}) {
+      graph.insertEdge(pair[0], pair[1], 10.0);
+      graph.insertEdge(pair[1], pair[0], 10.0);
+    }
+    graph.setSearchStrategy(SearchStrategy.ALT);
+    graph.preprocessLandmarks(2);
+    assertEquals(2, graph.freeze().getLandmarks().getLandmarkCount());
+
+    //with a landmark at one end of the line, the bounds are exact, so the
+    //search only settles the nodes along the path
+    assertEquals(List.of("B", "C", "D"), graph.shortestPathData("B", "D"));
+    assertEquals(20.0, graph.shortestPathCost("B", "D"));
+    assertEquals(3, graph.freeze().getSettledCount());
+
+    //landmarks are recomputed after the graph changes
+    graph.insertEdge("B", "D", 15.0);
+    assertEquals(List.of("B", "D"), graph.shortestPathData("B", "D"));
+    assertEquals(15.0, graph.shortestPathCost("B", "D"));
+  }
+
+  @Test
+  public void testTen() {
+    //compare the contraction hierarchy with Dijkstra on random graphs, where
+    //random weights make every shortest path unique
+    Random random = new Random(400);
+    for (int trial = 0; trial < 50; trial++) {
+      DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+      int nodeCount = 2 + random.nextInt(60);
+      for (int i = 0; i < nodeCount; i++)
+        graph.insertNode("v" + i);
+      for (int i = 0; i < nodeCount * 3; i++)
+        graph.insertEdge("v" + random.nextInt(nodeCount), "v" + random.nextInt(nodeCount),
+            1.0 + random.nextDouble() * 100);
+      ContractionHierarchy<String> hierarchy = graph.buildContractionHierarchy();
+      for (int query = 0; query < 50; query++) {
+        String start = "v" + random.nextInt(nodeCount);
+        String end = "v" + random.nextInt(nodeCount);
+        List<String> expected;
+        try {
+          expected = graph.shortestPathData(start, end);
+        } catch (NoSuchElementException e) {
+          assertThrows(NoSuchElementException.class, () -> hierarchy.shortestPathData(start, end));
+          continue;
+        }
+        assertEquals(expected, hierarchy.shortestPathData(start, end));
+        assertEquals(graph.shortestPathCost(start, end), hierarchy.shortestPathCost(start, end),
+            1e-9);
+      }
+    }
+    //the hierarchy is read-only
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    assertThrows(UnsupportedOperationException.class,
+        () -> graph.buildContractionHierarchy().insertNode("B"));
+  }
+
+  @Test
+  public void testEleven() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    //a star of nodes around A at different costs, and one node behind B
+    for (String node : List.of("A", "B", "C", "D", "E", "F"))
+      graph.insertNode(node);
+    graph.insertEdge("A", "B", 1.0);
+    graph.insertEdge("A", "C", 4.0);
+    graph.insertEdge("A", "D", 2.0);
+    graph.insertEdge("B", "E", 2.0);
+    graph.insertEdge("F", "A", 1.0);
+
+    //the closest nodes come back in order of cost, without the start node
+    Map<String, Double> nearest = graph.nearestK("A", 3);
+    assertEquals(List.of("B", "D", "E"), List.copyOf(nearest.keySet()));
+    assertEquals(List.of(1.0, 2.0, 3.0), List.copyOf(nearest.values()));
+    //the search stops after settling the start and the three closest nodes
+    assertEquals(4, graph.freeze().getSettledCount());
+
+    //only reachable nodes are returned, even when k is larger
+    assertEquals(List.of("B", "D", "E", "C"), List.copyOf(graph.nearestK("A", 10).keySet()));
+    assertTrue(graph.nearestK("A", 0).isEmpty());
+    assertThrows(NoSuchElementException.class, () -> graph.nearestK("Z", 3));
+  }
+
+  @Test
+  public void testTwelve() {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    for (String node : List.of("A", "B", "C", "D"))
+      graph.insertNode(node);
+    graph.insertEdge("A", "B", 1.5);
+    graph.insertEdge("B", "C", 2.0);
+    graph.insertEdge("C", "D", 4.0);
+    graph.insertEdge("A", "D", 10.0);
+
+    //one search returns the nodes, leg costs, cumulative costs and total
+    for (SearchStrategy strategy : List.of(SearchStrategy.DIJKSTRA, SearchStrategy.BIDIRECTIONAL)) {
+      graph.setSearchStrategy(strategy);
+      PathResult<String> result = graph.shortestPath("A", "D");
+      assertEquals(List.of("A", "B", "C", "D"), result.getNodes());
+      assertEquals(List.of(1.5, 2.0, 4.0), result.getLegCosts());
+      assertEquals(List.of(0.0, 1.5, 3.5, 7.5), result.getCumulativeCosts());
+      assertEquals(7.5, result.getTotalCost());
+      assertEquals(graph.shortestPathCost("A", "D"), result.getTotalCost());
+    }
+
+    //a path from a node to itself has one node and no legs
+    PathResult<String> result = graph.shortestPath("B", "B");
+    assertEquals(List.of("B"), result.getNodes());
+    assertTrue(result.getLegCosts().isEmpty());
+    assertEquals(0.0, result.getTotalCost());
+    assertThrows(NoSuchElementException.class, () -> graph.shortestPath("D", "A"));
+  }
+
+  @Test
+  public void testThirteen() {
+    //random edges with many duplicates, added one at a time and through a builder
+    Random random = new Random(13);
+    DijkstraGraph<String, Double> expected = new DijkstraGraph<>();
+    GraphBuilder<String> builder = new GraphBuilder<>();
+    for (int i = 0; i < 2000; i++) {
+      String pred = "N" + random.nextInt(60);
+      String succ = "N" + random.nextInt(60);
+      double weight = random.nextInt(100);
+      expected.insertNode(pred);
+      expected.insertNode(succ);
+      expected.insertEdge(pred, succ, weight);
+      builder.addEdge(pred, succ, weight);
+    }
+    builder.addNode("lonely");
+    expected.insertNode("lonely");
+
+    //both give the same ids, the same edges in the same order, and the last weights
+    DijkstraGraph<String, Double> built = builder.build();
+    assertEquals(expected.getEdgeCount(), builder.getEdgeCount());
+    assertEquals(expected.getEdgeCount(), built.getEdgeCount());
+    assertEquals(expected.getNodeCount(), built.getNodeCount());
+    for (ImmutableCsrGraph<String> csr : List.of(built.freeze(), builder.freeze())) {
+      ImmutableCsrGraph<String> reference = expected.freeze();
+      assertEquals(reference.getAllNodes(), csr.getAllNodes());
+      assertArrayEquals(reference.offsets, csr.offsets);
+      assertArrayEquals(reference.targets, csr.targets);
+      assertArrayEquals(reference.weights, csr.weights);
+    }
+    assertEquals(expected.shortestPath("N1", "N2").getNodes(), built.shortestPath("N1", "N2").getNodes());
+
+    //a graph that already has nodes is filled one edge at a time
+    DijkstraGraph<String, Double> existing = new DijkstraGraph<>();
+    existing.insertNode("N1");
+    builder.addTo(existing);
+    assertEquals(expected.getEdgeCount(), existing.getEdgeCount());
+    for (String pred : expected.getAllNodes())
+      for (String succ : expected.getAllNodes())
+        if (expected.containsEdge(pred, succ))
+          assertEquals(expected.getEdge(pred, succ), existing.getEdge(pred, succ));
+  }
+
+  @Test
+  public void testFourteen() {
+    //random insertions and removals, including self loops and removals of nodes
+    //(which move the last node to a new id), checked against a map of expected edges
+    Random random = new Random(14);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Map<String, Double> expected = new HashMap<>();
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 30; i++)
+      names.add("N" + i);
+    for (String name : names)
+      graph.insertNode(name);
+    for (int step = 0; step < 5000; step++) {
+      String pred = names.get(random.nextInt(names.size()));
+      String succ = names.get(random.nextInt(names.size()));
+      int operation = random.nextInt(10);
+      if (operation < 6) {
+        double weight = random.nextInt(50);
+        assertEquals(graph.containsNode(pred) && graph.containsNode(succ),
+            graph.insertEdge(pred, succ, weight));
+        if (graph.containsNode(pred) && graph.containsNode(succ))
+          expected.put(pred + ">" + succ, weight);
+      } else if (operation < 9) {
+        assertEquals(expected.remove(pred + ">" + succ) != null, graph.removeEdge(pred, succ));
+      } else if (graph.containsNode(pred)) {
+        assertTrue(graph.removeNode(pred));
+        expected.keySet().removeIf(edge -> edge.startsWith(pred + ">") || edge.endsWith(">" + pred));
+        //the node comes back without edges, at the end of the ids
+        graph.insertNode(pred);
+      }
+    }
+    assertEquals(expected.size(), graph.getEdgeCount());
+    for (String pred : names) {
+      for (String succ : names) {
+        Double weight = expected.get(pred + ">" + succ);
+        assertEquals(weight != null, graph.containsEdge(pred, succ));
+        if (weight != null)
+          assertEquals(weight, graph.getEdge(pred, succ));
+        else
+          assertThrows(NoSuchElementException.class, () -> graph.getEdge(pred, succ));
+      }
+    }
+    assertFalse(graph.containsEdge("N1", "missing"));
+    assertFalse(graph.insertEdge("N1", "missing", 1.0));
+    assertFalse(graph.removeEdge("missing", "N1"));
+  }
+
+  @Test
+  public void testFifteen() {
+    //cached shortest path trees give the same paths as searching, on random
+    //graphs where random weights make every shortest path unique
+    Random random = new Random(15);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    DijkstraGraph<String, Double> searched = new DijkstraGraph<>();
+    int nodeCount = 80;
+    for (int i = 0; i < nodeCount; i++) {
+      graph.insertNode("v" + i);
+      searched.insertNode("v" + i);
+    }
+    for (int i = 0; i < nodeCount * 3; i++) {
+      String pred = "v" + random.nextInt(nodeCount);
+      String succ = "v" + random.nextInt(nodeCount);
+      double weight = 1.0 + random.nextDouble() * 100;
+      graph.insertEdge(pred, succ, weight);
+      searched.insertEdge(pred, succ, weight);
+    }
+    //room for two trees
+    graph.setTreeCacheBudget(2 * ShortestPathTree.estimateBytes(nodeCount));
+    for (int query = 0; query < 300; query++) {
+      String start = "v" + random.nextInt(3);
+      String end = "v" + random.nextInt(nodeCount);
+      PathResult<String> expected;
+      try {
+        expected = searched.shortestPath(start, end);
+      } catch (NoSuchElementException e) {
+        assertThrows(NoSuchElementException.class, () -> graph.shortestPath(start, end));
+        assertThrows(NoSuchElementException.class, () -> graph.shortestPathCost(start, end));
+        continue;
+      }
+      assertEquals(expected.getNodes(), graph.shortestPathData(start, end));
+      assertEquals(expected.getLegCosts(), graph.shortestPath(start, end).getLegCosts());
+      assertEquals(expected.getTotalCost(), graph.shortestPathCost(start, end), 1e-9);
+    }
+    //three sources share two trees, so the least recently used one was evicted
+    assertEquals(2, graph.getCachedTreeCount());
+    assertTrue(graph.getTreeCacheHits() > graph.getTreeCacheMisses());
+    assertTrue(graph.getTreeCacheMisses() >= 3);
+
+    //a change to the graph drops every tree
+    graph.insertEdge("v0", "v1", 0.5);
+    assertEquals(List.of("v0", "v1"), graph.shortestPathData("v0", "v1"));
+    assertEquals(1, graph.getCachedTreeCount());
+    assertThrows(NoSuchElementException.class, () -> graph.shortestPath("missing", "v1"));
+    assertThrows(NoSuchElementException.class, () -> graph.shortestPath("v0", "missing"));
+
+    //a budget too small for one tree disables the cache
+    graph.setTreeCacheBudget(100);
+    assertEquals(0, graph.getCachedTreeCount());
+    assertEquals(List.of("v0", "v1"), graph.shortestPathData("v0", "v1"));
+    assertEquals(0, graph.getCachedTreeCount());
+  }
+
+  @Test
+  public void testSixteen() {
+    //the all-pairs index gives the same paths, costs and closest nodes as
+    //searching, on random graphs where random weights make every path unique
+    Random random = new Random(16);
+    for (int trial = 0; trial < 10; trial++) {
+      DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+      int nodeCount = 1 + random.nextInt(60);
+      for (int i = 0; i < nodeCount; i++)
+        graph.insertNode("v" + i);
+      for (int i = 0; i < nodeCount * 2; i++)
+        graph.insertEdge("v" + random.nextInt(nodeCount), "v" + random.nextInt(nodeCount),
+            1.0 + random.nextDouble() * 100);
+      AllPairsIndex<String> index = new AllPairsIndex<>(graph.freeze(), 1 + trial % 3);
+      for (int a = 0; a < nodeCount; a++) {
+        String start = "v" + a;
+        assertEquals(new ArrayList<>(graph.nearestK(start, 5).keySet()), index.closest(start, 5));
+        for (int b = 0; b < nodeCount; b++) {
+          String end = "v" + b;
+          PathResult<String> expected;
+          try {
+            expected = graph.shortestPath(start, end);
+          } catch (NoSuchElementException e) {
+            assertThrows(NoSuchElementException.class, () -> index.shortestPath(start, end));
+            assertThrows(NoSuchElementException.class, () -> index.shortestPathCost(start, end));
+            continue;
+          }
+          PathResult<String> path = index.shortestPath(start, end);
+          assertEquals(expected.getNodes(), path.getNodes());
+          assertEquals(expected.getTotalCost(), path.getTotalCost());
+          assertEquals(expected.getTotalCost(), index.shortestPathCost(start, end),
+              expected.getTotalCost() * 1e-6);
+        }
+      }
+      assertEquals(12L * nodeCount * nodeCount + 4L * nodeCount, index.getMemoryBytes());
+    }
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    AllPairsIndex<String> index = new AllPairsIndex<>(graph.freeze());
+    assertEquals(List.of(), index.closest("A", 10));
+    assertThrows(NoSuchElementException.class, () -> index.closest("B", 10));
+    assertThrows(IllegalArgumentException.class, () -> index.closest("A", -1));
+  }
+
+  @Test
+  public void testSeventeen() throws InterruptedException {
+    //several threads query one graph while another thread keeps changing it,
+    //by adding and removing nodes without edges, which never changes a path
+    Random random = new Random(17);
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    int nodeCount = 100;
+    for (int i = 0; i < nodeCount; i++)
+      graph.insertNode("v" + i);
+    for (int i = 0; i < nodeCount * 4; i++)
+      graph.insertEdge("v" + random.nextInt(nodeCount), "v" + random.nextInt(nodeCount),
+          1.0 + random.nextDouble() * 100);
+    Map<String, List<String>> expected = new HashMap<>();
+    for (int a = 0; a < nodeCount; a++) {
+      for (int b = 0; b < nodeCount; b += 7) {
+        try {
+          expected.put("v" + a + ">v" + b, graph.shortestPathData("v" + a, "v" + b));
+        } catch (NoSuchElementException e) {
+          expected.put("v" + a + ">v" + b, List.of());
+        }
+      }
+    }
+    List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      long seed = t;
+      threads.add(new Thread(() -> {
+        Random queries = new Random(seed);
+        try {
+          for (int i = 0; i < 3000; i++) {
+            String start = "v" + queries.nextInt(nodeCount);
+            String end = "v" + queries.nextInt(nodeCount / 7 + 1) * 7;
+            List<String> path;
+            try {
+              path = graph.shortestPathData(start, end);
+            } catch (NoSuchElementException e) {
+              path = List.of();
+            }
+            assertEquals(expected.get(start + ">" + end), path);
+          }
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      }));
+    }
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        graph.insertNode("extra" + i);
+        if (i % 2 == 1)
+          graph.removeNode("extra" + (i - 1));
+        if (i % 100 == 0)
+          graph.setSearchStrategy(i % 200 == 0
+              ? SearchStrategy.BIDIRECTIONAL : SearchStrategy.DIJKSTRA);
+      }
+    }));
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+    assertEquals(List.of(), failures);
+    assertEquals(nodeCount + 250, graph.getNodeCount());
+    assertEquals(nodeCount + 250, graph.freeze().getNodeCount());
+  }
+
+  @Test
+  public void testEighteen() throws InterruptedException {
+    //four writers fill and then empty a ConcurrentHashtableMap from 16 entries
+    //to 20k, while a reader checks that keys which were present all along
+    //never disappear during the resizes
+    MapADT<String, Integer> map = new ConcurrentHashtableMap<>(16);
+    assertTrue(map.isThreadSafe());
+    assertFalse(new HashtableMap<String, Integer>(16).isThreadSafe());
+    for (int i = 0; i < 100; i++)
+      map.put("fixed" + i, i);
+    List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int writer = t;
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 5000; i++)
+            map.put("w" + writer + "-" + i, i);
+          for (int i = 0; i < 5000; i += 2)
+            assertEquals(i, (int) map.remove("w" + writer + "-" + i));
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      }));
+    }
+    threads.add(new Thread(() -> {
+      try {
+        for (int round = 0; round < 200; round++)
+          for (int i = 0; i < 100; i++)
+            assertEquals(i, (int) map.get("fixed" + i));
+      } catch (Throwable e) {
+        failures.add(e);
+      }
+    }));
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+    assertEquals(List.of(), failures);
+    assertEquals(100 + 4 * 2500, map.getSize());
+    assertEquals(100 + 4 * 2500, map.getKeys().size());
+    assertTrue(map.getCapacity() >= map.getSize());
+    assertTrue(map.containsKey("w3-4999"));
+    assertFalse(map.containsKey("w3-4998"));
+    assertFalse(map.containsKey(null));
+    assertThrows(IllegalArgumentException.class, () -> map.put("fixed0", 0));
+    assertThrows(NullPointerException.class, () -> map.put(null, 0));
+    assertThrows(NoSuchElementException.class, () -> map.get("w0-0"));
+    assertThrows(NoSuchElementException.class, () -> map.remove("w0-0"));
+    map.clear();
+    assertEquals(0, map.getSize());
+    assertEquals(List.of(), map.getKeys());
+
+    //a graph that keeps its nodes in a ConcurrentHashtableMap finds the same
+    //paths as one that uses the default map
+    DijkstraGraph<String, Double> concurrent =
+        DijkstraGraph.withMap(MapType.CONCURRENT, DEFAULT_HEAP_ARITY);
+    DijkstraGraph<String, Double> chained = new DijkstraGraph<>();
+    Random random = new Random(18);
+    for (int i = 0; i < 50; i++) {
+      concurrent.insertNode("v" + i);
+      chained.insertNode("v" + i);
+    }
+    for (int i = 0; i < 200; i++) {
+      String pred = "v" + random.nextInt(50);
+      String succ = "v" + random.nextInt(50);
+      double weight = 1.0 + random.nextInt(100);
+      concurrent.insertEdge(pred, succ, weight);
+      chained.insertEdge(pred, succ, weight);
+    }
+    assertTrue(concurrent.containsNode("v49"));
+    assertFalse(concurrent.containsNode("v50"));
+    for (int i = 0; i < 50; i++) {
+      String end = "v" + i;
+      try {
+        assertEquals(chained.shortestPathCost("v0", end), concurrent.shortestPathCost("v0", end));
+      } catch (NoSuchElementException e) {
+        assertThrows(NoSuchElementException.class, () -> concurrent.shortestPathCost("v0", end));
+      }
+    }
+  }
+
+  @Test
+  public void testNineteen() {
+    //distance matrices match pairwise Dijkstra searches, with or without a
+    //contraction hierarchy, and however far the backward searches go
+    Random random = new Random(19);
+    for (int trial = 0; trial < 30; trial++) {
+      DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+      int nodeCount = 1 + random.nextInt(80);
+      for (int i = 0; i < nodeCount; i++)
+        graph.insertNode("v" + i);
+      //few edges, so that some pairs have no path
+      for (int i = 0; i < nodeCount * 2; i++)
+        graph.insertEdge("v" + random.nextInt(nodeCount), "v" + random.nextInt(nodeCount),
+            1.0 + random.nextDouble() * 100);
+      //sources and destinations may repeat
+      List<String> sources = new ArrayList<>();
+      List<String> destinations = new ArrayList<>();
+      for (int i = random.nextInt(12); i > 0; i--)
+        sources.add("v" + random.nextInt(nodeCount));
+      for (int i = random.nextInt(12); i > 0; i--)
+        destinations.add("v" + random.nextInt(nodeCount));
+      double[][] expected = new double[sources.size()][destinations.size()];
+      for (int i = 0; i < sources.size(); i++) {
+        for (int j = 0; j < destinations.size(); j++) {
+          try {
+            expected[i][j] = graph.shortestPathCost(sources.get(i), destinations.get(j));
+          } catch (NoSuchElementException e) {
+            expected[i][j] = Double.POSITIVE_INFINITY;
+          }
+        }
+      }
+      ImmutableCsrGraph<String> snapshot = graph.freeze();
+      List<double[][]> matrices = new ArrayList<>();
+      matrices.add(graph.distanceMatrix(sources, destinations));
+      matrices.add(graph.buildContractionHierarchy().distanceMatrix(sources, destinations));
+      for (int settleLimit : new int[] {1, 2, 5, 20})
+        matrices.add(snapshot.distanceMatrix(sources, destinations, settleLimit));
+      for (double[][] matrix : matrices) {
+        assertEquals(sources.size(), matrix.length);
+        for (int i = 0; i < sources.size(); i++) {
+          assertEquals(destinations.size(), matrix[i].length);
+          for (int j = 0; j < destinations.size(); j++)
+            assertEquals(expected[i][j], matrix[i][j], 1e-9);
+        }
+      }
+    }
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertEdge("A", "B", 2.0);
+    assertEquals(0.0, graph.distanceMatrix(List.of("A"), List.of("A"))[0][0]);
+    assertEquals(Double.POSITIVE_INFINITY, graph.distanceMatrix(List.of("B"), List.of("A"))[0][0]);
+    assertEquals(0, graph.distanceMatrix(List.of(), List.of("A")).length);
+    assertThrows(NoSuchElementException.class,
+        () -> graph.distanceMatrix(List.of("A"), List.of("C")));
+    assertThrows(NoSuchElementException.class,
+        () -> graph.buildContractionHierarchy().distanceMatrix(List.of("C"), List.of("A")));
+  }
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the buckets of a many-to-many (distance matrix) search.
+ * Backward searches from each target add an entry (target, cost) to the
+ * bucket of every node they settle, where cost is the cost of the path from
+ * that node to the target. A forward search from a source then finds the
+ * cost to every target at once, by joining its own cost of reaching a node
+ * with the entries in that node's bucket.
+ *
+ * Entries are added in any order while the backward searches run, and then
+ * grouped by node in one counting sort, so that the bucket of a node is one
+ * contiguous range of the targets and costs arrays: from offsets[id] up to
+ * (but not including) offsets[id + 1].
+ */
+public class DistanceBuckets {
+
+  // the entries in the order they were added
+  private int[] entryNodes;
+  private int[] entryTargets;
+  private double[] entryCosts;
+  private int size = 0;
+
+  // the entries grouped by node, which are only set by groupByNode
+  public int[] offsets = null;
+  public int[] targets = null;
+  public double[] costs = null;
+
+  /**
+   * Creates empty buckets.
+   *
+   * @param expectedEntries the number of entries to make room for, which
+   *                        grows as needed
+   */
+  public DistanceBuckets(int expectedEntries) {
+    int capacity = Math.max(16, expectedEntries);
+    entryNodes = new int[capacity];
+    entryTargets = new int[capacity];
+    entryCosts = new double[capacity];
+  }
+
+  /**
+   * Adds an entry to the bucket of a node.
+   *
+   * @param node   the id of the node that was settled
+   * @param target the index of the target whose search settled it
+   * @param cost   the cost of the path from the node to that target
+   */
+  public void add(int node, int target, double cost) {
+    if (size == entryNodes.length) {
+      int capacity = size * 2;
+      entryNodes = Arrays.copyOf(entryNodes, capacity);
+      entryTargets = Arrays.copyOf(entryTargets, capacity);
+      entryCosts = Arrays.copyOf(entryCosts, capacity);
+    }
+    entryNodes[size] = node;
+    entryTargets[size] = target;
+    entryCosts[size++] = cost;
+  }
+
+  /**
+   * Groups the entries that were added so far by node, into offsets, targets
+   * and costs. Within a bucket, the entries keep the order they were added
+   * in. No more entries can be added afterwards.
+   *
+   * @param nodeCount the number of nodes, with ids 0 to nodeCount-1
+   */
+  public void groupByNode(int nodeCount) {
+    offsets = new int[nodeCount + 1];
+    for (int i = 0; i < size; i++)
+      offsets[entryNodes[i] + 1]++;
+    for (int id = 0; id < nodeCount; id++)
+      offsets[id + 1] += offsets[id];
+    targets = new int[size];
+    costs = new double[size];
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    for (int i = 0; i < size; i++) {
+      int slot = next[entryNodes[i]]++;
+      targets[slot] = entryTargets[i];
+      costs[slot] = entryCosts[i];
+    }
+    // the unsorted entries aren't needed anymore
+    entryNodes = entryTargets = new int[0];
+    entryCosts = new double[0];
+  }
+
+  /**
+   * Returns the number of entries in all buckets together.
+   *
+   * @return the number of entries that were added
+   */
+  public int getEntryCount() {
+    return size;
+  }
+}
@@ -0,0 +1,659 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class reads graphs written in the DOT language, such as campus.dot. It
+ * is a hand-written tokenizer and parser that makes a single pass over the
+ * characters of the file, without regular expressions and without creating a
+ * String for every token: identifiers are unescaped into a reusable buffer and
+ * interned in a small table (so each node name is allocated once, however
+ * often it appears), and attribute values stay in a buffer until a handler
+ * asks for them, with numbers parsed straight from the characters.
+ *
+ * The supported language covers what graph files use in practice:
+ * - graph and digraph blocks (with an optional strict and name)
+ * - identifiers that are bare words, numerals, or quoted strings with \"
+ *   escapes
+ * - node statements and edge statements (including chains a -> b -> c)
+ *   with any number of [key=value, ...] attribute lists
+ * - // and /* comments, and # lines
+ * Graph attributes, default attribute statements (graph/node/edge [...])
+ * and subgraph braces are accepted and skipped. Edges in an undirected graph
+ * (--) are reported once in each direction.
+ */
+public class DotParser {
+
+  /**
+   * Receives the statements of a DOT file, in the order they appear.
+   */
+  public interface Handler {
+
+    /**
+     * Called for each node statement.
+     *
+     * @param id         the interned name of the node
+     * @param attributes the attributes of the statement, only valid until
+     *                   this method returns
+     */
+    void node(String id, Attributes attributes);
+
+    /**
+     * Called for each edge of an edge statement.
+     *
+     * @param from       the interned name of the edge's predecessor
+     * @param to         the interned name of the edge's successor
+     * @param attributes the attributes of the statement, only valid until
+     *                   this method returns
+     */
+    void edge(String from, String to, Attributes attributes);
+  }
+
+  /**
+   * The key=value attributes of one statement. Keys are interned Strings,
+   * while values are kept as ranges of a shared char array, and are only
+   * turned into Strings or numbers when asked for. The same instance is
+   * reused for every statement.
+   */
+  public static class Attributes {
+    private String[] keys = new String[8];
+    private int[] valueStarts = new int[8];
+    private int[] valueEnds = new int[8];
+    private char[] values = new char[64];
+    private int valueLength = 0;
+    private int size = 0;
+
+    /**
+     * Returns the number of attributes of the statement.
+     *
+     * @return the number of key=value pairs
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Returns the key of one attribute.
+     *
+     * @param index the position of the attribute, from 0 to size()-1
+     * @return the key of that attribute
+     */
+    public String getKey(int index) {
+      return keys[index];
+    }
+
+    /**
+     * Checks whether the statement has an attribute with the provided key.
+     *
+     * @param key the key to look for
+     * @return true if an attribute has that key
+     */
+    public boolean contains(String key) {
+      return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value of an attribute as a String.
+     *
+     * @param key the key of the attribute
+     * @return the (unquoted) value of the attribute, or null if there is no
+     *         attribute with that key
+     */
+    public String getString(String key) {
+      int index = indexOf(key);
+      if (index < 0)
+        return null;
+      return new String(values, valueStarts[index], valueEnds[index] - valueStarts[index]);
+    }
+
+    /**
+     * Returns the value of an attribute as a number, parsed straight from
+     * the characters of the value.
+     *
+     * @param key the key of the attribute
+     * @return the numeric value of the attribute
+     * @throws NumberFormatException if there is no attribute with that key, or
+     *                               if its value is not a number
+     */
+    public double getDouble(String key) {
+      int index = indexOf(key);
+      if (index < 0)
+        throw new NumberFormatException("Missing attribute " + key);
+      return parseDouble(values, valueStarts[index], valueEnds[index]);
+    }
+
+    private int indexOf(String key) {
+      // keys are interned, so this is usually a reference comparison
+      for (int i = size - 1; i >= 0; i--)
+        if (keys[i] == key || keys[i].equals(key))
+          return i;
+      return -1;
+    }
+
+    private void clear() {
+      size = 0;
+      valueLength = 0;
+    }
+
+    private void add(String key, char[] value, int length) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+        valueStarts = Arrays.copyOf(valueStarts, size * 2);
+        valueEnds = Arrays.copyOf(valueEnds, size * 2);
+      }
+      if (valueLength + length > values.length)
+        values = Arrays.copyOf(values, Math.max(values.length * 2, valueLength + length));
+      System.arraycopy(value, 0, values, valueLength, length);
+      keys[size] = key;
+      valueStarts[size] = valueLength;
+      valueLength += length;
+      valueEnds[size] = valueLength;
+      size++;
+    }
+  }
+
+  // the kinds of tokens
+  private static final int END = 0;
+  private static final int ID = 1;
+  private static final int EDGE_OP = 2;
+  private static final int SYMBOL = 3; // one of { } [ ] = ; , :
+
+  // powers of ten that are exactly representable as doubles
+  private static final double[] POWERS_OF_TEN = new double[23];
+  static {
+    POWERS_OF_TEN[0] = 1.0;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++)
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+  }
+
+  private final char[] text;
+  private int pos;
+  private final int end;
+  private int line = 1;
+
+  // the current token: its kind, the symbol for SYMBOL tokens, and the
+  // (unescaped) characters of ID tokens
+  private int kind;
+  private char symbol;
+  private char[] token = new char[64];
+  private int tokenLength;
+  private boolean quoted;
+  private boolean undirectedOperator; // whether the last EDGE_OP was --
+
+  // interned names: a linear probing table of Strings with their hashes
+  private String[] names = new String[1024];
+  private int[] nameHashes = new int[1024];
+  private int nameCount = 0;
+
+  private final Attributes attributes = new Attributes();
+
+  /**
+   * Creates a parser for a range of characters.
+   *
+   * @param text  the characters to parse
+   * @param start the index of the first character
+   * @param end   the index after the last character
+   */
+  public DotParser(char[] text, int start, int end) {
+    this.text = text;
+    this.pos = start;
+    this.end = end;
+  }
+
+  /**
+   * Reads a DOT file (in UTF-8) and passes its statements to a handler.
+   *
+   * @param file    the file to read
+   * @param handler the handler to receive the nodes and edges
+   * @throws IOException if the file can't be read, or is not valid DOT
+   */
+  public static void parse(Path file, Handler handler) throws IOException {
+    CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+    new DotParser(chars.array(), chars.arrayOffset() + chars.position(),
+        chars.arrayOffset() + chars.limit()).parse(handler);
+  }
+
+  /**
+   * Parses DOT text and passes its statements to a handler.
+   *
+   * @param text    the DOT text to parse
+   * @param handler the handler to receive the nodes and edges
+   * @throws IOException if the text is not valid DOT
+   */
+  public static void parse(String text, Handler handler) throws IOException {
+    char[] chars = text.toCharArray();
+    new DotParser(chars, 0, chars.length).parse(handler);
+  }
+
+  /**
+   * Parses the first graph in the text, and passes its statements to a
+   * handler.
+   *
+   * @param handler the handler to receive the nodes and edges
+   * @throws IOException if the text is not valid DOT
+   */
+  public void parse(Handler handler) throws IOException {
+    next();
+    readStatements(handler, readHeader(), false);
+  }
+
+  /**
+   * Parses one chunk of the statements of a graph, such as a range of whole
+   * lines cut from a large file, and passes them to a handler. The first
+   * chunk starts with the graph's header, and the last may end with its
+   * closing brace; other braces are ignored, since a subgraph may open in one
+   * chunk and close in another. As chunks after the first don't see the
+   * header, edges are reported in both directions when their operator is --.
+   *
+   * @param handler the handler to receive the nodes and edges
+   * @param first   whether the chunk is the start of the text
+   * @throws IOException if the chunk is not a valid list of DOT statements
+   */
+  public void parseChunk(Handler handler, boolean first) throws IOException {
+    next();
+    if (first)
+      readHeader();
+    readStatements(handler, true, true);
+  }
+
+  /**
+   * Reads the header of a graph, up to and including its opening brace.
+   *
+   * @return true for a digraph, or false for a graph
+   */
+  private boolean readHeader() throws IOException {
+    if (isKeyword("strict"))
+      next();
+    boolean directed;
+    if (isKeyword("digraph"))
+      directed = true;
+    else if (isKeyword("graph"))
+      directed = false;
+    else
+      throw error("expected graph or digraph");
+    next();
+    if (kind == ID)
+      next(); // the name of the graph
+    expectSymbol('{');
+    next();
+    return directed;
+  }
+
+  /**
+   * Reads statements up to the brace that closes the graph, or in a chunk,
+   * up to the end of the text.
+   */
+  private void readStatements(Handler handler, boolean directed, boolean chunk)
+      throws IOException {
+    List<String> chain = new ArrayList<>();
+    int depth = 1;
+    while (depth > 0) {
+      if (kind == END) {
+        if (chunk)
+          return;
+        throw error("missing }");
+      }
+      if (isSymbol('}') || isSymbol('{')) {
+        if (!chunk)
+          depth += symbol == '{' ? 1 : -1;
+        next();
+      } else if (isSymbol(';') || isSymbol(',')) {
+        next();
+      } else if (isKeyword("subgraph")) {
+        // the statements of a subgraph belong to the graph itself
+        next();
+        if (kind == ID)
+          next();
+      } else if (kind != ID) {
+        throw error("expected a statement");
+      } else if (isKeyword("graph") || isKeyword("node") || isKeyword("edge")) {
+        // default attributes are not needed by any handler
+        next();
+        readAttributes();
+      } else {
+        String id = intern(token, tokenLength);
+        next();
+        skipPort();
+        if (isSymbol('=')) {
+          // a graph attribute, such as rankdir=LR
+          next();
+          expectId();
+          next();
+        } else if (kind == EDGE_OP) {
+          chain.clear();
+          chain.add(id);
+          boolean bothWays = !directed || chunk && undirectedOperator;
+          while (kind == EDGE_OP) {
+            next();
+            expectId();
+            chain.add(intern(token, tokenLength));
+            next();
+            skipPort();
+          }
+          readAttributes();
+          for (int i = 1; i < chain.size(); i++) {
+            handler.edge(chain.get(i - 1), chain.get(i), attributes);
+            if (bothWays)
+              handler.edge(chain.get(i), chain.get(i - 1), attributes);
+          }
+        } else {
+          readAttributes();
+          handler.node(id, attributes);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads any number of [key=value, ...] lists into attributes.
+   */
+  private void readAttributes() throws IOException {
+    attributes.clear();
+    while (isSymbol('[')) {
+      next();
+      while (!isSymbol(']')) {
+        expectId();
+        String key = intern(token, tokenLength);
+        next();
+        expectSymbol('=');
+        next();
+        expectId();
+        attributes.add(key, token, tokenLength);
+        next();
+        if (isSymbol(',') || isSymbol(';'))
+          next();
+      }
+      next();
+    }
+  }
+
+  /**
+   * Skips the port of a node id (as in a:n -> b:s), which has no meaning for
+   * the graph itself.
+   */
+  private void skipPort() throws IOException {
+    while (isSymbol(':')) {
+      next();
+      expectId();
+      next();
+    }
+  }
+
+  private boolean isSymbol(char c) {
+    return kind == SYMBOL && symbol == c;
+  }
+
+  // keywords are case-insensitive, and never quoted
+  private boolean isKeyword(String keyword) {
+    if (kind != ID || quoted || tokenLength != keyword.length())
+      return false;
+    for (int i = 0; i < tokenLength; i++)
+      if (Character.toLowerCase(token[i]) != keyword.charAt(i))
+        return false;
+    return true;
+  }
+
+  private void expectSymbol(char c) throws IOException {
+    if (!isSymbol(c))
+      throw error("expected " + c);
+  }
+
+  private void expectId() throws IOException {
+    if (kind != ID)
+      throw error("expected an id");
+  }
+
+  private IOException error(String message) {
+    return new IOException("DOT syntax error on line " + line + ": " + message);
+  }
+
+  /**
+   * Reads the next token, skipping whitespace and comments.
+   */
+  private void next() throws IOException {
+    skipSpaceAndComments();
+    if (pos >= end) {
+      kind = END;
+      return;
+    }
+    char c = text[pos];
+    if (c == '-' && pos + 1 < end && (text[pos + 1] == '>' || text[pos + 1] == '-')) {
+      kind = EDGE_OP;
+      undirectedOperator = text[pos + 1] == '-';
+      pos += 2;
+    } else if ("{}[]=;,:".indexOf(c) >= 0) {
+      kind = SYMBOL;
+      symbol = c;
+      pos++;
+    } else if (c == '"') {
+      readQuoted();
+    } else if (c == '<') {
+      readHtml();
+    } else {
+      readBare();
+    }
+  }
+
+  private void skipSpaceAndComments() {
+    while (pos < end) {
+      char c = text[pos];
+      if (c == '\n') {
+        line++;
+        pos++;
+      } else if (c == ' ' || c == '\t' || c == '\r') {
+        pos++;
+      } else if (c == '#' || c == '/' && pos + 1 < end && text[pos + 1] == '/') {
+        while (pos < end && text[pos] != '\n')
+          pos++;
+      } else if (c == '/' && pos + 1 < end && text[pos + 1] == '*') {
+        pos += 2;
+        while (pos < end && !(text[pos] == '*' && pos + 1 < end && text[pos + 1] == '/')) {
+          if (text[pos] == '\n')
+            line++;
+          pos++;
+        }
+        pos += 2;
+      } else {
+        return;
+      }
+    }
+  }
+
+  // a quoted id, in which \" stands for a quote and every other character
+  // (including other backslashes) stands for itself
+  private void readQuoted() throws IOException {
+    kind = ID;
+    quoted = true;
+    tokenLength = 0;
+    pos++;
+    while (true) {
+      if (pos >= end)
+        throw error("unterminated string");
+      char c = text[pos++];
+      if (c == '"')
+        return;
+      if (c == '\\' && pos < end && text[pos] == '"')
+        c = text[pos++];
+      else if (c == '\n')
+        line++;
+      appendToken(c);
+    }
+  }
+
+  // an HTML id <...>, which may contain nested <> pairs
+  private void readHtml() throws IOException {
+    kind = ID;
+    quoted = true;
+    tokenLength = 0;
+    int depth = 0;
+    do {
+      if (pos >= end)
+        throw error("unterminated HTML string");
+      char c = text[pos++];
+      if (c == '<')
+        depth++;
+      else if (c == '>')
+        depth--;
+      else if (c == '\n')
+        line++;
+      if (depth > 0 && !(c == '<' && depth == 1))
+        appendToken(c);
+    } while (depth > 0);
+  }
+
+  // a bare word (letters, digits, underscores, non-ASCII) or numeral
+  private void readBare() throws IOException {
+    kind = ID;
+    quoted = false;
+    tokenLength = 0;
+    while (pos < end) {
+      char c = text[pos];
+      boolean numeral = c == '.' || c == '-' && tokenLength == 0;
+      if (!(Character.isLetterOrDigit(c) || c == '_' || c >= 128 || numeral))
+        break;
+      appendToken(c);
+      pos++;
+    }
+    if (tokenLength == 0)
+      throw error("unexpected character '" + text[pos] + "'");
+  }
+
+  private void appendToken(char c) {
+    if (tokenLength == token.length)
+      token = Arrays.copyOf(token, tokenLength * 2);
+    token[tokenLength++] = c;
+  }
+
+  /**
+   * Returns the one String instance for a name, creating it the first time
+   * the name is seen.
+   *
+   * @param chars  a buffer holding the name
+   * @param length the length of the name
+   * @return the interned name
+   */
+  private String intern(char[] chars, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + chars[i];
+    // scramble the bits like ProbingHashtableMap, so similar names spread out
+    hash *= 0x9E3779B9;
+    hash ^= hash >>> 16;
+    int mask = names.length - 1;
+    int slot = hash & mask;
+    for (String name = names[slot]; name != null; name = names[slot]) {
+      if (nameHashes[slot] == hash && equals(name, chars, length))
+        return name;
+      slot = (slot + 1) & mask;
+    }
+    String name = new String(chars, 0, length);
+    names[slot] = name;
+    nameHashes[slot] = hash;
+    if (++nameCount * 2 > names.length)
+      growNames();
+    return name;
+  }
+
+  private static boolean equals(String name, char[] chars, int length) {
+    if (name.length() != length)
+      return false;
+    for (int i = 0; i < length; i++)
+      if (name.charAt(i) != chars[i])
+        return false;
+    return true;
+  }
+
+  private void growNames() {
+    String[] oldNames = names;
+    int[] oldHashes = nameHashes;
+    names = new String[oldNames.length * 2];
+    nameHashes = new int[oldNames.length * 2];
+    int mask = names.length - 1;
+    for (int i = 0; i < oldNames.length; i++) {
+      if (oldNames[i] != null) {
+        int slot = oldHashes[i] & mask;
+        while (names[slot] != null)
+          slot = (slot + 1) & mask;
+        names[slot] = oldNames[i];
+        nameHashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  /**
+   * Parses a decimal number (such as 105.8, -89.40 or 1e3) from a range of
+   * characters without creating a String. Numbers with at most 15
+   * significant digits and small exponents are computed exactly with a
+   * single rounding; longer numbers fall back to Double.parseDouble, so the
+   * result is always the correctly rounded double.
+   *
+   * @param chars the characters to parse
+   * @param start the index of the first character
+   * @param end   the index after the last character
+   * @return the value of the number
+   * @throws NumberFormatException if the characters are not a number
+   */
+  public static double parseDouble(char[] chars, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (chars[i] == '-' || chars[i] == '+'))
+      negative = chars[i++] == '-';
+    long mantissa = 0;
+    int digits = 0; // significant digits in mantissa
+    int exponent = 0;
+    boolean anyDigit = false;
+    boolean inFraction = false;
+    for (; i < end; i++) {
+      char c = chars[i];
+      if (c >= '0' && c <= '9') {
+        anyDigit = true;
+        if (digits < 18) {
+          if (mantissa != 0 || c != '0')
+            digits++;
+          mantissa = mantissa * 10 + (c - '0');
+          if (inFraction)
+            exponent--;
+        } else if (!inFraction) {
+          exponent++; // digits beyond 18 are dropped, and handled below
+          digits++;
+        } else {
+          digits++;
+        }
+      } else if (c == '.' && !inFraction) {
+        inFraction = true;
+      } else {
+        break;
+      }
+    }
+    if (!anyDigit)
+      throw new NumberFormatException("Not a number: " + new String(chars, start, end - start));
+    if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (chars[i] == '-' || chars[i] == '+'))
+        negativeExponent = chars[i++] == '-';
+      int value = 0;
+      int exponentStart = i;
+      for (; i < end && chars[i] >= '0' && chars[i] <= '9'; i++)
+        value = Math.min(value * 10 + (chars[i] - '0'), 100_000);
+      if (i == exponentStart)
+        throw new NumberFormatException("Not a number: " + new String(chars, start, end - start));
+      exponent += negativeExponent ? -value : value;
+    }
+    if (i != end)
+      throw new NumberFormatException("Not a number: " + new String(chars, start, end - start));
+    if (digits > 15 || exponent < -22 || exponent > 22)
+      return Double.parseDouble(new String(chars, start, end - start));
+    // the mantissa is below 2^53 and the power of ten is exact, so the one
+    // multiplication or division below rounds correctly
+    double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+        : mantissa * POWERS_OF_TEN[exponent];
+    return negative ? -value : value;
+  }
+}
@@ -1,14 +1,140 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
 public class Frontend implements FrontendInterface {
 
   public final Backend backend;
 
+  // the words used for small numbers of closest destinations
+  private static final String[] NUMBER_WORDS = {"zero", "one", "two", "three", "four", "five",
+      "six", "seven", "eight", "nine", "ten"};
+
+  // the prompts never change, so they are rendered once
+  private final HtmlFragment shortestPathPrompt;
+  private final HtmlFragment closestDestinationsPrompt;
+  // recently rendered responses, keyed by [kind, arguments...]; they are all dropped whenever the
+  // backend's graph version changes
+  private final LruCache<List<Object>, HtmlFragment> fragmentCache;
+  // the bytes of every response that was taken from fragmentCache instead of being rendered
+  private final LongAdder bytesFromCache = new LongAdder();
+
   /**
    * Implementing classes should support the constructor below.
    * @param backend is used for shortest path computations
    */
   public Frontend(BackendInterface backend){
+    this(backend, Backend.DEFAULT_CACHE_ENTRIES);
+  }
+
+  /**
+   * Creates a frontend that caches the rendered HTML of recent responses.
+   *
+   * @param backend      is used for shortest path computations
+   * @param cacheEntries is the most responses to keep, or 0 to disable caching
+   */
+  public Frontend(BackendInterface backend, int cacheEntries) {
     this.backend = (Backend) backend;
+    shortestPathPrompt = new HtmlFragment(generateShortestPathPromptHTML());
+    closestDestinationsPrompt = new HtmlFragment(generateTenClosestDestinationsPromptHTML());
+    fragmentCache = new LruCache<>(cacheEntries, 0);
+  }
+
+  /**
+   * Returns the HTML of generateShortestPathPromptHTML, encoded once.
+   *
+   * @return the prompt for a shortest path
+   */
+  public HtmlFragment getShortestPathPromptFragment() {
+    return shortestPathPrompt;
+  }
+
+  /**
+   * Returns the HTML of generateTenClosestDestinationsPromptHTML, encoded once.
+   *
+   * @return the prompt for the ten closest destinations
+   */
+  public HtmlFragment getTenClosestDestinationsPromptFragment() {
+    return closestDestinationsPrompt;
+  }
+
+  /**
+   * Returns the HTML of generateShortestPathResponseHTML as an encoded fragment. A fragment that
+   * was rendered for the same locations and the current graph version is reused, without asking
+   * the backend to find the path again.
+   *
+   * @param start is the starting location to find a shortest path from
+   * @param end   is the destination that this shortest path should end at
+   * @return the HTML fragment that describes the shortest path between these two locations
+   */
+  public HtmlFragment getShortestPathResponseFragment(String start, String end) {
+    long version = backend.getGraphVersion();
+    List<Object> key = Arrays.asList("route", start, end);
+    HtmlFragment fragment = fragmentCache.get(key, version);
+    if (fragment != null) {
+      bytesFromCache.add(fragment.getLength());
+      return fragment;
+    }
+    fragment = new HtmlFragment(generateShortestPathResponseHTML(start, end));
+    fragmentCache.put(key, fragment, version);
+    return fragment;
+  }
+
+  /**
+   * Returns the HTML of generateClosestDestinationsResponseHTML as an encoded fragment. A fragment
+   * that was rendered for the same start, k and graph version is reused, without asking the
+   * backend for the destinations again.
+   *
+   * @param start is the starting location to find close destinations from
+   * @param k     is the largest number of destinations to list
+   * @return the HTML fragment that describes the closest destinations from start
+   */
+  public HtmlFragment getClosestDestinationsResponseFragment(String start, int k) {
+    long version = backend.getGraphVersion();
+    List<Object> key = Arrays.asList("nearby", start, k);
+    HtmlFragment fragment = fragmentCache.get(key, version);
+    if (fragment != null) {
+      bytesFromCache.add(fragment.getLength());
+      return fragment;
+    }
+    fragment = new HtmlFragment(generateClosestDestinationsResponseHTML(start, k));
+    fragmentCache.put(key, fragment, version);
+    return fragment;
+  }
+
+  /**
+   * Returns the cache of rendered responses, whose counters show how often responses were
+   * reused.
+   *
+   * @return the cache of response fragments
+   */
+  public LruCache<List<Object>, HtmlFragment> getFragmentCache() {
+    return fragmentCache;
+  }
+
+  /**
+   * Returns the share of response fragments that were taken from the cache instead of being
+   * rendered.
+   *
+   * @return the hit ratio between 0 and 1, or 0 before the first response
+   */
+  public double getFragmentHitRatio() {
+    long hits = fragmentCache.getHits();
+    long lookups = hits + fragmentCache.getMisses();
+    return lookups == 0 ? 0.0 : hits / (double) lookups;
+  }
+
+  /**
+   * Returns the total size of the response fragments that were taken from the cache, which is the
+   * number of bytes that did not have to be rendered and encoded again.
+   *
+   * @return the number of bytes served from the cache
+   */
+  public long getFragmentBytesSaved() {
+    return bytesFromCache.sum();
   }
 
   /**
@@ -45,35 +171,74 @@ public class Frontend implements FrontendInterface {
    */
   @Override
   public String generateShortestPathResponseHTML(String start, String end) {
+    StringBuilder html = new StringBuilder();
     try {
-      //find path and the travel times from Backend
-      List<String> path = backend.findLocationsOnShortestPath(start, end);
-      List<Double> travelTimes = backend.findTimesOnShortestPath(start, end);
-
-      // check if they are empty
-      if (travelTimes.isEmpty() || path.isEmpty()) {
-        return "<p>No path found between " + start + " and " + end + ".</p>";
-      }
-
-      // create a string to concatenate the info together for the shortest paths
-      String shortestPathString = String.format("<p>Shortest path from %s to %s:</p>", start, end);
-      shortestPathString += "<ol>";
+      renderShortestPathResponse(start, end, html);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // a StringBuilder never throws
+    }
+    return html.toString();
+  }
 
-      // add the locations in the list
-      for (String location : path) {
-        shortestPathString += String.format("<li>%s</li>", location);
-      }
-      shortestPathString += "</ol>";
+  /**
+   * Writes the HTML fragment of generateShortestPathResponseHTML to out, one piece at a time, so it
+   * can be streamed into a response without building a String first. Location names and error
+   * messages are HTML escaped.
+   *
+   * @param start is the starting location to find a shortest path from
+   * @param end   is the destination that this shortest path should end at
+   * @param out   is where the HTML is written to
+   * @throws IOException if out can't be written to
+   */
+  @Override
+  public void renderShortestPathResponse(String start, String end, Appendable out)
+      throws IOException {
+    PathResult<String> result;
+    try {
+      //find the path and its travel times from Backend with a single search
+      result = backend.findShortestPath(start, end);
+    } catch (NoSuchElementException e) {
+      out.append("<p>No path found between ");
+      appendEscaped(out, start);
+      out.append(" and ");
+      appendEscaped(out, end);
+      out.append(".</p>");
+      return;
+    } catch (Exception e) {
+      out.append("<p>ERROR: Couldn't find the shortest path between ");
+      appendEscaped(out, start);
+      out.append(" and ");
+      appendEscaped(out, end);
+      out.append(". ");
+      appendEscaped(out, String.valueOf(e.getMessage()));
+      out.append("</p>");
+      return;
+    }
+    List<String> path = result.getNodes();
+    // a StringBuilder can be grown once, to about the length of the whole fragment
+    if (out instanceof StringBuilder)
+      ((StringBuilder) out).ensureCapacity(
+          96 + start.length() + end.length() + estimateListLength(path));
 
-      // find out the total travel time and concatenate it
-      double totalTime = travelTimes.get(travelTimes.size() - 1);
-      shortestPathString += String.format("<p>Total travel time: %.2f units.</p>", totalTime);
+    // describe the start and end of the path
+    out.append("<p>Shortest path from ");
+    appendEscaped(out, start);
+    out.append(" to ");
+    appendEscaped(out, end);
+    out.append(":</p><ol>");
 
-      // return the string
-      return shortestPathString;
-    } catch (Exception e) {
-      return "<p>ERROR: Couldn't find the shortest path between " + start + " and " + end + ". " + e.getMessage() + "</p>";
+    // add the locations in the list
+    for (String location : path) {
+      out.append("<li>");
+      appendEscaped(out, location);
+      out.append("</li>");
     }
+    out.append("</ol>");
+
+    // add the total travel time of the whole path
+    out.append("<p>Total travel time: ");
+    appendFixed2(out, result.getTotalCost());
+    out.append(" units.</p>");
   }
 
   /**
@@ -107,31 +272,199 @@ public class Frontend implements FrontendInterface {
    */
   @Override
   public String generateTenClosestDestinationsResponseHTML(String start) {
-    try {
-      // find the ten closest destinations from backend
-      List<String> closestDestinations = backend.getTenClosestDestinations(start);
-
-      // check if the list is empty
-      if (closestDestinations.isEmpty()) {
-        return "<p>There are no close destinations from " + start + ".</p>";
-      }
+    // the header always says "ten", as it did before the k-based responses
+    return closestDestinationsHTML(start, 10, false);
+  }
 
-      // create a new string that we will later add the destinations to
-      String closestDest = String.format("<p>The ten closest destinations are from %s:</p>", start);
-      closestDest += "<ul>";
+  /**
+   * Returns an HTML fragment like generateTenClosestDestinationsResponseHTML, but listing the k
+   * locations that are closest to start.
+   *
+   * @param start is the starting location to find close destinations from
+   * @param k     is the largest number of destinations to list
+   * @return an HTML string that describes the closest destinations from the specified start
+   * location.
+   */
+  @Override
+  public String generateClosestDestinationsResponseHTML(String start, int k) {
+    return closestDestinationsHTML(start, k, true);
+  }
 
-      // add the destinations
-      for (String location : closestDestinations) {
-        closestDest += String.format("<li>%s</li>", location);
-      }
-      closestDest += "</ul>";
+  // builds the HTML of renderClosestDestinations in a String
+  private String closestDestinationsHTML(String start, int k, boolean countListed) {
+    StringBuilder html = new StringBuilder();
+    try {
+      renderClosestDestinations(start, k, countListed, html);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // a StringBuilder never throws
+    }
+    return html.toString();
+  }
 
-      // return the string
-      return closestDest;
+  /**
+   * Writes the HTML fragment of generateClosestDestinationsResponseHTML to out, one piece at a
+   * time, so it can be streamed into a response without building a String first. Location names
+   * and error messages are HTML escaped.
+   *
+   * @param start is the starting location to find close destinations from
+   * @param k     is the largest number of destinations to list
+   * @param out   is where the HTML is written to
+   * @throws IOException if out can't be written to
+   */
+  @Override
+  public void renderClosestDestinationsResponse(String start, int k, Appendable out)
+      throws IOException {
+    renderClosestDestinations(start, k, true, out);
+  }
 
+  /**
+   * Writes the HTML fragment of renderClosestDestinationsResponse to out. Its header either counts
+   * the destinations that were found (with singular wording for one), or always names k.
+   *
+   * @param start       is the starting location to find close destinations from
+   * @param k           is the largest number of destinations to list
+   * @param countListed is true to count the listed destinations in the header, and false to name k
+   * @param out         is where the HTML is written to
+   * @throws IOException if out can't be written to
+   */
+  private void renderClosestDestinations(String start, int k, boolean countListed, Appendable out)
+      throws IOException {
+    List<String> closestDestinations;
+    try {
+      // find the k closest destinations from backend
+      closestDestinations = backend.getClosestDestinations(start, k);
     } catch (Exception e) {
       //if there's an exception, then the closest destination can't be found
-      return "<p>ERROR: Couldn't find the closest destination from" + start + ". " + e.getMessage() + "</p>";
+      out.append("<p>ERROR: Couldn't find the closest destination from");
+      appendEscaped(out, start);
+      out.append(". ");
+      appendEscaped(out, String.valueOf(e.getMessage()));
+      out.append("</p>");
+      return;
+    }
+
+    // check if the list is empty
+    if (closestDestinations.isEmpty()) {
+      out.append("<p>There are no close destinations from ");
+      appendEscaped(out, start);
+      out.append(".</p>");
+      return;
+    }
+    if (out instanceof StringBuilder)
+      ((StringBuilder) out).ensureCapacity(
+          64 + start.length() + estimateListLength(closestDestinations));
+
+    // describe the start, and how many destinations are listed (which may be
+    // fewer than k)
+    int count = countListed ? closestDestinations.size() : k;
+    if (count == 1) {
+      out.append("<p>The closest destination from ");
+      appendEscaped(out, start);
+      out.append(" is:</p><ul>");
+    } else {
+      out.append("<p>The ");
+      if (count < NUMBER_WORDS.length)
+        out.append(NUMBER_WORDS[count]);
+      else
+        out.append(Integer.toString(count));
+      out.append(" closest destinations are from ");
+      appendEscaped(out, start);
+      out.append(":</p><ul>");
+    }
+
+    // add the destinations
+    for (String location : closestDestinations) {
+      out.append("<li>");
+      appendEscaped(out, location);
+      out.append("</li>");
+    }
+    out.append("</ul>");
+  }
+
+  /**
+   * Returns the length of a list of locations as HTML list items, not counting any escaping.
+   *
+   * @param locations the names of the locations in the list
+   * @return the number of characters that their list items take up
+   */
+  private static int estimateListLength(List<String> locations) {
+    int length = 0;
+    for (String location : locations)
+      length += location.length() + 9; // <li></li>
+    return length;
+  }
+
+  /**
+   * Writes text to out as HTML, by replacing the characters that are special in HTML (&amp;, &lt;,
+   * &gt;, &quot; and ') with their character references. Runs of ordinary characters are written
+   * with a single call, and text without special characters is written as is.
+   *
+   * @param out  is where the escaped text is written to
+   * @param text is the text to escape
+   * @throws IOException if out can't be written to
+   */
+  public static void appendEscaped(Appendable out, CharSequence text) throws IOException {
+    int written = 0;
+    for (int i = 0; i < text.length(); i++) {
+      String reference;
+      switch (text.charAt(i)) {
+        case '&':
+          reference = "&amp;";
+          break;
+        case '<':
+          reference = "&lt;";
+          break;
+        case '>':
+          reference = "&gt;";
+          break;
+        case '"':
+          reference = "&quot;";
+          break;
+        case '\'':
+          reference = "&#39;";
+          break;
+        default:
+          continue;
+      }
+      out.append(text, written, i).append(reference);
+      written = i + 1;
+    }
+    if (written == 0)
+      out.append(text);
+    else
+      out.append(text, written, text.length());
+  }
+
+  /**
+   * Writes a number to out with exactly two digits after the decimal point, as
+   * String.format("%.2f") would in an English locale, but without parsing a format string or
+   * creating any objects.
+   *
+   * @param out   is where the number is written to
+   * @param value is the number to write
+   * @throws IOException if out can't be written to
+   */
+  static void appendFixed2(Appendable out, double value) throws IOException {
+    double scaled = Math.abs(value) * 100;
+    double fraction = scaled - Math.floor(scaled);
+    // numbers that are too large for a long, and numbers that lie so close to halfway between two
+    // hundredths that rounding them depends on their exact decimal digits, are left to format
+    if (!(scaled < 1e15) || Math.abs(fraction - 0.5) < 1e-6) {
+      out.append(String.format(Locale.ROOT, "%.2f", value));
+      return;
     }
+    long hundredths = Math.round(scaled);
+    if (Math.copySign(1.0, value) < 0)
+      out.append('-');
+    // the digits of the whole part, from the most significant one down
+    long whole = hundredths / 100;
+    long power = 1;
+    while (power <= whole / 10)
+      power *= 10;
+    for (; power > 0; power /= 10)
+      out.append((char) ('0' + whole / power % 10));
+    out.append('.');
+    out.append((char) ('0' + hundredths / 10 % 10));
+    out.append((char) ('0' + hundredths % 10));
   }
 }
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 /**
  * This is the interface that a frontend developer will implement.  It will 
  * enable users to access the functionality exposed by the BackendInterface.
@@ -73,4 +75,38 @@ public interface FrontendInterface {
    */
   public String generateTenClosestDestinationsResponseHTML(String start);
 
+  /**
+   * Returns an HTML fragment like generateTenClosestDestinationsResponseHTML,
+   * but listing the k locations that are closest to start.
+   * @param start is the starting location to find close destinations from
+   * @param k is the largest number of destinations to list
+   * @return an HTML string that describes the closest destinations from the
+   *         specified start location.
+   */
+  public String generateClosestDestinationsResponseHTML(String start, int k);
+
+  /**
+   * Writes the HTML fragment of generateShortestPathResponseHTML to an
+   * Appendable (such as a StringBuilder or a Writer), so that it can be
+   * streamed into a response.
+   * @param start is the starting location to find a shortest path from
+   * @param end is the destination that this shortest path should end at
+   * @param out is where the HTML is written to
+   * @throws IOException if out can't be written to
+   */
+  public void renderShortestPathResponse(String start, String end, Appendable out)
+      throws IOException;
+
+  /**
+   * Writes the HTML fragment of generateClosestDestinationsResponseHTML to
+   * an Appendable (such as a StringBuilder or a Writer), so that it can be
+   * streamed into a response.
+   * @param start is the starting location to find close destinations from
+   * @param k is the largest number of destinations to list
+   * @param out is where the HTML is written to
+   * @throws IOException if out can't be written to
+   */
+  public void renderClosestDestinationsResponse(String start, int k, Appendable out)
+      throws IOException;
+
 }
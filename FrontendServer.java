@@ -0,0 +1,513 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class serves a Frontend over HTTP, using the web server that is built
+ * into the JDK (com.sun.net.httpserver). It answers these paths:
+ *   /                        - an HTML page with the prompts of the Frontend,
+ *                              and the script that their buttons call
+ *   /route?start=..&end=..   - the shortest path between two locations, as
+ *                              JSON: {"start", "end", "path", "times",
+ *                              "totalTime"}
+ *   /nearby?from=..&k=..     - the k (10 by default) closest destinations of
+ *                              a location, as JSON: {"from", "k",
+ *                              "destinations"}
+ *   /matrix?from=..&from=..&to=..&to=..
+ *                            - the travel times from every from location to
+ *                              every to location, as JSON: {"from", "to",
+ *                              "times"}, where times[i][j] is null when there
+ *                              is no path
+ *   /fragment/route?start=..&end=..
+ *   /fragment/nearby?from=..&k=..
+ *                            - the same results as the HTML fragments of the
+ *                              Frontend, which the page shows
+ *   /metrics                 - how often fragments were reused, as JSON
+ * Errors of the JSON paths are answered with a JSON object {"error":
+ * message}, and status 400 for a missing or malformed parameter, 404 when
+ * a location or path can't be found, or 500 when the Backend fails in any
+ * other way. The fragments describe their errors themselves, like every
+ * other Frontend response.
+ *
+ * The page and the fragments are sent from the bytes that the Frontend
+ * caches, with a strong ETag. A request whose If-None-Match header names the
+ * current tag is answered with 304 Not Modified and no body, and a fragment
+ * that is still cached for the current graph version is sent without any
+ * query to the Backend.
+ *
+ * Every request runs on its own virtual thread when the JDK has them (21 and
+ * later), so a slow client never holds up the others. Older JDKs fall back to
+ * a cached pool of platform threads. All requests share the Backend of the
+ * Frontend, which can be queried by many threads at once.
+ */
+public class FrontendServer {
+
+  // the port that main listens on, unless another one is provided
+  public static final int DEFAULT_PORT = 8000;
+  // the number of connections that may wait to be accepted
+  protected static final int BACKLOG = 1024;
+  // the most travel times that one /matrix request may ask for
+  protected static final int MAX_MATRIX_CELLS = 250_000;
+
+  protected final Frontend frontend;
+  protected final HttpServer server;
+  protected final ExecutorService executor;
+  // the page, which only changes with the prompts of the frontend
+  protected final HtmlFragment page;
+  // the requests answered with 304 Not Modified, and the bytes they didn't send
+  private final LongAdder notModified = new LongAdder();
+  private final LongAdder bytesNotSent = new LongAdder();
+
+  /**
+   * Creates a server for a Frontend, which listens once it is started.
+   *
+   * @param frontend the frontend to serve, along with its backend
+   * @param port     the port to listen on, or 0 for any free port
+   * @throws IOException if the port can't be bound
+   */
+  public FrontendServer(Frontend frontend, int port) throws IOException {
+    this.frontend = frontend;
+    page = new HtmlFragment("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\">"
+        + "<title>Campus Paths</title></head><body>\n"
+        + frontend.getShortestPathPromptFragment() + "\n"
+        + frontend.getTenClosestDestinationsPromptFragment() + "\n"
+        + "<div id=\"result\"></div>\n<script>\n" + SCRIPT + "</script>\n</body></html>\n");
+    server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+    executor = newRequestExecutor();
+    server.setExecutor(executor);
+    server.createContext("/", this::handlePage);
+    server.createContext("/route", this::handleRoute);
+    server.createContext("/nearby", this::handleNearby);
+    server.createContext("/matrix", this::handleMatrix);
+    server.createContext("/fragment/route", this::handleRouteFragment);
+    server.createContext("/fragment/nearby", this::handleNearbyFragment);
+    server.createContext("/metrics", this::handleMetrics);
+  }
+
+  /**
+   * Creates an executor that runs every task on a new virtual thread. The
+   * method that creates it is looked up by reflection, so this class still
+   * compiles and runs on JDK 17; there (or when virtual threads are a
+   * disabled preview feature) the tasks run on a cached pool of daemon
+   * platform threads instead.
+   *
+   * @return an executor with one thread per running task
+   */
+  public static ExecutorService newRequestExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      AtomicInteger count = new AtomicInteger();
+      ThreadFactory factory = task -> {
+        Thread thread = new Thread(task, "http-request-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+      return Executors.newCachedThreadPool(factory);
+    }
+  }
+
+  /**
+   * Starts answering requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops answering requests, waiting up to a second for the requests that
+   * are running to finish.
+   */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the port that this server listens on, which is only chosen by the
+   * system when the server is created with port 0.
+   *
+   * @return the port number
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  // answers / with the page that contains both prompts
+  private void handlePage(HttpExchange exchange) throws IOException {
+    if (!exchange.getRequestURI().getPath().equals("/")) {
+      sendJson(exchange, 404, errorJson("No such page: " + exchange.getRequestURI().getPath()));
+      return;
+    }
+    sendFragment(exchange, page);
+  }
+
+  // the script behind the buttons of the prompts, which shows the fragment
+  // that the Frontend renders for their request
+  private static final String SCRIPT = String.join("\n",
+      "async function show(url) {",
+      "  const response = await fetch(url);",
+      "  document.getElementById('result').innerHTML = await response.text();",
+      "}",
+      "function findShortestPath() {",
+      "  show('/fragment/route?start=' + encodeURIComponent(document.getElementById('start').value)",
+      "      + '&end=' + encodeURIComponent(document.getElementById('end').value));",
+      "}",
+      "function findTenClosestDestinations() {",
+      "  show('/fragment/nearby?k=10&from='",
+      "      + encodeURIComponent(document.getElementById('from').value));",
+      "}",
+      "");
+
+  // answers /route?start=..&end=.. with the shortest path between them
+  private void handleRoute(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+    String start = parameters.get("start");
+    String end = parameters.get("end");
+    if (start == null || end == null) {
+      sendJson(exchange, 400, errorJson("Both start and end are required."));
+      return;
+    }
+    PathResult<String> result;
+    try {
+      result = frontend.backend.findShortestPath(start, end);
+    } catch (NoSuchElementException e) {
+      sendJson(exchange, 404, errorJson("No path found between " + start + " and " + end + "."));
+      return;
+    } catch (RuntimeException e) {
+      sendServerError(exchange);
+      return;
+    }
+    StringBuilder json = new StringBuilder(64 + 48 * result.getNodes().size());
+    json.append("{\"start\":");
+    appendJsonString(json, start);
+    json.append(",\"end\":");
+    appendJsonString(json, end);
+    json.append(",\"path\":");
+    appendJsonStrings(json, result.getNodes());
+    json.append(",\"times\":[");
+    List<Double> times = result.getLegCosts();
+    for (int i = 0; i < times.size(); i++) {
+      if (i > 0)
+        json.append(',');
+      json.append(times.get(i).doubleValue());
+    }
+    json.append("],\"totalTime\":").append(result.getTotalCost()).append('}');
+    sendJson(exchange, 200, json.toString());
+  }
+
+  // answers /nearby?from=..&k=.. with the closest destinations of from
+  private void handleNearby(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+    String from = parameters.get("from");
+    if (from == null) {
+      sendJson(exchange, 400, errorJson("from is required."));
+      return;
+    }
+    int k;
+    try {
+      k = Integer.parseInt(parameters.getOrDefault("k", "10"));
+    } catch (NumberFormatException e) {
+      k = -1;
+    }
+    if (k < 0) {
+      sendJson(exchange, 400, errorJson("k must be a number of at least 0."));
+      return;
+    }
+    List<String> destinations;
+    try {
+      destinations = frontend.backend.getClosestDestinations(from, k);
+    } catch (NoSuchElementException e) {
+      sendJson(exchange, 404, errorJson("There is no location named " + from + "."));
+      return;
+    } catch (RuntimeException e) {
+      sendServerError(exchange);
+      return;
+    }
+    StringBuilder json = new StringBuilder(64 + 48 * destinations.size());
+    json.append("{\"from\":");
+    appendJsonString(json, from);
+    json.append(",\"k\":").append(k).append(",\"destinations\":");
+    appendJsonStrings(json, destinations);
+    json.append('}');
+    sendJson(exchange, 200, json.toString());
+  }
+
+  // answers /matrix?from=..&to=.. with the travel times between every pair
+  private void handleMatrix(HttpExchange exchange) throws IOException {
+    Map<String, List<String>> parameters = parseQueryValues(exchange.getRequestURI());
+    List<String> from = parameters.getOrDefault("from", List.of());
+    List<String> to = parameters.getOrDefault("to", List.of());
+    if (from.isEmpty() || to.isEmpty()) {
+      sendJson(exchange, 400, errorJson("At least one from and one to are required."));
+      return;
+    }
+    if ((long) from.size() * to.size() > MAX_MATRIX_CELLS) {
+      sendJson(exchange, 400, errorJson("At most " + MAX_MATRIX_CELLS + " travel times can be "
+          + "requested at once."));
+      return;
+    }
+    double[][] times;
+    try {
+      times = frontend.backend.findTravelTimeMatrix(from, to);
+    } catch (NoSuchElementException e) {
+      sendJson(exchange, 404, errorJson(e.getMessage() + "."));
+      return;
+    } catch (RuntimeException e) {
+      sendServerError(exchange);
+      return;
+    }
+    StringBuilder json = new StringBuilder(64 + 24 * (from.size() + to.size())
+        + 12 * from.size() * to.size());
+    json.append("{\"from\":");
+    appendJsonStrings(json, from);
+    json.append(",\"to\":");
+    appendJsonStrings(json, to);
+    json.append(",\"times\":[");
+    for (int i = 0; i < times.length; i++) {
+      json.append(i > 0 ? ",[" : "[");
+      for (int j = 0; j < times[i].length; j++) {
+        if (j > 0)
+          json.append(',');
+        // JSON has no infinity
+        if (times[i][j] == Double.POSITIVE_INFINITY)
+          json.append("null");
+        else
+          json.append(times[i][j]);
+      }
+      json.append(']');
+    }
+    json.append("]}");
+    sendJson(exchange, 200, json.toString());
+  }
+
+  // answers /fragment/route?start=..&end=.. with the Frontend's HTML
+  private void handleRouteFragment(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+    String start = parameters.getOrDefault("start", "");
+    String end = parameters.getOrDefault("end", "");
+    sendFragment(exchange, frontend.getShortestPathResponseFragment(start, end));
+  }
+
+  // answers /fragment/nearby?from=..&k=.. with the Frontend's HTML
+  private void handleNearbyFragment(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+    String from = parameters.getOrDefault("from", "");
+    int k;
+    try {
+      k = Integer.parseInt(parameters.getOrDefault("k", "10"));
+    } catch (NumberFormatException e) {
+      k = 10;
+    }
+    sendFragment(exchange, frontend.getClosestDestinationsResponseFragment(from, Math.max(0, k)));
+  }
+
+  // sends an HTML fragment with its ETag, or only a 304 if the client has it
+  private void sendFragment(HttpExchange exchange, HtmlFragment fragment) throws IOException {
+    exchange.getResponseHeaders().set("ETag", fragment.getETag());
+    // the fragments change with the graph, so clients have to check them every time
+    exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+    if (fragment.isMatchedBy(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      notModified.increment();
+      bytesNotSent.add(fragment.getLength());
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
+    }
+    exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+    exchange.sendResponseHeaders(200, fragment.getLength());
+    try (OutputStream out = exchange.getResponseBody()) {
+      fragment.writeTo(out);
+    }
+  }
+
+  // answers /metrics with the counters of the fragment cache and of 304s
+  private void handleMetrics(HttpExchange exchange) throws IOException {
+    LruCache<List<Object>, HtmlFragment> cache = frontend.getFragmentCache();
+    sendJson(exchange, 200, "{\"fragmentHits\":" + cache.getHits()
+        + ",\"fragmentMisses\":" + cache.getMisses()
+        + ",\"fragmentHitRatio\":" + frontend.getFragmentHitRatio()
+        + ",\"fragmentBytesSaved\":" + frontend.getFragmentBytesSaved()
+        + ",\"notModified\":" + getNotModifiedCount()
+        + ",\"bytesNotSent\":" + getBytesNotSent() + "}");
+  }
+
+  /**
+   * Returns the number of requests that were answered with 304 Not Modified,
+   * because the client already had the current fragment.
+   *
+   * @return the number of 304 responses
+   */
+  public long getNotModifiedCount() {
+    return notModified.sum();
+  }
+
+  /**
+   * Returns the total size of the fragments that didn't have to be sent,
+   * because they were answered with 304 Not Modified.
+   *
+   * @return the number of body bytes saved by 304 responses
+   */
+  public long getBytesNotSent() {
+    return bytesNotSent.sum();
+  }
+
+  /**
+   * Decodes the parameters in the query of a request URI. When a parameter
+   * appears more than once, its first value is kept.
+   *
+   * @param uri the URI of a request
+   * @return the decoded value of every parameter, by name
+   */
+  protected static Map<String, String> parseQuery(URI uri) {
+    Map<String, String> parameters = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : parseQueryValues(uri).entrySet())
+      parameters.put(entry.getKey(), entry.getValue().get(0));
+    return parameters;
+  }
+
+  /**
+   * Decodes the parameters in the query of a request URI, keeping every
+   * value of a parameter that appears more than once.
+   *
+   * @param uri the URI of a request
+   * @return the decoded values of every parameter, by name, in the order
+   *         they appear in the query
+   */
+  protected static Map<String, List<String>> parseQueryValues(URI uri) {
+    Map<String, List<String>> parameters = new HashMap<>();
+    String query = uri.getRawQuery();
+    if (query == null)
+      return parameters;
+    for (String pair : query.split("&")) {
+      if (pair.isEmpty())
+        continue;
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      try {
+        String decodedName = URLDecoder.decode(name, StandardCharsets.UTF_8);
+        String decodedValue = URLDecoder.decode(value, StandardCharsets.UTF_8);
+        parameters.computeIfAbsent(decodedName, key -> new ArrayList<>()).add(decodedValue);
+      } catch (IllegalArgumentException e) {
+        // a malformed % escape; the parameter is left out
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Appends a string to a JSON document as a quoted JSON string, escaping
+   * the characters that JSON requires to be escaped.
+   *
+   * @param json  the document to append to
+   * @param value the string to append
+   */
+  protected static void appendJsonString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+
+  // appends a list of strings to a JSON document as an array
+  private static void appendJsonStrings(StringBuilder json, List<String> values) {
+    json.append('[');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0)
+        json.append(',');
+      appendJsonString(json, values.get(i));
+    }
+    json.append(']');
+  }
+
+  // answers a request that failed for a reason other than its parameters, so
+  // the client gets a status instead of a dropped connection
+  private static void sendServerError(HttpExchange exchange) throws IOException {
+    sendJson(exchange, 500, errorJson("The server failed to answer this request."));
+  }
+
+  // builds the body of an error response
+  private static String errorJson(String message) {
+    StringBuilder json = new StringBuilder(message.length() + 16);
+    json.append("{\"error\":");
+    appendJsonString(json, message);
+    return json.append('}').toString();
+  }
+
+  private static void sendJson(HttpExchange exchange, int status, String json)
+      throws IOException {
+    send(exchange, status, "application/json; charset=utf-8", json);
+  }
+
+  // sends a complete response and closes the exchange
+  private static void send(HttpExchange exchange, int status, String contentType, String body)
+      throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Loads a DOT file and serves it until the process is stopped.
+   *
+   * Run with: java FrontendServer [dot file] [port]
+   *
+   * @param args the DOT file to load (campus.dot by default) and the port to
+   *             listen on (8000 by default)
+   * @throws IOException if the file can't be loaded or the port can't be
+   *                     bound
+   */
+  public static void main(String[] args) throws IOException {
+    String filename = args.length > 0 ? args[0] : "campus.dot";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+    Backend backend = new Backend(new DijkstraGraph<>());
+    backend.loadGraphData(filename);
+    FrontendServer server = new FrontendServer(new Frontend(backend), port);
+    server.start();
+    System.out.println("Serving " + filename + " on http://localhost:" + server.getPort() + "/");
+  }
+}
@@ -2,7 +2,15 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 
 public class FrontendTests {
   /**
@@ -253,4 +261,197 @@ public class FrontendTests {
     assertTrue(html.contains("<p>Total travel time: "), "Expected total travel time missing.");
   }
 
+  /**
+   * Tests that a FrontendServer serves the page with both prompts, and answers the route and
+   * nearby endpoints with JSON from the shared backend, or with an error status and message.
+   */
+  @Test
+  public void testFrontendServer() throws IOException {
+    //create a frontend with a location whose name needs escaping in JSON
+    Graph_Placeholder graph = new Graph_Placeholder();
+    graph.insertNode("Say \"Hi\"");
+    FrontendServer server = new FrontendServer(new Frontend(new Backend(graph)), 0);
+    server.start();
+    try {
+      String base = "http://localhost:" + server.getPort();
+      //the page contains both prompts and the functions their buttons call
+      String[] page = fetch(base + "/");
+      assertEquals("200", page[0]);
+      assertTrue(page[1].contains("id=\"start\""));
+      assertTrue(page[1].contains("id=\"from\""));
+      assertTrue(page[1].contains("function findShortestPath()"));
+      assertTrue(page[1].contains("function findTenClosestDestinations()"));
+      //a route lists the locations and times along the path
+      String[] route = fetch(base + "/route?start=" + encode("Union South") + "&end="
+          + encode("Atmospheric, Oceanic and Space Sciences"));
+      assertEquals("200", route[0]);
+      assertEquals("{\"start\":\"Union South\",\"end\":\"Atmospheric, Oceanic and Space Sciences\","
+          + "\"path\":[\"Union South\",\"Computer Sciences and Statistics\","
+          + "\"Atmospheric, Oceanic and Space Sciences\"],\"times\":[1.0,2.0],\"totalTime\":3.0}",
+          route[1]);
+      //nearby lists the k closest destinations, and escapes quotes in names
+      String[] nearby = fetch(base + "/nearby?from=" + encode("Say \"Hi\"") + "&k=1");
+      assertEquals("200", nearby[0]);
+      assertEquals("{\"from\":\"Say \\\"Hi\\\"\",\"k\":1,"
+          + "\"destinations\":[\"Atmospheric, Oceanic and Space Sciences\"]}", nearby[1]);
+      //missing or malformed parameters, and unknown locations, are errors
+      assertEquals("400", fetch(base + "/route?start=Union+South")[0]);
+      assertEquals("400", fetch(base + "/nearby?from=Union+South&k=ten")[0]);
+      String[] missing = fetch(base + "/nearby?from=Nowhere");
+      assertEquals("404", missing[0]);
+      assertEquals("{\"error\":\"There is no location named Nowhere.\"}", missing[1]);
+      assertEquals("404", fetch(base + "/route?start=Nowhere&end=Union+South")[0]);
+      //the matrix has the travel time from every from location to every to location
+      String[] matrix = fetch(base + "/matrix?from=Union+South&to="
+          + encode("Atmospheric, Oceanic and Space Sciences") + "&to="
+          + encode("Computer Sciences and Statistics"));
+      assertEquals("200", matrix[0]);
+      assertEquals("{\"from\":[\"Union South\"],\"to\":[\"Atmospheric, Oceanic and Space Sciences\","
+          + "\"Computer Sciences and Statistics\"],\"times\":[[3.0,1.0]]}", matrix[1]);
+      assertEquals("400", fetch(base + "/matrix?from=Union+South")[0]);
+      assertEquals("404", fetch(base + "/matrix?from=Union+South&to=Nowhere")[0]);
+      //the fragments are the Frontend's HTML
+      String[] fragment = fetch(base + "/fragment/nearby?k=1&from=" + encode("Say \"Hi\""));
+      assertEquals("200", fragment[0]);
+      assertEquals("<p>The closest destination from Say &quot;Hi&quot; is:</p>"
+          + "<ul><li>Atmospheric, Oceanic and Space Sciences</li></ul>", fragment[1]);
+    } finally {
+      server.stop();
+    }
+
+    //a backend that fails is answered with a 500 instead of a dropped connection
+    Graph_Placeholder broken = new Graph_Placeholder() {
+      @Override
+      public PathResult<String> shortestPath(String start, String end) {
+        throw new IllegalStateException("broken graph");
+      }
+    };
+    server = new FrontendServer(new Frontend(new Backend(broken)), 0);
+    server.start();
+    try {
+      String[] failed = fetch("http://localhost:" + server.getPort() + "/route?start="
+          + encode("Union South") + "&end=" + encode("Computer Sciences and Statistics"));
+      assertEquals("500", failed[0]);
+      assertEquals("{\"error\":\"The server failed to answer this request.\"}", failed[1]);
+    } finally {
+      server.stop();
+    }
+  }
+
+  // sends a GET request, and returns its status code and body
+  private static String[] fetch(String url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    int status = connection.getResponseCode();
+    try (InputStream in = status < 400 ? connection.getInputStream()
+        : connection.getErrorStream()) {
+      return new String[] {String.valueOf(status),
+          new String(in.readAllBytes(), StandardCharsets.UTF_8)};
+    }
+  }
+
+  // encodes a location name for the query of a URL
+  private static String encode(String location) {
+    return URLEncoder.encode(location, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Tests that the streaming renderers write the same HTML as the String methods, and that they
+   * escape location names and format travel times like String.format.
+   */
+  @Test
+  public void testRenderEscapesHtml() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("Water Science & Engineering");
+    graph.insertNode("McDonald's <Union>");
+    graph.insertEdge("Water Science & Engineering", "McDonald's <Union>", 1.005);
+    Frontend frontend = new Frontend(new Backend(graph));
+    //the route is escaped, and written the same way to a Writer as to a String
+    StringWriter out = new StringWriter();
+    frontend.renderShortestPathResponse("Water Science & Engineering", "McDonald's <Union>", out);
+    assertEquals("<p>Shortest path from Water Science &amp; Engineering to McDonald&#39;s "
+        + "&lt;Union&gt;:</p><ol><li>Water Science &amp; Engineering</li><li>McDonald&#39;s "
+        + "&lt;Union&gt;</li></ol><p>Total travel time: 1.01 units.</p>", out.toString());
+    assertEquals(out.toString(), frontend.generateShortestPathResponseHTML(
+        "Water Science & Engineering", "McDonald's <Union>"));
+    //so are the closest destinations, and the message when there is no path; the header counts
+    //the destinations that were found, not the two that were asked for
+    out = new StringWriter();
+    frontend.renderClosestDestinationsResponse("Water Science & Engineering", 2, out);
+    assertEquals("<p>The closest destination from Water Science &amp; Engineering is:</p>"
+        + "<ul><li>McDonald&#39;s &lt;Union&gt;</li></ul>", out.toString());
+    assertEquals("<p>No path found between McDonald&#39;s &lt;Union&gt; and Water Science &amp; "
+        + "Engineering.</p>", frontend.generateShortestPathResponseHTML("McDonald's <Union>",
+        "Water Science & Engineering"));
+    //travel times are rounded to two decimals just like String.format does
+    for (double time : new double[] {0.0, 0.004, 0.005, 0.125, 1.005, 2.675, 9.995, 12.5,
+        99.999, 1234.5678, -0.001, -3.14159, 1e17}) {
+      StringBuilder formatted = new StringBuilder();
+      Frontend.appendFixed2(formatted, time);
+      assertEquals(String.format(Locale.ROOT, "%.2f", time), formatted.toString());
+    }
+  }
+
+  /**
+   * Tests that rendered responses are reused until the graph changes, without asking the backend
+   * again, and that the server answers a request for a fragment the client has with 304.
+   */
+  @Test
+  public void testFragmentCache() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    graph.insertNode("A");
+    graph.insertNode("B");
+    graph.insertNode("C");
+    graph.insertEdge("A", "B", 2.0);
+    graph.insertEdge("B", "C", 3.0);
+    Backend backend = new Backend(graph);
+    Frontend frontend = new Frontend(backend);
+    //the prompts are encoded once
+    assertEquals(frontend.generateShortestPathPromptHTML(),
+        frontend.getShortestPathPromptFragment().toString());
+    assertTrue(frontend.getTenClosestDestinationsPromptFragment()
+        == frontend.getTenClosestDestinationsPromptFragment());
+    //the second request for a route is served from the cache, and never reaches the backend
+    HtmlFragment route = frontend.getShortestPathResponseFragment("A", "C");
+    assertEquals(frontend.generateShortestPathResponseHTML("A", "C"), route.toString());
+    long backendLookups = backend.getPathCache().getHits() + backend.getPathCache().getMisses();
+    assertTrue(route == frontend.getShortestPathResponseFragment("A", "C"));
+    assertEquals(backendLookups,
+        backend.getPathCache().getHits() + backend.getPathCache().getMisses());
+    assertEquals(route.getLength(), frontend.getFragmentBytesSaved());
+    assertEquals(0.5, frontend.getFragmentHitRatio());
+    //a shortcut changes the graph's version, and so the route and its ETag
+    graph.insertEdge("A", "C", 1.0);
+    HtmlFragment shortcut = frontend.getShortestPathResponseFragment("A", "C");
+    assertTrue(shortcut.toString().contains("Total travel time: 1.00 units."));
+    assertTrue(!shortcut.getETag().equals(route.getETag()));
+    assertEquals(route.getETag(), new HtmlFragment(route.toString()).getETag());
+    //tags match exactly, weakly, in lists, or by *
+    assertTrue(shortcut.isMatchedBy(shortcut.getETag()));
+    assertTrue(shortcut.isMatchedBy("\"x\", W/" + shortcut.getETag()));
+    assertTrue(shortcut.isMatchedBy("*"));
+    assertTrue(!shortcut.isMatchedBy(route.getETag()));
+    assertTrue(!shortcut.isMatchedBy(null));
+
+    FrontendServer server = new FrontendServer(frontend, 0);
+    server.start();
+    try {
+      URL url = new URL("http://localhost:" + server.getPort() + "/fragment/route?start=A&end=C");
+      HttpURLConnection first = (HttpURLConnection) url.openConnection();
+      assertEquals(200, first.getResponseCode());
+      assertEquals(shortcut.getETag(), first.getHeaderField("ETag"));
+      first.getInputStream().readAllBytes();
+      //a client that already has the fragment gets a 304 without a body
+      HttpURLConnection second = (HttpURLConnection) url.openConnection();
+      second.setRequestProperty("If-None-Match", shortcut.getETag());
+      assertEquals(304, second.getResponseCode());
+      assertEquals(1, server.getNotModifiedCount());
+      assertEquals(shortcut.getLength(), server.getBytesNotSent());
+      String[] metrics = fetch("http://localhost:" + server.getPort() + "/metrics");
+      assertEquals("200", metrics[0]);
+      assertTrue(metrics[1].contains("\"notModified\":1,"));
+    } finally {
+      server.stop();
+    }
+  }
+
 }
@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -106,6 +107,21 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    */
   public int getEdgeCount();
 
+  /**
+   * Remove every node and edge from the graph.
+   */
+  public void clear();
+
+  /**
+   * Returns a number that changes whenever the nodes or edges of the graph
+   * change (through insertNode, removeNode, insertEdge, removeEdge, clear, or
+   * any other change), so results computed from the graph can be cached
+   * until it differs. A graph that never changes may always return 0.
+   *
+   * @return the current version of the graph
+   */
+  public long getVersion();
+
   /**
    * Returns the list of data values from nodes along the shortest path from 
    * the node with the provided start value through the node with the provided
@@ -138,4 +154,36 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    */
   public double shortestPathCost(NodeType start, NodeType end);
 
+  /**
+   * Finds the shortest path from the node containing the start data to the 
+   * node containing the end data, and returns everything about it from that
+   * one search: the node data along the path, the cost of each edge along 
+   * it, the cumulative cost to each node and the total cost.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end the data item in the destination node for the path
+   * @return the nodes and costs along this shortest path
+   * @throws NoSuchElementException if either the start or end node cannot
+   *         be found in the graph, or if there is no directed path from the
+   *         start node to the end node
+   */
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end);
+
+  /**
+   * Returns the (up to) k nodes that can be reached most cheaply from the
+   * node containing the start data, not counting the start node itself.
+   * Since Dijkstra's algorithm settles nodes in order of their cost, the
+   * search stops as soon as k nodes other than the start are settled, rather
+   * than computing the cost of every reachable node.
+   *
+   * @param start the data item in the node to search from
+   * @param k the largest number of nodes to return
+   * @return a map from the data of each of those nodes to the cost of the
+   *         shortest path to it, iterating in order of increasing cost
+   * @throws NoSuchElementException if the start node cannot be found in the
+   *         graph
+   * @throws IllegalArgumentException if k is negative
+   */
+  public Map<NodeType, Double> nearestK(NodeType start, int k);
+
 }
@@ -0,0 +1,1237 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This class is a small timing harness for the graph classes in this project.
+ * It builds synthetic walking networks of increasing size (from a campus-sized
+ * graph of about 160 nodes up to a city-sized graph of 100k nodes) and
+ * reports the average time per shortest path query.
+ *
+ * Run with: java GraphBenchmark [benchmark] [queries]
+ * where benchmark is one of:
+ *   dijkstra - query time of DijkstraGraph at each graph size (default)
+ *   arity    - query time with 2-, 4- and 8-ary frontier heaps
+ *   csr      - heap bytes per edge of the linked graph and of its snapshot
+ *   map      - lookup, miss and memory cost of each DijkstraGraph.MapType
+ *   strategy - settled nodes and query time of each SearchStrategy
+ *   alt      - preprocessing time, memory and speedup by landmark count
+ *   ch       - preprocessing time, size and speedup of a ContractionHierarchy
+ *   load     - time to parse and to load a DOT file with about 1M edges
+ *   snapshot - time and heap to load a binary snapshot instead of a DOT file
+ *   hubs     - time to build a graph with high-degree hubs, edge by edge or in bulk
+ *   cache    - hit ratio and time per query of the Backend's result cache
+ *   trees    - time per query with shortest path trees cached per source
+ *   allpairs - build time, memory and query time of an AllPairsIndex
+ *   threads  - query throughput of one shared graph from 1 to 2x cores threads
+ *   contention - throughput of concurrent maps under mixed get/put workloads
+ *   server   - latency and throughput of a FrontendServer with 1k clients
+ *   render   - bytes allocated per Frontend render for 10- to 1000-stop paths
+ *   batch    - findShortestPaths against one query per origin/destination pair
+ *   matrix   - many-to-many travel time matrices, with and without a hierarchy
+ */
+public class GraphBenchmark {
+
+  // the graph sizes that every benchmark is run against
+  protected static final int[] NODE_COUNTS = {160, 1_000, 10_000, 100_000};
+
+  /**
+   * Builds a grid shaped walking network with about nodeCount nodes. Each node
+   * has two-way edges to its neighbors to the right and below, plus one
+   * diagonal shortcut, so nodes have about five edges leaving them (similar to
+   * campus.dot). Nodes are placed about 100 meters apart, starting near
+   * Madison, and edge weights are walking times in seconds: the time to walk
+   * the straight line between two nodes at 1.4 m/s, stretched by a random
+   * detour of up to 50%.
+   *
+   * @param nodeCount the approximate number of nodes to create
+   * @param seed      the seed for the random edge weights
+   * @return the generated graph, with nodes named "n0", "n1", ...
+   */
+  public static DijkstraGraph<String, Double> gridGraph(int nodeCount, long seed) {
+    return gridGraph(new DijkstraGraph<>(), nodeCount, seed);
+  }
+
+  /**
+   * Adds the nodes and edges of a grid shaped walking network (as described
+   * above) to the provided empty graph.
+   *
+   * @param graph     the empty graph to add nodes and edges to
+   * @param nodeCount the approximate number of nodes to create
+   * @param seed      the seed for the random edge weights
+   * @return the provided graph
+   */
+  public static <G extends BaseGraph<String, Double>> G gridGraph(G graph, int nodeCount,
+      long seed) {
+    Random random = new Random(seed);
+    int width = (int) Math.ceil(Math.sqrt(nodeCount));
+    int height = (nodeCount + width - 1) / width;
+    for (int i = 0; i < width * height; i++) {
+      graph.insertNode("n" + i);
+      graph.setNodeCoordinates("n" + i, 43.07 + (i / width) * 0.0009, -89.40 + (i % width) * 0.0012);
+    }
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int id = row * width + col;
+        if (col + 1 < width)
+          insertTwoWay(graph, id, id + 1, 70.0, random);
+        if (row + 1 < height)
+          insertTwoWay(graph, id, id + width, 70.0, random);
+        if (col + 1 < width && row + 1 < height && random.nextInt(4) == 0)
+          insertTwoWay(graph, id, id + width + 1, 99.0, random);
+      }
+    }
+    return graph;
+  }
+
+  private static void insertTwoWay(BaseGraph<String, Double> graph, int a, int b,
+      double straightSeconds, Random random) {
+    double seconds = Math.round(straightSeconds * (1.0 + random.nextDouble() / 2) * 10) / 10.0;
+    graph.insertEdge("n" + a, "n" + b, seconds);
+    graph.insertEdge("n" + b, "n" + a, seconds);
+  }
+
+  /**
+   * Measures the average time of random shortestPathCost queries.
+   *
+   * @param graph   the graph to query
+   * @param queries the number of timed queries to run
+   * @param seed    the seed used to pick random start and end nodes
+   * @return the average time per query in microseconds
+   */
+  public static double timeQueries(GraphADT<String, Double> graph, int queries, long seed) {
+    Random random = new Random(seed);
+    int nodeCount = graph.getNodeCount();
+    // warm up the JIT before timing anything
+    for (int i = 0; i < queries; i++)
+      graph.shortestPathCost("n" + random.nextInt(nodeCount), "n" + random.nextInt(nodeCount));
+    long start = System.nanoTime();
+    for (int i = 0; i < queries; i++)
+      graph.shortestPathCost("n" + random.nextInt(nodeCount), "n" + random.nextInt(nodeCount));
+    return (System.nanoTime() - start) / 1000.0 / queries;
+  }
+
+  /**
+   * Times DijkstraGraph queries at every graph size.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkDijkstra(int queries) {
+    System.out.println("nodes\tedges\tavg query (us)");
+    for (int nodeCount : NODE_COUNTS) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      double micros = timeQueries(graph, queries, 7);
+      System.out.printf("%d\t%d\t%.1f%n", graph.getNodeCount(), graph.getEdgeCount(), micros);
+    }
+  }
+
+  /**
+   * Times DijkstraGraph queries on a campus-sized and a city-sized graph,
+   * using frontier heaps with 2, 4 and 8 children per heap node.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkArity(int queries) {
+    System.out.println("nodes\tarity\tavg query (us)");
+    for (int nodeCount : new int[] {NODE_COUNTS[0], NODE_COUNTS[NODE_COUNTS.length - 1]}) {
+      for (int arity : new int[] {2, 4, 8}) {
+        DijkstraGraph<String, Double> graph = gridGraph(DijkstraGraph.withArity(arity), nodeCount, 42);
+        double micros = timeQueries(graph, queries, 7);
+        System.out.printf("%d\t%d\t%.1f%n", graph.getNodeCount(), arity, micros);
+      }
+    }
+  }
+
+  /**
+   * Measures the heap memory used by the linked representation of each graph
+   * and by its compressed sparse row snapshot, along with the query time.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkCsr(int queries) {
+    System.out.println("nodes\tedges\tlinked B/edge\tcsr B/edge\tavg query (us)");
+    for (int nodeCount : NODE_COUNTS) {
+      long before = usedMemory();
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      long linked = usedMemory();
+      graph.freeze();
+      long frozen = usedMemory();
+      double micros = timeQueries(graph, queries, 7);
+      int edges = graph.getEdgeCount();
+      System.out.printf("%d\t%d\t%.1f\t\t%.1f\t\t%.1f%n", graph.getNodeCount(), edges,
+          (linked - before) / (double) edges, (frozen - linked) / (double) edges, micros);
+    }
+  }
+
+  /**
+   * Compares the MapADT implementations that DijkstraGraph can use: the time
+   * per successful get, the time per containsKey miss, the heap bytes per
+   * entry, and the resulting shortest path query time.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkMap(int queries) {
+    System.out.println("entries\tmap\t\tget (ns)\tmiss (ns)\tB/entry\tavg query (us)");
+    for (int nodeCount : NODE_COUNTS) {
+      for (DijkstraGraph.MapType mapType : DijkstraGraph.MapType.values()) {
+        String[] hits = new String[nodeCount];
+        String[] misses = new String[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+          hits[i] = "n" + i;
+          misses[i] = "m" + i;
+        }
+        long before = usedMemory();
+        MapADT<String, Integer> map = mapType.createMap(64);
+        for (int i = 0; i < nodeCount; i++)
+          map.put(hits[i], i);
+        long after = usedMemory();
+
+        int rounds = Math.max(1, 2_000_000 / nodeCount);
+        long sum = 0;
+        for (int warmup = 0; warmup < 10; warmup++) {
+          for (int round = 0; round < rounds; round++)
+            for (String key : hits)
+              sum += map.get(key);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++)
+          for (String key : hits)
+            sum += map.get(key);
+        double getNanos = (System.nanoTime() - start) / (double) rounds / nodeCount;
+        for (int round = 0; round < rounds; round++)
+          for (String key : misses)
+            sum += map.containsKey(key) ? 1 : 0;
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++)
+          for (String key : misses)
+            sum += map.containsKey(key) ? 1 : 0;
+        double missNanos = (System.nanoTime() - start) / (double) rounds / nodeCount;
+
+        DijkstraGraph<String, Double> graph = gridGraph(
+            DijkstraGraph.withMap(mapType, DijkstraGraph.DEFAULT_HEAP_ARITY), nodeCount, 42);
+        double micros = timeQueries(graph, queries, 7);
+        System.out.printf("%d\t%-15s\t%.1f\t\t%.1f\t\t%.1f\t%.1f%s%n", nodeCount, mapType,
+            getNanos, missNanos, (after - before) / (double) nodeCount, micros,
+            sum == 42 ? " " : "");
+      }
+    }
+  }
+
+  /**
+   * Compares the average number of settled nodes and the query time of each
+   * search strategy, using the same random queries for every strategy.
+   *
+   * @param queries the number of timed queries per graph and strategy
+   */
+  public static void benchmarkStrategies(int queries) {
+    System.out.println("nodes\tstrategy\tavg settled\tavg query (us)");
+    for (int nodeCount : NODE_COUNTS) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      for (SearchStrategy strategy : SearchStrategy.values()) {
+        graph.setSearchStrategy(strategy);
+        double micros = timeQueries(graph, queries, 7);
+        // count settled nodes separately, so counting doesn't affect timing
+        Random random = new Random(7);
+        long settled = 0;
+        for (int i = 0; i < queries; i++) {
+          graph.shortestPathCost("n" + random.nextInt(graph.getNodeCount()),
+              "n" + random.nextInt(graph.getNodeCount()));
+          settled += graph.freeze().getSettledCount();
+        }
+        System.out.printf("%d\t%-13s\t%.0f\t\t%.1f%n", graph.getNodeCount(), strategy,
+            settled / (double) queries, micros);
+      }
+    }
+  }
+
+  /**
+   * Compares ALT searches with different numbers of landmarks against plain
+   * Dijkstra searches, on the two largest graph sizes.
+   *
+   * @param queries the number of timed queries per graph and landmark count
+   */
+  public static void benchmarkLandmarks(int queries) {
+    System.out.println("nodes\tlandmarks\tbuild (ms)\ttable (MB)\tavg settled\tavg query (us)");
+    for (int nodeCount : new int[] {NODE_COUNTS[2], NODE_COUNTS[3]}) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      for (int landmarks : new int[] {0, 1, 2, 4, 8, 16}) {
+        long start = System.nanoTime();
+        if (landmarks > 0) {
+          graph.setSearchStrategy(SearchStrategy.ALT);
+          graph.preprocessLandmarks(landmarks);
+        }
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        LandmarkIndex index = graph.freeze().getLandmarks();
+        double tableMegabytes = index == null ? 0.0 : index.getTableBytes() / 1e6;
+        double micros = timeQueries(graph, queries, 7);
+        Random random = new Random(7);
+        long settled = 0;
+        for (int i = 0; i < queries; i++) {
+          graph.shortestPathCost("n" + random.nextInt(graph.getNodeCount()),
+              "n" + random.nextInt(graph.getNodeCount()));
+          settled += graph.freeze().getSettledCount();
+        }
+        System.out.printf("%d\t%d\t\t%.0f\t\t%.1f\t\t%.0f\t\t%.1f%n", graph.getNodeCount(),
+            landmarks, buildMillis, tableMegabytes, settled / (double) queries, micros);
+      }
+    }
+  }
+
+  /**
+   * Compares queries on a contraction hierarchy against Dijkstra searches of
+   * the same graph at every graph size, and checks that both find paths of
+   * the same cost for every query.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkHierarchy(int queries) {
+    System.out.println("nodes\tbuild (ms)\tshortcuts\tavg settled\tdijkstra (us)\tch (us)"
+        + "\tmismatches");
+    for (int nodeCount : NODE_COUNTS) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      long start = System.nanoTime();
+      ContractionHierarchy<String> hierarchy = graph.buildContractionHierarchy();
+      double buildMillis = (System.nanoTime() - start) / 1e6;
+      double dijkstraMicros = timeQueries(graph, queries, 7);
+      double hierarchyMicros = timeQueries(hierarchy, queries, 7);
+      Random random = new Random(7);
+      long settled = 0;
+      int mismatches = 0;
+      for (int i = 0; i < queries; i++) {
+        String from = "n" + random.nextInt(graph.getNodeCount());
+        String to = "n" + random.nextInt(graph.getNodeCount());
+        double cost = hierarchy.shortestPathCost(from, to);
+        settled += hierarchy.getSettledCount();
+        if (Math.abs(cost - graph.shortestPathCost(from, to)) > 1e-6)
+          mismatches++;
+      }
+      System.out.printf("%d\t%.0f\t\t%d\t\t%.0f\t\t%.1f\t\t%.1f\t%d%n", graph.getNodeCount(),
+          buildMillis, hierarchy.getShortcutCount(), settled / (double) queries, dijkstraMicros,
+          hierarchyMicros, mismatches);
+    }
+  }
+
+  /**
+   * Writes a graph to a DOT file in the format of campus.dot, with one edge
+   * statement per line.
+   *
+   * @param graph the graph to write
+   * @param file  the file to write to
+   */
+  protected static void writeDot(ImmutableCsrGraph<String> graph, Path file) throws IOException {
+    List<String> nodes = graph.getAllNodes(); // ordered by node id
+    try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+      writer.write("digraph grid {\n");
+      for (int from = 0; from < graph.getNodeCount(); from++)
+        for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++)
+          writer.write("    \"" + nodes.get(from) + "\" -> \"" + nodes.get(graph.targets[edge])
+              + "\" [seconds=" + graph.weights[edge] + "];\n");
+      writer.write("}\n");
+    }
+  }
+
+  /**
+   * Writes a grid graph with about 1M edges to a temporary DOT file in the
+   * format of campus.dot, then times parsing it (without building a graph)
+   * and loading it into a DijkstraGraph through Backend, both in one piece
+   * and in memory-mapped chunks on 1, 4 and 16 threads.
+   *
+   * @param runs the number of timed runs of each, of which the best is shown
+   */
+  public static void benchmarkLoad(int runs) throws IOException {
+    ImmutableCsrGraph<String> grid = gridGraph(200_000, 42).freeze();
+    Path file = Files.createTempFile("graph", ".dot");
+    try {
+      writeDot(grid, file);
+      double megabytes = Files.size(file) / 1e6;
+      int edgeCount = grid.getEdgeCount();
+      System.out.printf("%d edges, %.1f MB (best of %d runs)%n", edgeCount, megabytes, runs);
+      System.out.println("loader\t\tthreads\tparse (ms)\tMB/s\tload (ms)\tedges/s");
+      double parseMillis = Double.MAX_VALUE;
+      double loadMillis = Double.MAX_VALUE;
+      for (int run = 1; run <= runs; run++) {
+        int[] edges = new int[1];
+        long start = System.nanoTime();
+        DotParser.parse(file, new DotParser.Handler() {
+          @Override
+          public void node(String id, DotParser.Attributes attributes) {
+          }
+
+          @Override
+          public void edge(String from, String to, DotParser.Attributes attributes) {
+            if (attributes.getDouble("seconds") > 0)
+              edges[0]++;
+          }
+        });
+        parseMillis = Math.min(parseMillis, (System.nanoTime() - start) / 1e6);
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        start = System.nanoTime();
+        new Backend(graph).loadGraphData(file.toString());
+        loadMillis = Math.min(loadMillis, (System.nanoTime() - start) / 1e6);
+        if (edges[0] != edgeCount || graph.getEdgeCount() != edgeCount)
+          throw new IllegalStateException("Wrong number of edges loaded");
+      }
+      printLoad("sequential", 1, megabytes, edgeCount, parseMillis, loadMillis);
+
+      for (int threads : new int[] {1, 4, 16}) {
+        parseMillis = Double.MAX_VALUE;
+        loadMillis = Double.MAX_VALUE;
+        for (int run = 1; run <= runs; run++) {
+          long start = System.nanoTime();
+          List<ParallelDotLoader.Chunk> chunks =
+              ParallelDotLoader.parse(file, threads, new String[] {"seconds"});
+          parseMillis = Math.min(parseMillis, (System.nanoTime() - start) / 1e6);
+          int edges = 0;
+          for (ParallelDotLoader.Chunk chunk : chunks)
+            edges += chunk.getEdgeCount();
+          chunks = null;
+          DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+          start = System.nanoTime();
+          new Backend(graph).loadGraphData(file.toString(), threads);
+          loadMillis = Math.min(loadMillis, (System.nanoTime() - start) / 1e6);
+          if (edges != edgeCount || graph.getEdgeCount() != edgeCount)
+            throw new IllegalStateException("Wrong number of edges loaded");
+        }
+        printLoad("chunked", threads, megabytes, edgeCount, parseMillis, loadMillis);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // prints one row of the load benchmark's table
+  private static void printLoad(String loader, int threads, double megabytes, int edges,
+      double parseMillis, double loadMillis) {
+    System.out.printf("%-10s\t%d\t%.0f\t\t%.1f\t%.0f\t\t%.0f%n", loader, threads, parseMillis,
+        megabytes / parseMillis * 1000, loadMillis, edges / loadMillis * 1000);
+  }
+
+  /**
+   * Compares the cold start of a Backend from a DOT file with its start from
+   * a binary snapshot of the same grid graph (about 1M edges): the time to
+   * load, the time to answer the first query after loading, and the heap
+   * retained by the loaded graph.
+   *
+   * @param runs the number of timed runs of each, of which the best is shown
+   */
+  public static void benchmarkSnapshot(int runs) throws IOException {
+    ImmutableCsrGraph<String> grid = gridGraph(200_000, 42).freeze();
+    String start = grid.getAllNodes().get(0);
+    String end = grid.getAllNodes().get(grid.getNodeCount() - 1);
+    int nodeCount = grid.getNodeCount();
+    Path dotFile = Files.createTempFile("graph", ".dot");
+    Path snapshotFile = Files.createTempFile("graph", ".csrg");
+    try {
+      writeDot(grid, dotFile);
+      Backend writer = new Backend(new DijkstraGraph<>());
+      writer.loadGraphData(dotFile.toString());
+      writer.writeSnapshot(snapshotFile.toString());
+      writer = null;
+      System.out.printf("%d nodes, %d edges: DOT file %.1f MB, snapshot %.1f MB (best of %d runs)%n",
+          grid.getNodeCount(), grid.getEdgeCount(), Files.size(dotFile) / 1e6,
+          Files.size(snapshotFile) / 1e6, runs);
+      grid = null;
+      System.out.println("source\t\tload (ms)\tfirst query (ms)\theap (MB)");
+      for (boolean snapshot : new boolean[] {false, true}) {
+        double loadMillis = Double.MAX_VALUE;
+        double queryMillis = Double.MAX_VALUE;
+        double heapMegabytes = 0.0;
+        for (int run = 1; run <= runs; run++) {
+          long before = usedMemory();
+          Backend backend = new Backend(new DijkstraGraph<>());
+          long time = System.nanoTime();
+          if (snapshot)
+            backend.loadSnapshot(snapshotFile.toString());
+          else
+            backend.loadGraphData(dotFile.toString());
+          loadMillis = Math.min(loadMillis, (System.nanoTime() - time) / 1e6);
+          time = System.nanoTime();
+          backend.findShortestPath(start, end);
+          queryMillis = Math.min(queryMillis, (System.nanoTime() - time) / 1e6);
+          // the retained heap includes the snapshot that the first query froze
+          heapMegabytes = (usedMemory() - before) / 1e6;
+          if (backend.getListOfAllLocations().size() != nodeCount)
+            throw new IllegalStateException("Wrong number of nodes loaded");
+        }
+        System.out.printf("%s\t%.0f\t\t%.0f\t\t\t%.0f%n", snapshot ? "snapshot" : "DOT file",
+            loadMillis, queryMillis, heapMegabytes);
+      }
+    } finally {
+      Files.delete(dotFile);
+      Files.delete(snapshotFile);
+    }
+  }
+
+  /**
+   * Compares building a graph with high-degree hub nodes one insertEdge at a
+   * time with building it through a GraphBuilder, and with loading it from a
+   * DOT file. Each of 50,000 spoke nodes has edges to and from 4 of 20 hubs,
+   * so each hub has about 10,000 leaving edges, and a tenth of the edges are
+   * added a second time with another weight. The time to look up every
+   * added edge, and as many missing ones, is shown as well.
+   *
+   * @param runs the number of timed runs of each, of which the best is shown
+   */
+  public static void benchmarkHubs(int runs) throws IOException {
+    int spokes = 50_000;
+    int hubs = 20;
+    Random random = new Random(42);
+    List<String> preds = new ArrayList<>();
+    List<String> succs = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (int spoke = 0; spoke < spokes; spoke++) {
+      for (int i = 0; i < 4; i++) {
+        String hub = "hub" + random.nextInt(hubs);
+        preds.add("spoke" + spoke);
+        succs.add(hub);
+        weights.add(1.0 + random.nextInt(100));
+        preds.add(hub);
+        succs.add("spoke" + spoke);
+        weights.add(1.0 + random.nextInt(100));
+      }
+    }
+    int added = preds.size();
+    for (int i = 0; i < added / 10; i++) {
+      int edge = random.nextInt(added);
+      preds.add(preds.get(edge));
+      succs.add(succs.get(edge));
+      weights.add(1.0 + random.nextInt(100));
+    }
+    Path file = Files.createTempFile("hubs", ".dot");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+        writer.write("digraph hubs {\n");
+        for (int edge = 0; edge < preds.size(); edge++)
+          writer.write("    \"" + preds.get(edge) + "\" -> \"" + succs.get(edge) + "\" [seconds="
+              + weights.get(edge) + "];\n");
+        writer.write("}\n");
+      }
+      System.out.printf("%d edges added (%d hubs, %d spokes), best of %d runs%n", preds.size(),
+          hubs, spokes, runs);
+      System.out.println("method\t\t\ttime (ms)\tedges");
+      double insertMillis = Double.MAX_VALUE;
+      double lookupMillis = Double.MAX_VALUE;
+      double buildMillis = Double.MAX_VALUE;
+      double freezeMillis = Double.MAX_VALUE;
+      double loadMillis = Double.MAX_VALUE;
+      int edges = 0;
+      for (int run = 1; run <= runs; run++) {
+        long start = System.nanoTime();
+        DijkstraGraph<String, Double> inserted = new DijkstraGraph<>();
+        for (int edge = 0; edge < preds.size(); edge++) {
+          inserted.insertNode(preds.get(edge));
+          inserted.insertNode(succs.get(edge));
+          inserted.insertEdge(preds.get(edge), succs.get(edge), weights.get(edge));
+        }
+        insertMillis = Math.min(insertMillis, (System.nanoTime() - start) / 1e6);
+        edges = inserted.getEdgeCount();
+
+        // look up every added edge, and as many missing ones (hub to hub)
+        start = System.nanoTime();
+        int found = 0;
+        double weightSum = 0.0;
+        for (int edge = 0; edge < preds.size(); edge++) {
+          if (inserted.containsEdge(preds.get(edge), succs.get(edge)))
+            found++;
+          if (inserted.containsEdge("hub" + edge % hubs, "hub" + (edge + 1) % hubs))
+            found--;
+          weightSum += inserted.getEdge(preds.get(edge), succs.get(edge));
+        }
+        lookupMillis = Math.min(lookupMillis, (System.nanoTime() - start) / 1e6);
+        if (found != preds.size() || weightSum <= 0)
+          throw new IllegalStateException("Edges not found");
+
+        start = System.nanoTime();
+        GraphBuilder<String> builder = new GraphBuilder<>();
+        for (int edge = 0; edge < preds.size(); edge++)
+          builder.addEdge(preds.get(edge), succs.get(edge), weights.get(edge));
+        DijkstraGraph<String, Double> built = builder.build();
+        buildMillis = Math.min(buildMillis, (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        builder = new GraphBuilder<>();
+        for (int edge = 0; edge < preds.size(); edge++)
+          builder.addEdge(preds.get(edge), succs.get(edge), weights.get(edge));
+        ImmutableCsrGraph<String> frozen = builder.freeze();
+        freezeMillis = Math.min(freezeMillis, (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        DijkstraGraph<String, Double> loaded = new DijkstraGraph<>();
+        new Backend(loaded).loadGraphData(file.toString());
+        loadMillis = Math.min(loadMillis, (System.nanoTime() - start) / 1e6);
+        if (built.getEdgeCount() != edges || frozen.getEdgeCount() != edges
+            || loaded.getEdgeCount() != edges)
+          throw new IllegalStateException("Wrong number of edges built");
+      }
+      System.out.printf("insertEdge\t\t%.0f\t\t%d%n", insertMillis, edges);
+      System.out.printf("lookups\t\t\t%.0f\t\t%d containsEdge hits, as many misses and getEdge%n",
+          lookupMillis, preds.size());
+      System.out.printf("GraphBuilder.build\t%.0f\t\t%d%n", buildMillis, edges);
+      System.out.printf("GraphBuilder.freeze\t%.0f\t\t%d%n", freezeMillis, edges);
+      System.out.printf("Backend load (DOT)\t%.0f\t\t%d%n", loadMillis, edges);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Times a skewed stream of Backend.findShortestPath requests on a 10k node
+   * graph with result caches of several sizes. Requests pick one of 2,000
+   * distinct start and end pairs with Zipf-like probabilities (the pair of
+   * rank r is requested with a probability proportional to 1/r), the way a
+   * few popular routes make up much of the traffic of a real service.
+   *
+   * @param requests the number of timed requests per cache size
+   */
+  public static void benchmarkCache(int requests) {
+    int pairs = 2_000;
+    DijkstraGraph<String, Double> graph = gridGraph(10_000, 42);
+    int nodeCount = graph.getNodeCount();
+    Random random = new Random(7);
+    String[] starts = new String[pairs];
+    String[] ends = new String[pairs];
+    double[] cumulative = new double[pairs];
+    double total = 0.0;
+    for (int rank = 0; rank < pairs; rank++) {
+      starts[rank] = "n" + random.nextInt(nodeCount);
+      ends[rank] = "n" + random.nextInt(nodeCount);
+      total += 1.0 / (rank + 1);
+      cumulative[rank] = total;
+    }
+    int[] stream = new int[requests];
+    for (int i = 0; i < requests; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+      stream[i] = Math.min(rank < 0 ? -rank - 1 : rank, pairs - 1);
+    }
+    System.out.printf("%d requests over %d pairs on %d nodes%n", requests, pairs, nodeCount);
+    System.out.println("entries	hit ratio	time per request (us)");
+    for (int entries : new int[] {0, 64, 256, 1024, 4096}) {
+      Backend backend = new Backend(graph, entries, 0);
+      // warm up the JIT, then time the same stream against an empty cache
+      for (int i = 0; i < requests; i++)
+        backend.findShortestPath(starts[stream[i]], ends[stream[i]]);
+      backend = new Backend(graph, entries, 0);
+      long time = System.nanoTime();
+      for (int i = 0; i < requests; i++)
+        backend.findShortestPath(starts[stream[i]], ends[stream[i]]);
+      double micros = (System.nanoTime() - time) / 1000.0 / requests;
+      LruCache<?, ?> cache = backend.getPathCache();
+      System.out.printf("%d\t%.2f\t\t%.1f%n", entries,
+          (double) cache.getHits() / (cache.getHits() + cache.getMisses()), micros);
+    }
+  }
+
+  /**
+   * Times queries where each source is asked for several destinations, with
+   * and without cached shortest path trees, on graphs of each size. Sources
+   * come from a pool of 20, and each one is asked for destinations in
+   * bursts of 10, so a cache of 8 trees misses sometimes.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkTrees(int queries) {
+    System.out.println("nodes	no trees (us)	8 trees (us)	tree hits	tree MB");
+    for (int nodeCount : NODE_COUNTS) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      int count = graph.getNodeCount();
+      double[] micros = new double[2];
+      for (int cached = 0; cached < 2; cached++) {
+        graph.setTreeCacheBudget(cached * 8 * ShortestPathTree.estimateBytes(count));
+        // warm up the JIT with the first round, then time the second
+        for (int round = 0; round < 2; round++) {
+          Random random = new Random(11);
+          long time = System.nanoTime();
+          String start = null;
+          for (int i = 0; i < queries; i++) {
+            if (i % 10 == 0)
+              start = "n" + (random.nextInt(20) * (count / 20));
+            graph.shortestPathCost(start, "n" + random.nextInt(count));
+          }
+          micros[cached] = (System.nanoTime() - time) / 1000.0 / queries;
+        }
+      }
+      System.out.printf("%d\t%.1f\t\t%.1f\t\t%.2f\t\t%.1f%n", count, micros[0], micros[1],
+          (double) graph.getTreeCacheHits()
+              / (graph.getTreeCacheHits() + graph.getTreeCacheMisses()),
+          8 * ShortestPathTree.estimateBytes(count) / 1e6);
+    }
+  }
+
+  /**
+   * Builds an AllPairsIndex of small graphs with 1 and 4 threads, and
+   * compares its query times with searching the graph, for shortest paths
+   * and for the 10 closest destinations.
+   *
+   * @param queries the number of timed queries per graph
+   */
+  public static void benchmarkAllPairs(int queries) {
+    System.out.println("nodes	build 1/4 threads (ms)	MB	path search/index (us)"
+        + "	closest 10 search/index (us)");
+    for (int nodeCount : new int[] {160, 1_000, 3_000}) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      ImmutableCsrGraph<String> snapshot = graph.freeze();
+      int count = graph.getNodeCount();
+      double[] buildMillis = {Double.MAX_VALUE, Double.MAX_VALUE};
+      AllPairsIndex<String> index = null;
+      for (int run = 0; run < 3; run++) {
+        for (int t = 0; t < 2; t++) {
+          long time = System.nanoTime();
+          index = new AllPairsIndex<>(snapshot, t == 0 ? 1 : 4);
+          buildMillis[t] = Math.min(buildMillis[t], (System.nanoTime() - time) / 1e6);
+        }
+      }
+      double[] pathMicros = new double[2];
+      double[] closestMicros = new double[2];
+      for (int useIndex = 0; useIndex < 2; useIndex++) {
+        // warm up the JIT with the first round, then time the second
+        for (int round = 0; round < 2; round++) {
+          Random random = new Random(5);
+          long time = System.nanoTime();
+          for (int i = 0; i < queries; i++) {
+            String start = "n" + random.nextInt(count);
+            String end = "n" + random.nextInt(count);
+            if (useIndex == 1)
+              index.shortestPath(start, end);
+            else
+              snapshot.shortestPath(start, end);
+          }
+          pathMicros[useIndex] = (System.nanoTime() - time) / 1000.0 / queries;
+          time = System.nanoTime();
+          for (int i = 0; i < queries; i++) {
+            String start = "n" + random.nextInt(count);
+            if (useIndex == 1)
+              index.closest(start, 10);
+            else
+              snapshot.nearestK(start, 10);
+          }
+          closestMicros[useIndex] = (System.nanoTime() - time) / 1000.0 / queries;
+        }
+      }
+      System.out.printf("%d\t%.1f / %.1f\t\t%.1f\t%.1f / %.2f\t\t%.2f / %.2f%n", count,
+          buildMillis[0], buildMillis[1], index.getMemoryBytes() / 1e6, pathMicros[0],
+          pathMicros[1], closestMicros[0], closestMicros[1]);
+    }
+  }
+
+  /**
+   * Measures the throughput of shortest path queries when several threads
+   * share one DijkstraGraph of 10k nodes, doubling the number of threads from
+   * 1 up to twice the number of cores. Each thread runs the same number of
+   * queries, and a final row adds a thread that changes the graph every
+   * millisecond, so that queries also have to wait for new snapshots.
+   *
+   * @param queries the number of timed queries per thread
+   */
+  public static void benchmarkThreads(int queries) throws InterruptedException {
+    DijkstraGraph<String, Double> graph = gridGraph(10_000, 42);
+    int nodeCount = graph.getNodeCount();
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> threadCounts = new ArrayList<>();
+    for (int threads = 1; threads < 2 * cores; threads *= 2)
+      threadCounts.add(threads);
+    threadCounts.add(2 * cores);
+    System.out.printf("%d cores, %d nodes, %d queries per thread%n", cores, nodeCount, queries);
+    System.out.println("threads	queries/s	speedup");
+    timeThreads(graph, cores, queries, false); // warm up the JIT
+    double single = 0.0;
+    for (int threads : threadCounts) {
+      double throughput = timeThreads(graph, threads, queries, false);
+      if (threads == 1)
+        single = throughput;
+      System.out.printf("%d\t%.0f\t\t%.2f%n", threads, throughput, throughput / single);
+    }
+    double throughput = timeThreads(graph, cores, queries, true);
+    System.out.printf("%d+writer\t%.0f\t\t%.2f%n", cores, throughput, throughput / single);
+  }
+
+  // runs queries on several threads at once, and returns the queries per second
+  private static double timeThreads(DijkstraGraph<String, Double> graph, int threads,
+      int queries, boolean writer) throws InterruptedException {
+    int nodeCount = graph.getNodeCount();
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      long seed = t;
+      workers.add(new Thread(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < queries; i++)
+          graph.shortestPathCost("n" + random.nextInt(nodeCount), "n" + random.nextInt(nodeCount));
+      }));
+    }
+    Thread changes = new Thread(() -> {
+      // adds and removes a node without edges, which forces a new snapshot
+      try {
+        while (true) {
+          graph.insertNode("extra");
+          graph.removeNode("extra");
+          Thread.sleep(1);
+        }
+      } catch (InterruptedException e) {
+        // the queries are done
+      }
+    });
+    long time = System.nanoTime();
+    if (writer)
+      changes.start();
+    for (Thread worker : workers)
+      worker.start();
+    for (Thread worker : workers)
+      worker.join();
+    double seconds = (System.nanoTime() - time) / 1e9;
+    if (writer) {
+      changes.interrupt();
+      changes.join();
+    }
+    return threads * (double) queries / seconds;
+  }
+
+  /**
+   * Measures the throughput of maps shared by several threads, with 100%, 95%
+   * and 50% of the operations being lookups of the 100k keys that each map
+   * starts with, and the rest inserting new keys (so the maps keep growing
+   * and resizing while they are read). It compares a HashtableMap that is
+   * locked as a whole, as BaseGraph locks its nodes map, with the lock-striped
+   * ConcurrentHashtableMap, and java.util.concurrent.ConcurrentHashMap as a
+   * reference, from 1 up to twice the number of cores threads.
+   *
+   * @param operations the number of timed operations per thread
+   */
+  public static void benchmarkContention(int operations) throws InterruptedException {
+    int keyCount = 100_000;
+    String[] keys = new String[keyCount];
+    for (int i = 0; i < keyCount; i++)
+      keys[i] = "n" + i;
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> threadCounts = new ArrayList<>();
+    for (int threads = 1; threads < 2 * cores; threads *= 2)
+      threadCounts.add(threads);
+    threadCounts.add(2 * cores);
+    List<String> names = List.of("HashtableMap+lock", "ConcurrentHashtableMap",
+        "ConcurrentHashMap");
+    List<Supplier<Object>> factories = List.of(
+        () -> new HashtableMap<String, Integer>(64),
+        () -> new ConcurrentHashtableMap<String, Integer>(64),
+        () -> new ConcurrentHashMap<String, Integer>(64));
+    System.out.printf("%d cores, %d keys, %d operations per thread%n", cores, keyCount,
+        operations);
+    System.out.println("get %\tthreads\tmap\t\t\tMops/s");
+    for (int getPercent : new int[] {100, 95, 50}) {
+      for (int threads : threadCounts) {
+        for (int m = 0; m < names.size(); m++) {
+          // the first run of each map only warms up the JIT
+          timeContention(factories.get(m).get(), keys, threads, operations, getPercent);
+          double throughput = timeContention(factories.get(m).get(), keys, threads,
+              operations, getPercent);
+          System.out.printf("%d\t%d\t%-23s\t%.2f%n", getPercent, threads, names.get(m),
+              throughput / 1e6);
+        }
+      }
+    }
+  }
+
+  // fills one of the maps of benchmarkContention and runs a mix of gets and
+  // puts on it from several threads at once, returning the operations per
+  // second
+  @SuppressWarnings("unchecked")
+  private static double timeContention(Object map, String[] keys, int threads,
+      int operations, int getPercent) throws InterruptedException {
+    Function<String, Integer> get;
+    BiConsumer<String, Integer> put;
+    if (map instanceof ConcurrentHashMap) {
+      ConcurrentHashMap<String, Integer> reference = (ConcurrentHashMap<String, Integer>) map;
+      get = reference::get;
+      put = reference::put;
+    } else if (map instanceof ConcurrentHashtableMap) {
+      MapADT<String, Integer> concurrent = (MapADT<String, Integer>) map;
+      get = concurrent::get;
+      put = concurrent::put;
+    } else {
+      MapADT<String, Integer> locked = (MapADT<String, Integer>) map;
+      get = key -> {
+        synchronized (locked) {
+          return locked.get(key);
+        }
+      };
+      put = (key, value) -> {
+        synchronized (locked) {
+          locked.put(key, value);
+        }
+      };
+    }
+    for (int i = 0; i < keys.length; i++)
+      put.accept(keys[i], i);
+    List<Thread> workers = new ArrayList<>();
+    long[] sums = new long[threads];
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      // the keys to insert are made up front, so that only the map is timed
+      String[] newKeys = new String[operations];
+      for (int i = 0; i < operations; i++)
+        newKeys[i] = "t" + thread + "-" + i;
+      workers.add(new Thread(() -> {
+        Random random = new Random(thread);
+        long sum = 0;
+        for (int i = 0; i < operations; i++) {
+          if (random.nextInt(100) < getPercent)
+            sum += get.apply(keys[random.nextInt(keys.length)]);
+          else
+            put.accept(newKeys[i], i);
+        }
+        sums[thread] = sum;
+      }));
+    }
+    long time = System.nanoTime();
+    for (Thread worker : workers)
+      worker.start();
+    for (Thread worker : workers)
+      worker.join();
+    double seconds = (System.nanoTime() - time) / 1e9;
+    return threads * (double) operations / seconds;
+  }
+
+  /**
+   * Measures a FrontendServer on this machine, serving a 10k node grid
+   * graph, while 1000 clients each send requests one after another: half of
+   * them to /route between two random nodes, and half to /nearby from a
+   * random node. Reports the requests per second over all clients, the
+   * median and 99th percentile latency, and how many requests failed.
+   *
+   * @param requests the number of timed requests per client
+   */
+  public static void benchmarkServer(int requests) throws IOException, InterruptedException {
+    int clients = 1000;
+    DijkstraGraph<String, Double> graph = gridGraph(10_000, 42);
+    FrontendServer server = new FrontendServer(new Frontend(new Backend(graph)), 0);
+    server.start();
+    ExecutorService clientThreads = FrontendServer.newRequestExecutor();
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+        .executor(clientThreads).build();
+    String base = "http://localhost:" + server.getPort();
+    try {
+      System.out.printf("%d nodes, %d clients, %d requests per client%n", graph.getNodeCount(),
+          clients, requests);
+      System.out.println("run	requests/s	p50 (ms)	p99 (ms)	failed");
+      for (int run = 0; run < 3; run++) {
+        // the first run only warms up the JIT and opens the connections
+        long[] latencies = new long[clients * requests];
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+          int offset = c * requests;
+          Random random = new Random(c + run * clients);
+          clientThreads.execute(() -> {
+            for (int i = 0; i < requests; i++) {
+              String from = "n" + random.nextInt(graph.getNodeCount());
+              String url = random.nextBoolean()
+                  ? base + "/route?start=" + from + "&end=n" + random.nextInt(graph.getNodeCount())
+                  : base + "/nearby?k=10&from=" + from;
+              long sent = System.nanoTime();
+              try {
+                HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200)
+                  failed.incrementAndGet();
+              } catch (IOException | InterruptedException e) {
+                failed.incrementAndGet();
+              }
+              latencies[offset + i] = System.nanoTime() - sent;
+            }
+            done.countDown();
+          });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%s\t%.0f\t\t%.1f\t\t%.1f\t\t%d%n", run == 0 ? "warmup" : run,
+            latencies.length / seconds, latencies[latencies.length / 2] / 1e6,
+            latencies[(int) (latencies.length * 0.99)] / 1e6, failed.get());
+      }
+    } finally {
+      server.stop();
+      clientThreads.shutdown();
+      clientThreads.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Measures the bytes allocated and the time taken by each Frontend
+   * rendering of a route with 10, 100 and 1000 stops, and of a list of that
+   * many closest destinations, both as a String and streamed into a Writer,
+   * and of a route fragment that the Frontend has cached. The graph is a line
+   * of stops whose names need HTML escaping, and the Backend caches every
+   * result after the first render, so the numbers are those of the rendering
+   * alone.
+   *
+   * @param renders the number of timed renders per size
+   */
+  public static void benchmarkRender(int renders) throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    for (int i = 0; i <= 1000; i++)
+      graph.insertNode("Stop " + i + " & O'Hare <Hall>");
+    for (int i = 0; i < 1000; i++)
+      graph.insertEdge("Stop " + i + " & O'Hare <Hall>", "Stop " + (i + 1) + " & O'Hare <Hall>",
+          60.0 + i % 7);
+    Frontend frontend = new Frontend(new Backend(graph));
+    String start = "Stop 0 & O'Hare <Hall>";
+    // the Writer rows stream into a writer that discards its output, as a
+    // response body would once it is sent
+    Writer sink = Writer.nullWriter();
+    System.out.println("stops\trender\t\tbytes/render\tus/render\tchars");
+    for (int stops : new int[] {10, 100, 1000}) {
+      String end = "Stop " + stops + " & O'Hare <Hall>";
+      long chars = 0;
+      for (int warmup = 0; warmup < renders; warmup++)
+        chars += frontend.generateShortestPathResponseHTML(start, end).length()
+            + frontend.generateClosestDestinationsResponseHTML(start, stops).length();
+      String[] names = {"route String", "route Writer", "nearby String", "nearby Writer",
+          "route cached"};
+      for (int kind = 0; kind < names.length; kind++) {
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < renders; i++) {
+          if (kind == 0)
+            length = frontend.generateShortestPathResponseHTML(start, end).length();
+          else if (kind == 1)
+            frontend.renderShortestPathResponse(start, end, sink);
+          else if (kind == 2)
+            length = frontend.generateClosestDestinationsResponseHTML(start, stops).length();
+          else if (kind == 3)
+            frontend.renderClosestDestinationsResponse(start, stops, sink);
+          else
+            length = frontend.getShortestPathResponseFragment(start, end).getLength();
+        }
+        double micros = (System.nanoTime() - time) / 1e3 / renders;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%d\t%-15s\t%d\t\t%.1f\t\t%s%n", stops, names[kind],
+            bytes / renders, micros, kind % 2 == 0 ? length : "-");
+      }
+    }
+  }
+
+  /**
+   * Compares Backend.findShortestPaths with the loop it replaces, which asks
+   * for the locations and then the times of every pair one at a time, on a
+   * 10k node grid. The pairs are like a term's schedule: a number of
+   * buildings, each the start of the same number of pairs to random other
+   * buildings, in random order. The batch runs with 1 thread and with one
+   * thread per core, and every batch path is checked against the loop.
+   *
+   * @param pairsPerSource the number of pairs that share each start
+   */
+  public static void benchmarkBatch(int pairsPerSource) throws InterruptedException {
+    DijkstraGraph<String, Double> graph = gridGraph(10_000, 42);
+    int nodeCount = graph.getNodeCount();
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.printf("%d nodes, %d cores, %d pairs per source%n", nodeCount, cores,
+        pairsPerSource);
+    System.out.println("sources\tpairs\tloop (ms)\tbatch 1 (ms)\tbatch " + cores
+        + " (ms)\tspeedup\tmismatches");
+    for (int sources : new int[] {10, 50, 200}) {
+      Random random = new Random(sources);
+      List<List<String>> pairs = new ArrayList<>();
+      for (int source = 0; source < sources; source++) {
+        String start = "n" + random.nextInt(nodeCount);
+        for (int i = 0; i < pairsPerSource; i++)
+          pairs.add(List.of(start, "n" + random.nextInt(nodeCount)));
+      }
+      Collections.shuffle(pairs, random);
+
+      // a new backend for every run, so that no run reuses another's cached paths
+      Backend backend = new Backend(graph);
+      long start = System.nanoTime();
+      List<Double> loopCosts = new ArrayList<>(pairs.size());
+      for (List<String> pair : pairs) {
+        backend.findLocationsOnShortestPath(pair.get(0), pair.get(1));
+        double cost = 0;
+        for (double time : backend.findTimesOnShortestPath(pair.get(0), pair.get(1)))
+          cost += time;
+        loopCosts.add(cost);
+      }
+      double loopMillis = (System.nanoTime() - start) / 1e6;
+
+      double[] batchMillis = new double[2];
+      int mismatches = 0;
+      for (int run = 0; run < 2; run++) {
+        backend = new Backend(graph);
+        backend.setBatchThreads(run == 0 ? 1 : cores);
+        start = System.nanoTime();
+        List<PathResult<String>> paths = backend.findShortestPaths(pairs);
+        batchMillis[run] = (System.nanoTime() - start) / 1e6;
+        for (int i = 0; i < pairs.size(); i++) {
+          double cost = paths.get(i) == null ? 0 : paths.get(i).getTotalCost();
+          if (Math.abs(cost - loopCosts.get(i)) > 1e-6)
+            mismatches++;
+        }
+      }
+      System.out.printf("%d\t%d\t%.0f\t\t%.0f\t\t%.0f\t\t%.1f\t%d%n", sources, pairs.size(),
+          loopMillis, batchMillis[0], batchMillis[1],
+          loopMillis / Math.min(batchMillis[0], batchMillis[1]), mismatches);
+    }
+  }
+
+  /**
+   * Compares ways of finding a square travel time matrix between random
+   * nodes of grids with 10k and 100k nodes: a complete search (shortest path
+   * tree) from every source, the bucket join of ImmutableCsrGraph, and the
+   * bucket join of a ContractionHierarchy, whose build time is reported
+   * separately. Every matrix is checked against the trees.
+   *
+   * @param size the number of sources, and of destinations
+   */
+  public static void benchmarkMatrix(int size) {
+    System.out.printf("%d sources x %d destinations%n", size, size);
+    System.out.println("nodes	trees (ms)	buckets (ms)	ch build (ms)	ch (ms)	mismatches");
+    for (int nodeCount : new int[] {10_000, 100_000}) {
+      DijkstraGraph<String, Double> graph = gridGraph(nodeCount, 42);
+      ImmutableCsrGraph<String> snapshot = graph.freeze();
+      Random random = new Random(nodeCount);
+      List<String> sources = new ArrayList<>();
+      List<String> destinations = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        sources.add("n" + random.nextInt(graph.getNodeCount()));
+        destinations.add("n" + random.nextInt(graph.getNodeCount()));
+      }
+
+      long start = System.nanoTime();
+      double[][] expected = new double[size][size];
+      for (int i = 0; i < size; i++) {
+        ShortestPathTree<String> tree = snapshot.shortestPathTree(sources.get(i));
+        for (int j = 0; j < size; j++)
+          expected[i][j] = tree.canReach(destinations.get(j))
+              ? tree.costTo(destinations.get(j)) : Double.POSITIVE_INFINITY;
+      }
+      double treeMillis = (System.nanoTime() - start) / 1e6;
+
+      // the first matrix warms up the code, and the second one is timed
+      snapshot.distanceMatrix(sources, destinations);
+      start = System.nanoTime();
+      double[][] buckets = snapshot.distanceMatrix(sources, destinations);
+      double bucketMillis = (System.nanoTime() - start) / 1e6;
+
+      start = System.nanoTime();
+      ContractionHierarchy<String> hierarchy = new ContractionHierarchy<>(snapshot);
+      double buildMillis = (System.nanoTime() - start) / 1e6;
+      hierarchy.distanceMatrix(sources, destinations);
+      start = System.nanoTime();
+      double[][] upward = hierarchy.distanceMatrix(sources, destinations);
+      double hierarchyMillis = (System.nanoTime() - start) / 1e6;
+
+      int mismatches = 0;
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          if (Math.abs(buckets[i][j] - expected[i][j]) > 1e-6)
+            mismatches++;
+          if (Math.abs(upward[i][j] - expected[i][j]) > 1e-6)
+            mismatches++;
+        }
+      }
+      System.out.printf("%d\t%.0f\t\t%.0f\t\t%.0f\t\t%.1f\t%d%n", graph.getNodeCount(),
+          treeMillis, bucketMillis, buildMillis, hierarchyMillis, mismatches);
+    }
+  }
+
+  /**
+   * Returns the number of bytes in use on the heap, after asking the garbage
+   * collector to free as much as it can.
+   *
+   * @return the number of heap bytes in use
+   */
+  protected static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String benchmark = args.length > 0 ? args[0] : "dijkstra";
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    switch (benchmark) {
+      case "dijkstra":
+        benchmarkDijkstra(queries);
+        break;
+      case "arity":
+        benchmarkArity(queries);
+        break;
+      case "csr":
+        benchmarkCsr(queries);
+        break;
+      case "map":
+        benchmarkMap(queries);
+        break;
+      case "strategy":
+        benchmarkStrategies(queries);
+        break;
+      case "alt":
+        benchmarkLandmarks(queries);
+        break;
+      case "ch":
+        benchmarkHierarchy(queries);
+        break;
+      case "load":
+        // each run is much slower than a query, so do fewer by default
+        benchmarkLoad(args.length > 1 ? queries : 5);
+        break;
+      case "hubs":
+        benchmarkHubs(args.length > 1 ? queries : 3);
+        break;
+      case "snapshot":
+        benchmarkSnapshot(args.length > 1 ? queries : 5);
+        break;
+      case "cache":
+        benchmarkCache(args.length > 1 ? queries : 20_000);
+        break;
+      case "trees":
+        benchmarkTrees(args.length > 1 ? queries : 2_000);
+        break;
+      case "allpairs":
+        benchmarkAllPairs(args.length > 1 ? queries : 10_000);
+        break;
+      case "threads":
+        benchmarkThreads(args.length > 1 ? queries : 2_000);
+        break;
+      case "contention":
+        benchmarkContention(args.length > 1 ? queries : 1_000_000);
+        break;
+      case "server":
+        benchmarkServer(args.length > 1 ? queries : 20);
+        break;
+      case "render":
+        benchmarkRender(args.length > 1 ? queries : 2_000);
+        break;
+      case "batch":
+        benchmarkBatch(args.length > 1 ? queries : 20);
+        break;
+      case "matrix":
+        benchmarkMatrix(args.length > 1 ? queries : 100);
+        break;
+      default:
+        System.out.println("Unknown benchmark: " + benchmark);
+    }
+  }
+}
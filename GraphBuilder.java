@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class collects the nodes and edges of a graph in primitive buffers,
+ * and then builds the graph in one step. Adding an edge only appends to the
+ * buffers, instead of searching the predecessor's list of leaving edges for a
+ * duplicate the way insertEdge does. Duplicates are removed once, when the
+ * graph is built, with a counting sort of the edges by predecessor followed by
+ * a single pass over each predecessor's edges. As with insertEdge, the last
+ * weight added for an edge wins, and edges keep the position of their first
+ * insertion.
+ *
+ * @param <NodeType> the data type stored at each graph node
+ */
+public class GraphBuilder<NodeType> {
+
+  // node ids can be retrieved from this map by their unique data
+  private final MapADT<NodeType, Integer> ids;
+  // the data of each node, and its position (NaN until it is set)
+  private final List<NodeType> nodes = new ArrayList<>();
+  private double[] latitudes = new double[16];
+  private double[] longitudes = new double[16];
+
+  // the edges in the order they were added, including duplicates
+  private int[] preds = new int[16];
+  private int[] succs = new int[16];
+  private double[] weights = new double[16];
+  private int edgeCount = 0;
+
+  // the edges without duplicates, in CSR form, or null when edges have been
+  // added since they were last computed
+  private int[] csrOffsets = null;
+  private int[] csrTargets = null;
+  private double[] csrWeights = null;
+
+  /**
+   * Creates an empty builder.
+   */
+  public GraphBuilder() {
+    this(16);
+  }
+
+  /**
+   * Creates an empty builder with room for the expected number of nodes, so
+   * that its map of nodes never has to grow.
+   *
+   * @param expectedNodes the number of nodes the graph is expected to have
+   */
+  public GraphBuilder(int expectedNodes) {
+    ids = new ProbingHashtableMap<>(Math.max(16, expectedNodes * 2));
+  }
+
+  /**
+   * Adds a node, unless it was added before.
+   *
+   * @param data the data item stored in the node
+   * @return the id of the node, which is the number of nodes added before it
+   * @throws NullPointerException if data is null
+   */
+  public int addNode(NodeType data) {
+    if (ids.containsKey(data))
+      return ids.get(data);
+    int id = nodes.size();
+    if (id == latitudes.length) {
+      latitudes = Arrays.copyOf(latitudes, id * 2);
+      longitudes = Arrays.copyOf(longitudes, id * 2);
+    }
+    latitudes[id] = Double.NaN;
+    longitudes[id] = Double.NaN;
+    nodes.add(data);
+    ids.put(data, id);
+    csrOffsets = null;
+    return id;
+  }
+
+  /**
+   * Sets the geographic position of a node, adding the node if needed.
+   *
+   * @param data      the data item stored in the node
+   * @param latitude  the latitude of the node in degrees
+   * @param longitude the longitude of the node in degrees
+   */
+  public void setNodeCoordinates(NodeType data, double latitude, double longitude) {
+    int id = addNode(data);
+    latitudes[id] = latitude;
+    longitudes[id] = longitude;
+  }
+
+  /**
+   * Adds a directed edge, along with any of its nodes that were not added
+   * before. When the same edge is added again, the graph gets the last
+   * weight.
+   *
+   * @param pred   the data item contained in the edge's predecessor node
+   * @param succ   the data item contained in the edge's successor node
+   * @param weight the non-negative weight of the edge
+   */
+  public void addEdge(NodeType pred, NodeType succ, double weight) {
+    int predId = addNode(pred);
+    int succId = addNode(succ);
+    if (edgeCount == preds.length) {
+      preds = Arrays.copyOf(preds, edgeCount * 2);
+      succs = Arrays.copyOf(succs, edgeCount * 2);
+      weights = Arrays.copyOf(weights, edgeCount * 2);
+    }
+    preds[edgeCount] = predId;
+    succs[edgeCount] = succId;
+    weights[edgeCount] = weight;
+    edgeCount++;
+    csrOffsets = null;
+  }
+
+  /**
+   * Returns the number of nodes added.
+   *
+   * @return the number of nodes
+   */
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Returns the number of edges in the graph, without counting an edge that
+   * was added more than once again.
+   *
+   * @return the number of distinct edges
+   */
+  public int getEdgeCount() {
+    compact();
+    return csrOffsets[nodes.size()];
+  }
+
+  /**
+   * Builds a new DijkstraGraph with the nodes and edges added so far.
+   *
+   * @return a graph holding every node and distinct edge
+   */
+  public DijkstraGraph<NodeType, Double> build() {
+    DijkstraGraph<NodeType, Double> graph = new DijkstraGraph<>();
+    addTo(graph);
+    return graph;
+  }
+
+  /**
+   * Builds an immutable CSR graph with the nodes and edges added so far,
+   * without building a DijkstraGraph first. The positions of the nodes are
+   * only kept when every node has one.
+   *
+   * @return a snapshot holding every node and distinct edge
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableCsrGraph<NodeType> freeze() {
+    compact();
+    int nodeCount = nodes.size();
+    boolean allCoordinates = true;
+    for (int id = 0; id < nodeCount; id++)
+      allCoordinates &= !Double.isNaN(latitudes[id]) && !Double.isNaN(longitudes[id]);
+    // the arrays are copied, as the graph must not see later additions
+    int count = csrOffsets[nodeCount];
+    return new ImmutableCsrGraph<>((NodeType[]) nodes.toArray(),
+        Arrays.copyOf(csrOffsets, nodeCount + 1), Arrays.copyOf(csrTargets, count),
+        Arrays.copyOf(csrWeights, count), DijkstraGraph.DEFAULT_HEAP_ARITY,
+        new HashtableMap<>(Math.max(16, nodeCount * 2)),
+        allCoordinates ? Arrays.copyOf(latitudes, nodeCount) : null,
+        allCoordinates ? Arrays.copyOf(longitudes, nodeCount) : null);
+  }
+
+  /**
+   * Adds the nodes and edges added so far to a graph. An empty BaseGraph
+   * (such as a DijkstraGraph) is filled in one step without any duplicate
+   * checks. Any other graph gets one insertNode and insertEdge call per node
+   * and distinct edge.
+   *
+   * @param graph the graph to add to
+   */
+  @SuppressWarnings("unchecked")
+  public void addTo(GraphADT<NodeType, Double> graph) {
+    compact();
+    int nodeCount = nodes.size();
+    if (graph instanceof BaseGraph && graph.getNodeCount() == 0) {
+      Double[] boxedWeights = new Double[csrOffsets[nodeCount]];
+      for (int edge = 0; edge < boxedWeights.length; edge++)
+        boxedWeights[edge] = csrWeights[edge];
+      ((BaseGraph<NodeType, Double>) graph).insertAll((NodeType[]) nodes.toArray(), latitudes,
+          longitudes, csrOffsets, csrTargets, boxedWeights);
+      return;
+    }
+    for (int id = 0; id < nodeCount; id++) {
+      graph.insertNode(nodes.get(id));
+      if (!Double.isNaN(latitudes[id]) && graph instanceof BaseGraph)
+        ((BaseGraph<NodeType, Double>) graph).setNodeCoordinates(nodes.get(id), latitudes[id],
+            longitudes[id]);
+    }
+    for (int pred = 0; pred < nodeCount; pred++)
+      for (int edge = csrOffsets[pred]; edge < csrOffsets[pred + 1]; edge++)
+        graph.insertEdge(nodes.get(pred), nodes.get(csrTargets[edge]), csrWeights[edge]);
+  }
+
+  /**
+   * Computes the CSR arrays of the distinct edges, unless they are up to
+   * date.
+   */
+  private void compact() {
+    if (csrOffsets != null)
+      return;
+    int nodeCount = nodes.size();
+    // a stable counting sort by predecessor, so each node's edges stay in
+    // the order they were added
+    int[] offsets = new int[nodeCount + 1];
+    for (int edge = 0; edge < edgeCount; edge++)
+      offsets[preds[edge] + 1]++;
+    for (int id = 0; id < nodeCount; id++)
+      offsets[id + 1] += offsets[id];
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    int[] targets = new int[edgeCount];
+    double[] sortedWeights = new double[edgeCount];
+    for (int edge = 0; edge < edgeCount; edge++) {
+      int slot = next[preds[edge]]++;
+      targets[slot] = succs[edge];
+      sortedWeights[slot] = weights[edge];
+    }
+
+    // then one pass over each node's edges removes duplicates: seenBy[t] is
+    // the last node found with an edge to t, and slotOf[t] is where that
+    // edge was kept
+    int[] seenBy = new int[nodeCount];
+    Arrays.fill(seenBy, -1);
+    int[] slotOf = new int[nodeCount];
+    int kept = 0;
+    int start = 0;
+    for (int pred = 0; pred < nodeCount; pred++) {
+      int end = offsets[pred + 1];
+      offsets[pred] = kept;
+      for (int edge = start; edge < end; edge++) {
+        int target = targets[edge];
+        if (seenBy[target] == pred) {
+          sortedWeights[slotOf[target]] = sortedWeights[edge]; // the last weight wins
+        } else {
+          seenBy[target] = pred;
+          slotOf[target] = kept;
+          targets[kept] = target;
+          sortedWeights[kept] = sortedWeights[edge];
+          kept++;
+        }
+      }
+      start = end;
+    }
+    offsets[nodeCount] = kept;
+    csrOffsets = offsets;
+    csrTargets = targets;
+    csrWeights = sortedWeights;
+  }
+}
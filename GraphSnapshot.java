@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * This class writes an ImmutableCsrGraph with String nodes to a compact binary
+ * file, and reads it back, which is far faster than parsing the DOT file the
+ * graph came from: the file is memory-mapped, and apart from creating the
+ * node names, reading it is a few bulk copies into the CSR arrays.
+ *
+ * All numbers are little-endian, and the file is laid out as:
+ * - a header of six ints: MAGIC, VERSION, flags (HAS_COORDINATES), the
+ *   number of nodes n, the number of edges m, and the length of the names
+ * - the string table: int[n+1] offsets into the names, then the UTF-8 bytes
+ *   of every node's name, padded to a multiple of 8 bytes
+ * - int[n+1] CSR offsets and int[m] targets, padded to a multiple of 8 bytes
+ * - double[m] weights
+ * - double[n] latitudes and double[n] longitudes, with HAS_COORDINATES
+ * - the CRC-32C checksum of everything before it, as a long
+ * As every part is mapped at once, a snapshot is limited to 2 GB.
+ */
+public class GraphSnapshot {
+
+  // the first four bytes of every snapshot: "CSRG"
+  public static final int MAGIC = 0x47525343;
+  // the version of the layout above; files of other versions are rejected
+  public static final int VERSION = 1;
+  // the flag for snapshots that store the position of every node
+  public static final int HAS_COORDINATES = 1;
+
+  private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+  /**
+   * Writes a graph to a snapshot file, replacing the file if it exists.
+   *
+   * @param graph the graph to write
+   * @param file  the file to write the snapshot to
+   * @throws IOException if the file can't be written
+   */
+  public static void write(ImmutableCsrGraph<String> graph, Path file) throws IOException {
+    List<String> nodes = graph.getAllNodes(); // ordered by node id
+    int nodeCount = nodes.size();
+    int edgeCount = graph.offsets[nodeCount];
+    byte[][] names = new byte[nodeCount][];
+    int[] nameOffsets = new int[nodeCount + 1];
+    for (int id = 0; id < nodeCount; id++) {
+      names[id] = nodes.get(id).getBytes(StandardCharsets.UTF_8);
+      nameOffsets[id + 1] = nameOffsets[id] + names[id].length;
+    }
+    boolean coordinates = graph.hasCoordinates();
+    long size = layoutSize(nodeCount, edgeCount, nameOffsets[nodeCount], coordinates);
+    if (size > Integer.MAX_VALUE)
+      throw new IOException("A graph snapshot is limited to 2 GB: " + file);
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(coordinates ? HAS_COORDINATES : 0)
+          .putInt(nodeCount).putInt(edgeCount).putInt(nameOffsets[nodeCount]);
+      buffer.asIntBuffer().put(nameOffsets);
+      buffer.position(buffer.position() + nameOffsets.length * Integer.BYTES);
+      for (byte[] name : names)
+        buffer.put(name);
+      pad(buffer);
+      buffer.asIntBuffer().put(graph.offsets, 0, nodeCount + 1);
+      buffer.position(buffer.position() + (nodeCount + 1) * Integer.BYTES);
+      buffer.asIntBuffer().put(graph.targets, 0, edgeCount);
+      buffer.position(buffer.position() + edgeCount * Integer.BYTES);
+      pad(buffer);
+      putDoubles(buffer, graph.weights, edgeCount);
+      if (coordinates) {
+        putDoubles(buffer, graph.latitudes, nodeCount);
+        putDoubles(buffer, graph.longitudes, nodeCount);
+      }
+      CRC32C checksum = new CRC32C();
+      checksum.update(buffer.duplicate().flip());
+      buffer.putLong(checksum.getValue());
+      buffer.force();
+    }
+  }
+
+  /**
+   * Reads a graph from a snapshot file.
+   *
+   * @param file      the snapshot file to read
+   * @param heapArity the arity of the heap used by the graph's searches
+   * @return the graph stored in the file
+   * @throws IOException if the file can't be read, is not a snapshot of this
+   *                     version, or is damaged
+   */
+  public static ImmutableCsrGraph<String> read(Path file, int heapArity) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES + Long.BYTES)
+        throw new IOException("Not a graph snapshot: " + file);
+      if (size > Integer.MAX_VALUE)
+        throw new IOException("A graph snapshot is limited to 2 GB: " + file);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC)
+        throw new IOException("Not a graph snapshot: " + file);
+      int version = buffer.getInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+      boolean coordinates = (buffer.getInt() & HAS_COORDINATES) != 0;
+      int nodeCount = buffer.getInt();
+      int edgeCount = buffer.getInt();
+      int nameBytes = buffer.getInt();
+      if (nodeCount < 0 || edgeCount < 0 || nameBytes < 0
+          || layoutSize(nodeCount, edgeCount, nameBytes, coordinates) != size)
+        throw new IOException("Damaged graph snapshot: " + file);
+      CRC32C checksum = new CRC32C();
+      checksum.update(buffer.duplicate().position(0).limit((int) size - Long.BYTES));
+      if (checksum.getValue() != buffer.getLong((int) size - Long.BYTES))
+        throw new IOException("Damaged graph snapshot: " + file);
+
+      int[] nameOffsets = getInts(buffer, nodeCount + 1);
+      byte[] names = new byte[nameBytes];
+      buffer.get(names);
+      pad(buffer);
+      String[] nodeData = new String[nodeCount];
+      for (int id = 0; id < nodeCount; id++)
+        nodeData[id] = new String(names, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id],
+            StandardCharsets.UTF_8);
+      int[] offsets = getInts(buffer, nodeCount + 1);
+      int[] targets = getInts(buffer, edgeCount);
+      pad(buffer);
+      double[] weights = getDoubles(buffer, edgeCount);
+      double[] latitudes = coordinates ? getDoubles(buffer, nodeCount) : null;
+      double[] longitudes = coordinates ? getDoubles(buffer, nodeCount) : null;
+      return new ImmutableCsrGraph<>(nodeData, offsets, targets, weights, heapArity,
+          new HashtableMap<>(Math.max(16, nodeCount * 2)), latitudes, longitudes);
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      // offsets that passed the checksum but point outside the arrays
+      throw new IOException("Damaged graph snapshot: " + file, e);
+    }
+  }
+
+  // the size in bytes of a snapshot with the provided counts
+  private static long layoutSize(int nodeCount, int edgeCount, int nameBytes,
+      boolean coordinates) {
+    long size = HEADER_BYTES + (nodeCount + 1L) * Integer.BYTES + nameBytes;
+    size = padded(size) + (nodeCount + 1L + edgeCount) * Integer.BYTES;
+    size = padded(size) + (long) edgeCount * Double.BYTES;
+    if (coordinates)
+      size += 2L * nodeCount * Double.BYTES;
+    return size + Long.BYTES;
+  }
+
+  private static long padded(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  private static void pad(MappedByteBuffer buffer) {
+    buffer.position((int) padded(buffer.position()));
+  }
+
+  private static void putDoubles(MappedByteBuffer buffer, double[] values, int count) {
+    buffer.asDoubleBuffer().put(values, 0, count);
+    buffer.position(buffer.position() + count * Double.BYTES);
+  }
+
+  private static int[] getInts(MappedByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  private static double[] getDoubles(MappedByteBuffer buffer, int count) {
+    double[] values = new double[count];
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + count * Double.BYTES);
+    return values;
+  }
+}
@@ -1,5 +1,7 @@
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -11,6 +13,8 @@ import java.util.NoSuchElementException;
 public class Graph_Placeholder implements GraphADT<String, Double> {
 
   protected List<String> path;
+  // changes whenever path changes, so that cached results can tell
+  protected long version = 0;
 
   public Graph_Placeholder() {
     path = new ArrayList<>();
@@ -22,6 +26,7 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
   public boolean insertNode(String data) {
     if (path.size() < 4) {
       path.add(data);
+      version++;
       return true;
     } else
       return false;
@@ -30,6 +35,7 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
   public boolean removeNode(String data) {
     if (path.size() > 3 && path.contains(data)) {
       path.remove(data);
+      version++;
       return true;
     } else
       return false;
@@ -71,6 +77,15 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
     return path.size() - 1;
   }
 
+  public void clear() {
+    // the placeholder always keeps its fixed path, but counts as changed
+    version++;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
   public List<String> shortestPathData(String start, String end) {
     boolean capture = false;
     ArrayList<String> list = new ArrayList<>();
@@ -98,4 +113,29 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
     }
     return sum;
   }
+
+  public PathResult<String> shortestPath(String start, String end) {
+    List<String> nodes = shortestPathData(start, end);
+    if (nodes.isEmpty())
+      throw new NoSuchElementException();
+    List<Double> legCosts = new ArrayList<>();
+    for (int i = 1; i < nodes.size(); i++)
+      legCosts.add(getEdge(nodes.get(i - 1), nodes.get(i)));
+    return new PathResult<>(nodes, legCosts);
+  }
+
+  public Map<String, Double> nearestK(String start, int k) {
+    int from = path.indexOf(start);
+    if (from < 0)
+      throw new NoSuchElementException();
+    // every other node on the path costs its distance (in steps) from start
+    Map<String, Double> nearest = new LinkedHashMap<>();
+    for (int step = 1; step < path.size(); step++) {
+      if (from - step >= 0 && nearest.size() < k)
+        nearest.put(path.get(from - step), (double) step);
+      if (from + step < path.size() && nearest.size() < k)
+        nearest.put(path.get(from + step), (double) step);
+    }
+    return nearest;
+  }
 }
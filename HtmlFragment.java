@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class holds an HTML fragment that is already encoded as UTF-8, so it
+ * can be sent any number of times without encoding it again, along with a
+ * strong entity tag (ETag) for HTTP caching. The tag is taken from a hash of
+ * the bytes, so two fragments have the same tag exactly when they have the
+ * same content, no matter which query or graph version they were rendered
+ * for. Fragments are immutable, and can be shared between threads.
+ */
+public class HtmlFragment {
+
+  private final byte[] utf8;
+  private final String etag;
+
+  /**
+   * Encodes an HTML fragment.
+   *
+   * @param html the HTML to encode
+   */
+  public HtmlFragment(CharSequence html) {
+    utf8 = html.toString().getBytes(StandardCharsets.UTF_8);
+    etag = computeETag(utf8);
+  }
+
+  // the first 128 bits of the SHA-256 hash of the bytes, in quoted hex
+  private static String computeETag(byte[] bytes) {
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Every JDK supports SHA-256.", e);
+    }
+    StringBuilder tag = new StringBuilder(34).append('"');
+    for (int i = 0; i < 16; i++) {
+      tag.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+      tag.append(Character.forDigit(hash[i] & 0xF, 16));
+    }
+    return tag.append('"').toString();
+  }
+
+  /**
+   * Returns the strong entity tag of this fragment, including its quotes, as
+   * it is sent in an ETag header.
+   *
+   * @return the entity tag
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  /**
+   * Returns the number of bytes in the UTF-8 encoding of this fragment.
+   *
+   * @return the length of the fragment in bytes
+   */
+  public int getLength() {
+    return utf8.length;
+  }
+
+  /**
+   * Writes the UTF-8 encoding of this fragment to a stream.
+   *
+   * @param out the stream to write to
+   * @throws IOException if out can't be written to
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(utf8);
+  }
+
+  /**
+   * Checks whether the value of an If-None-Match request header names this
+   * fragment, in which case the client already has it. The header holds
+   * either * or a list of entity tags separated by commas, and (as HTTP
+   * requires for If-None-Match) a weak tag W/"x" also matches the tag "x".
+   *
+   * @param ifNoneMatch the value of the header, or null if there is none
+   * @return true if the header names this fragment, or false otherwise
+   */
+  public boolean isMatchedBy(String ifNoneMatch) {
+    if (ifNoneMatch == null)
+      return false;
+    if (ifNoneMatch.trim().equals("*"))
+      return true;
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/"))
+        tag = tag.substring(2);
+      if (tag.equals(etag))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the HTML of this fragment.
+   *
+   * @return the decoded fragment
+   */
+  @Override
+  public String toString() {
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+}
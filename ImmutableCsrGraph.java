@@ -0,0 +1,990 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a read-only snapshot of a directed, weighted graph that is
+ * stored in compressed sparse row (CSR) form: the edges leaving node v are
+ * stored at positions offsets[v] to offsets[v+1]-1 of the targets and weights
+ * arrays. A second (reverse) CSR stores the edges entering each node. Nodes
+ * are identified by dense int ids, so the shortest path search below only
+ * walks primitive arrays instead of linked lists of boxed edge weights.
+ *
+ * All methods that would change the graph throw an
+ * UnsupportedOperationException. Queries can run on any number of threads at
+ * the same time without locking: the arrays never change, and each query
+ * takes its own search state (frontier heap, costs and parents) from a pool.
+ */
+public class ImmutableCsrGraph<NodeType> implements GraphADT<NodeType, Double> {
+
+  // nodeData[id] is the data of the node with that id
+  protected final NodeType[] nodeData;
+  // node ids can be retrieved from this map by their unique data
+  protected final MapADT<NodeType, Integer> nodeIds;
+
+  // edges leaving each node, in the order they were inserted
+  protected final int[] offsets;
+  protected final int[] targets;
+  protected final double[] weights;
+
+  // edges entering each node: reverseSources holds the predecessor of each
+  // edge, and reverseWeights holds its weight
+  protected final int[] reverseOffsets;
+  protected final int[] reverseSources;
+  protected final double[] reverseWeights;
+
+  // the mean radius of the earth in meters
+  protected static final double EARTH_RADIUS = 6_371_000.0;
+
+  // the position of each node in degrees, or null when some node has none
+  protected final double[] latitudes;
+  protected final double[] longitudes;
+  // precomputed for the heuristic: the latitude of each node in radians, and
+  // its cosine
+  protected final double[] latitudeRadians;
+  protected final double[] latitudeCosines;
+  // the fastest straight-line speed (in meters per second of edge weight)
+  // along any edge, so that no path can cover a distance faster than this
+  protected final double maxSpeed;
+
+  // the landmark preprocessing used by ALT searches, or null
+  protected volatile LandmarkIndex landmarkIndex = null;
+
+  // the algorithm used by point-to-point queries
+  protected volatile SearchStrategy strategy = SearchStrategy.DIJKSTRA;
+  protected final int heapArity;
+
+  // the most nodes that distanceMatrix settles backward from a destination,
+  // and the most bucket entries it adds for all destinations together
+  protected static final int MATRIX_BACKWARD_SETTLES = 4096;
+  protected static final int MATRIX_BUCKET_ENTRIES = 1 << 22;
+
+  /**
+   * The scratch state of one query: the state of its forward search and of
+   * its backward search (which is only created once a bidirectional query
+   * needs it), along with the result of a point-to-point search. Its path is
+   * the forward path to meetingForward, followed by the backward path from
+   * meetingBackward (both are endId for forward-only searches), and its cost
+   * is pathCost.
+   */
+  protected static class Search {
+    protected final SearchSpace forward;
+    protected SearchSpace backward = null;
+    protected int meetingForward;
+    protected int meetingBackward;
+    protected double pathCost;
+
+    protected Search(int nodeCount, int heapArity) {
+      forward = new SearchSpace(nodeCount, heapArity);
+    }
+  }
+
+  // each query takes a search state from this pool for its own use, so any
+  // number of threads can query this graph at the same time without locking
+  protected final ScratchPool<Search> searches;
+  // the number of nodes settled by the most recent query of any thread
+  protected volatile int settledCount = 0;
+
+  /**
+   * Creates a snapshot from the forward CSR arrays of a graph. The edges
+   * leaving node v must be stored at positions offsets[v] to offsets[v+1]-1
+   * of targets and weights, and nodeData must not contain duplicates. The
+   * arrays are used directly and must not be changed afterwards.
+   *
+   * @param nodeData  the data of each node, indexed by node id
+   * @param offsets   the start of each node's edges, with length nodes+1
+   * @param targets   the successor id of each edge
+   * @param weights   the weight of each edge
+   * @param heapArity the arity of the heap used by shortest path searches
+   */
+  public ImmutableCsrGraph(NodeType[] nodeData, int[] offsets, int[] targets, double[] weights,
+      int heapArity) {
+    // size the map so that it never has to grow while being filled
+    this(nodeData, offsets, targets, weights, heapArity,
+        new HashtableMap<>(Math.max(16, nodeData.length * 2)));
+  }
+
+  /**
+   * Creates a snapshot from the forward CSR arrays of a graph, as described
+   * above, and looks up node ids through the provided map.
+   *
+   * @param nodeData  the data of each node, indexed by node id
+   * @param offsets   the start of each node's edges, with length nodes+1
+   * @param targets   the successor id of each edge
+   * @param weights   the weight of each edge
+   * @param heapArity the arity of the heap used by shortest path searches
+   * @param nodeIds   an empty map, which is filled with the id of every node
+   */
+  public ImmutableCsrGraph(NodeType[] nodeData, int[] offsets, int[] targets, double[] weights,
+      int heapArity, MapADT<NodeType, Integer> nodeIds) {
+    this(nodeData, offsets, targets, weights, heapArity, nodeIds, null, null);
+  }
+
+  /**
+   * Creates a snapshot from the forward CSR arrays of a graph, as described
+   * above, along with the geographic position of every node, which is used by
+   * A* searches.
+   *
+   * @param nodeData   the data of each node, indexed by node id
+   * @param offsets    the start of each node's edges, with length nodes+1
+   * @param targets    the successor id of each edge
+   * @param weights    the weight of each edge
+   * @param heapArity  the arity of the heap used by shortest path searches
+   * @param nodeIds    an empty map, which is filled with the id of every node
+   * @param latitudes  the latitude of each node in degrees, or null
+   * @param longitudes the longitude of each node in degrees, or null
+   */
+  public ImmutableCsrGraph(NodeType[] nodeData, int[] offsets, int[] targets, double[] weights,
+      int heapArity, MapADT<NodeType, Integer> nodeIds, double[] latitudes,
+      double[] longitudes) {
+    int nodeCount = nodeData.length;
+    this.nodeData = nodeData;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+
+    this.nodeIds = nodeIds;
+    for (int id = 0; id < nodeCount; id++)
+      nodeIds.put(nodeData[id], id);
+
+    // build the reverse CSR with a counting sort of the edges by target
+    int edgeCount = offsets[nodeCount];
+    reverseOffsets = new int[nodeCount + 1];
+    reverseSources = new int[edgeCount];
+    reverseWeights = new double[edgeCount];
+    for (int edge = 0; edge < edgeCount; edge++)
+      reverseOffsets[targets[edge] + 1]++;
+    for (int id = 0; id < nodeCount; id++)
+      reverseOffsets[id + 1] += reverseOffsets[id];
+    int[] next = Arrays.copyOf(reverseOffsets, nodeCount);
+    for (int source = 0; source < nodeCount; source++) {
+      for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+        int slot = next[targets[edge]]++;
+        reverseSources[slot] = source;
+        reverseWeights[slot] = weights[edge];
+      }
+    }
+
+    this.heapArity = heapArity;
+    searches = new ScratchPool<>(() -> new Search(nodeCount, heapArity));
+
+    if (latitudes == null || longitudes == null) {
+      this.latitudes = this.longitudes = null;
+      latitudeRadians = latitudeCosines = null;
+      maxSpeed = 0.0;
+    } else {
+      this.latitudes = latitudes;
+      this.longitudes = longitudes;
+      latitudeRadians = new double[nodeCount];
+      latitudeCosines = new double[nodeCount];
+      for (int id = 0; id < nodeCount; id++) {
+        latitudeRadians[id] = Math.toRadians(latitudes[id]);
+        latitudeCosines[id] = Math.cos(latitudeRadians[id]);
+      }
+      double fastest = 0.0;
+      for (int source = 0; source < nodeCount; source++) {
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+          double speed = distance(source, targets[edge]) / weights[edge];
+          // a free edge between two nodes at the same place (0 / 0) has no speed
+          if (!Double.isNaN(speed))
+            fastest = Math.max(fastest, speed);
+        }
+      }
+      // a free edge between two different places is infinitely fast, so no
+      // distance bounds the cost, and estimates fall back to 0 (Dijkstra);
+      // otherwise the speed is rounded up slightly, so rounding errors can't
+      // make an estimate too large
+      maxSpeed = Double.isInfinite(fastest) ? 0.0 : fastest * (1 + 1e-9);
+    }
+  }
+
+  /**
+   * Checks whether every node of this graph has a geographic position.
+   *
+   * @return true if A* searches can be used, or false otherwise
+   */
+  public boolean hasCoordinates() {
+    return latitudes != null;
+  }
+
+  /**
+   * Computes the great-circle (haversine) distance between two nodes.
+   *
+   * @param fromId the id of one node
+   * @param toId   the id of the other node
+   * @return the distance between the nodes in meters
+   */
+  protected double distance(int fromId, int toId) {
+    double latitudeSine = Math.sin((latitudeRadians[toId] - latitudeRadians[fromId]) / 2);
+    double longitudeSine = Math.sin(Math.toRadians(longitudes[toId] - longitudes[fromId]) / 2);
+    double a = latitudeSine * latitudeSine
+        + latitudeCosines[fromId] * latitudeCosines[toId] * longitudeSine * longitudeSine;
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+  }
+
+  /**
+   * Estimates the cost of the rest of a path: the time to walk along a
+   * straight line to the destination at the fastest speed of any edge. Since
+   * no edge is faster than that, this never overestimates (it is admissible),
+   * and the estimate never drops by more than an edge's weight along that
+   * edge (it is consistent), so A* never has to settle a node twice.
+   *
+   * @param fromId the id of the node to estimate from
+   * @param toId   the id of the destination node
+   * @return a lower bound on the cost of any path between those nodes
+   */
+  protected double estimate(int fromId, int toId) {
+    return maxSpeed == 0.0 ? 0.0 : distance(fromId, toId) / maxSpeed;
+  }
+
+  /**
+   * Sets the algorithm used by shortestPathData and shortestPathCost.
+   *
+   * @param strategy the search strategy to use for later queries
+   */
+  public void setSearchStrategy(SearchStrategy strategy) {
+    this.strategy = strategy;
+  }
+
+  /**
+   * Returns the algorithm used by shortestPathData and shortestPathCost.
+   *
+   * @return the current search strategy
+   */
+  public SearchStrategy getSearchStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Sets the landmark preprocessing used by ALT searches. The index must have
+   * been built from this graph.
+   *
+   * @param landmarkIndex the landmarks of this graph, or null to remove them
+   */
+  public void setLandmarks(LandmarkIndex landmarkIndex) {
+    this.landmarkIndex = landmarkIndex;
+  }
+
+  /**
+   * Returns the landmark preprocessing used by ALT searches.
+   *
+   * @return the landmarks of this graph, or null when there are none
+   */
+  public LandmarkIndex getLandmarks() {
+    return landmarkIndex;
+  }
+
+  /**
+   * Returns the number of nodes settled by the most recent query, counting
+   * both directions of a bidirectional search. When several threads query
+   * this graph at the same time, it is the count of whichever query ended
+   * last.
+   *
+   * @return the number of nodes settled by the last search
+   */
+  public int getSettledCount() {
+    return settledCount;
+  }
+
+  /**
+   * Takes a search state out of the pool for one query.
+   *
+   * @return a search state that no other thread is using
+   */
+  protected Search acquireSearch() {
+    Search state = searches.acquire();
+    // a forward-only query must not count the last backward search
+    if (state.backward != null)
+      state.backward.settledCount = 0;
+    return state;
+  }
+
+  /**
+   * Returns a search state to the pool once its query is done, and records
+   * the number of nodes the query settled.
+   *
+   * @param state a search state taken with acquireSearch
+   */
+  protected void releaseSearch(Search state) {
+    settledCount = state.forward.settledCount
+        + (state.backward == null ? 0 : state.backward.settledCount);
+    searches.release(state);
+  }
+
+  /**
+   * Returns the id of the node containing the provided data.
+   *
+   * @param data the data of a node in this graph
+   * @return the id of that node
+   * @throws NoSuchElementException if no node contains data
+   */
+  protected int idOf(NodeType data) {
+    if (!nodeIds.containsKey(data))
+      throw new NoSuchElementException("The nodes don't exist in the graph.");
+    return nodeIds.get(data);
+  }
+
+  /**
+   * Finds a shortest path from startId to endId with the current strategy.
+   * Afterwards, state.pathCost holds its cost and searchPathIds(state)
+   * returns its nodes.
+   *
+   * @param state   the search state to use
+   * @param startId the id of the node to start from
+   * @param endId   the id of the node to find a shortest path to
+   * @throws NoSuchElementException when there is no path from start to end
+   */
+  protected void search(Search state, int startId, int endId) {
+    SearchStrategy strategy = this.strategy;
+    if (strategy == SearchStrategy.BIDIRECTIONAL)
+      searchBidirectional(state, startId, endId);
+    else if (strategy == SearchStrategy.ASTAR && hasCoordinates())
+      searchAStar(state, startId, endId);
+    else if (strategy == SearchStrategy.ALT && landmarkIndex != null)
+      searchAStar(state, startId, endId);
+    else
+      searchForward(state, startId, endId);
+  }
+
+  /**
+   * Runs Dijkstra's shortest path algorithm from startId until endId is
+   * settled. The search allocates nothing per edge.
+   *
+   * @param state   the search state to use
+   * @param startId the id of the node to start from
+   * @param endId   the id of the node to find a shortest path to
+   * @throws NoSuchElementException when there is no path from start to end
+   */
+  protected void searchForward(Search state, int startId, int endId) {
+    state.forward.begin(startId);
+    while (!state.forward.frontier.isEmpty()) {
+      int currentId = state.forward.settleNext();
+      if (currentId == endId) {
+        state.meetingForward = state.meetingBackward = endId;
+        state.pathCost = state.forward.cost[endId];
+        return;
+      }
+      double currentCost = state.forward.cost[currentId];
+      for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++)
+        state.forward.relax(targets[edge], currentCost + weights[edge], currentId);
+    }
+    throw new NoSuchElementException("No path here exists");
+  }
+
+  /**
+   * Runs Dijkstra's shortest path algorithm from sourceId until every
+   * reachable node is settled, following either the leaving edges (to find
+   * the cost from the source to every node) or the entering edges (to find
+   * the cost from every node to the source).
+   *
+   * @param space    the search state to use, sized for this graph
+   * @param sourceId the id of the node to search from
+   * @param reverse  true to follow entering edges instead of leaving edges
+   * @param costs    filled with the cost of every node, or infinity for the
+   *                 nodes that can't be reached
+   */
+  protected void searchAll(SearchSpace space, int sourceId, boolean reverse, double[] costs) {
+    int[] rowOffsets = reverse ? reverseOffsets : offsets;
+    int[] neighbors = reverse ? reverseSources : targets;
+    double[] rowWeights = reverse ? reverseWeights : weights;
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    space.begin(sourceId);
+    while (!space.frontier.isEmpty()) {
+      int currentId = space.settleNext();
+      double currentCost = space.cost[currentId];
+      costs[currentId] = currentCost;
+      for (int edge = rowOffsets[currentId]; edge < rowOffsets[currentId + 1]; edge++)
+        space.relax(neighbors[edge], currentCost + rowWeights[edge], currentId);
+    }
+  }
+
+  /**
+   * Runs an A* search from startId until endId is settled. Nodes are settled
+   * in order of their cost plus the estimated cost to endId, so the search
+   * heads toward endId instead of spreading out evenly in every direction.
+   * The estimate comes from the landmarks for ALT searches, and from the node
+   * coordinates otherwise.
+   *
+   * @param state   the search state to use
+   * @param startId the id of the node to start from
+   * @param endId   the id of the node to find a shortest path to
+   * @throws NoSuchElementException when there is no path from start to end
+   */
+  protected void searchAStar(Search state, int startId, int endId) {
+    LandmarkIndex landmarks = strategy == SearchStrategy.ALT ? landmarkIndex : null;
+    state.forward.begin(startId);
+    while (!state.forward.frontier.isEmpty()) {
+      int currentId = state.forward.settleNext();
+      if (currentId == endId) {
+        state.meetingForward = state.meetingBackward = endId;
+        state.pathCost = state.forward.cost[endId];
+        return;
+      }
+      double currentCost = state.forward.cost[currentId];
+      for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++) {
+        int nextId = targets[edge];
+        // skip the estimate for nodes that are already settled
+        if (state.forward.isSettled(nextId))
+          continue;
+        double remaining = landmarks != null
+            ? landmarks.estimate(nextId, endId) : estimate(nextId, endId);
+        // an infinite estimate proves that endId can't be reached from there
+        if (remaining == Double.POSITIVE_INFINITY)
+          continue;
+        double newCost = currentCost + weights[edge];
+        state.forward.relax(nextId, newCost, currentId, newCost + remaining);
+      }
+    }
+    throw new NoSuchElementException("No path here exists");
+  }
+
+  /**
+   * Runs a forward search from startId and a backward search (over entering
+   * edges) from endId, always advancing the direction whose closest frontier
+   * node is nearer. Whenever an edge connects nodes reached by both searches,
+   * the path through that edge is a candidate. The searches stop once the
+   * two closest frontier costs add up to at least the best candidate, since
+   * no shorter path can be found after that point.
+   *
+   * @param state   the search state to use
+   * @param startId the id of the node to start from
+   * @param endId   the id of the node to find a shortest path to
+   * @throws NoSuchElementException when there is no path from start to end
+   */
+  protected void searchBidirectional(Search state, int startId, int endId) {
+    if (state.backward == null)
+      state.backward = new SearchSpace(nodeData.length, heapArity);
+    state.forward.begin(startId);
+    state.backward.begin(endId);
+    double best = Double.POSITIVE_INFINITY;
+    if (startId == endId) {
+      best = 0.0;
+      state.meetingForward = state.meetingBackward = startId;
+    }
+    while (!state.forward.frontier.isEmpty() && !state.backward.frontier.isEmpty()) {
+      double forwardMin = state.forward.frontier.peekMinKey();
+      double backwardMin = state.backward.frontier.peekMinKey();
+      if (forwardMin + backwardMin >= best)
+        break;
+      if (forwardMin <= backwardMin) {
+        // settle the closest node of the forward search
+        int currentId = state.forward.settleNext();
+        double currentCost = state.forward.cost[currentId];
+        for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++) {
+          int nextId = targets[edge];
+          double newCost = currentCost + weights[edge];
+          state.forward.relax(nextId, newCost, currentId);
+          if (state.backward.isReached(nextId) && newCost + state.backward.cost[nextId] < best) {
+            best = newCost + state.backward.cost[nextId];
+            state.meetingForward = currentId;
+            state.meetingBackward = nextId;
+          }
+        }
+      } else {
+        // settle the closest node of the backward search
+        int currentId = state.backward.settleNext();
+        double currentCost = state.backward.cost[currentId];
+        for (int edge = reverseOffsets[currentId]; edge < reverseOffsets[currentId + 1]; edge++) {
+          int previousId = reverseSources[edge];
+          double newCost = currentCost + reverseWeights[edge];
+          state.backward.relax(previousId, newCost, currentId);
+          if (state.forward.isReached(previousId)
+              && newCost + state.forward.cost[previousId] < best) {
+            best = newCost + state.forward.cost[previousId];
+            state.meetingForward = previousId;
+            state.meetingBackward = currentId;
+          }
+        }
+      }
+    }
+    if (best == Double.POSITIVE_INFINITY)
+      throw new NoSuchElementException("No path here exists");
+    state.pathCost = best;
+  }
+
+  /**
+   * Returns the ids of the nodes along the path found by the last search
+   * with a search state, ordered from start to end.
+   *
+   * @param state the search state of that search
+   * @return array of node ids along that path
+   */
+  protected int[] searchPathIds(Search state) {
+    int forwardLength = 0;
+    for (int id = state.meetingForward; id >= 0; id = state.forward.parent[id])
+      forwardLength++;
+    int length = forwardLength;
+    if (state.meetingBackward != state.meetingForward) {
+      for (int id = state.meetingBackward; id >= 0; id = state.backward.parent[id])
+        length++;
+    }
+    int[] path = new int[length];
+    int slot = forwardLength;
+    for (int id = state.meetingForward; id >= 0; id = state.forward.parent[id])
+      path[--slot] = id;
+    if (state.meetingBackward != state.meetingForward) {
+      // continue along the backward search's successors to the end node
+      slot = forwardLength;
+      for (int id = state.meetingBackward; id >= 0; id = state.backward.parent[id])
+        path[slot++] = id;
+    }
+    return path;
+  }
+
+  /**
+   * Builds the result for a path through the provided nodes, looking up the
+   * weight of the edge between each two consecutive nodes.
+   *
+   * @param path the ids of the nodes along the path, from start to end
+   * @return the nodes and costs along that path
+   */
+  protected PathResult<NodeType> pathResult(int[] path) {
+    List<NodeType> nodes = new ArrayList<>(path.length);
+    List<Double> legCosts = new ArrayList<>(path.length);
+    nodes.add(nodeData[path[0]]);
+    for (int i = 1; i < path.length; i++) {
+      nodes.add(nodeData[path[i]]);
+      legCosts.add(weights[findEdge(path[i - 1], path[i])]);
+    }
+    return new PathResult<>(nodes, legCosts);
+  }
+
+  /**
+   * Finds the shortest path from the node containing the start data to the
+   * node containing the end data with a single search, in the direction(s)
+   * chosen by the current search strategy.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the nodes and costs along this shortest path
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+    int endId = idOf(end);
+    int startId = idOf(start);
+    Search state = acquireSearch();
+    try {
+      search(state, startId, endId);
+      return pathResult(searchPathIds(state));
+    } finally {
+      releaseSearch(state);
+    }
+  }
+
+  /**
+   * Returns the list of data values from nodes along the shortest path from
+   * the node with the provided start value through the node with the provided
+   * end value. This method uses Dijkstra's shortest path algorithm, in the
+   * direction(s) chosen by the current search strategy.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return list of data item from node along this shortest path
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+    return shortestPath(start, end).getNodes();
+  }
+
+  /**
+   * Returns the cost of the shortest path from the node containing the start
+   * data to the node containing the end data. This method uses Dijkstra's
+   * shortest path algorithm, in the direction(s) chosen by the current search
+   * strategy.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end   the data item in the destination node for the path
+   * @return the cost of the shortest path between these nodes
+   * @throws NoSuchElementException if either node is not in the graph, or if
+   *                                there is no path from start to end
+   */
+  @Override
+  public double shortestPathCost(NodeType start, NodeType end) {
+    int endId = idOf(end);
+    int startId = idOf(start);
+    Search state = acquireSearch();
+    try {
+      search(state, startId, endId);
+      return state.pathCost;
+    } finally {
+      releaseSearch(state);
+    }
+  }
+
+  /**
+   * Returns the (up to) k nodes that can be reached most cheaply from the
+   * node containing the start data, not counting the start node itself. The
+   * search stops once k + 1 nodes (the start and k others) are settled.
+   *
+   * @param start the data item in the node to search from
+   * @param k     the largest number of nodes to return
+   * @return a map from the data of each of those nodes to the cost of the
+   *         shortest path to it, iterating in order of increasing cost
+   * @throws NoSuchElementException   if the start node is not in the graph
+   * @throws IllegalArgumentException if k is negative
+   */
+  @Override
+  public Map<NodeType, Double> nearestK(NodeType start, int k) {
+    if (k < 0)
+      throw new IllegalArgumentException("k can't be negative.");
+    int startId = idOf(start);
+    Map<NodeType, Double> nearest = new LinkedHashMap<>();
+    if (k == 0)
+      return nearest;
+    Search state = acquireSearch();
+    SearchSpace forward = state.forward;
+    try {
+      forward.begin(startId);
+      while (!forward.frontier.isEmpty()) {
+        int currentId = forward.settleNext();
+        double currentCost = forward.cost[currentId];
+        if (currentId != startId) {
+          nearest.put(nodeData[currentId], currentCost);
+          if (nearest.size() == k)
+            break;
+        }
+        for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++)
+          forward.relax(targets[edge], currentCost + weights[edge], currentId);
+      }
+    } finally {
+      releaseSearch(state);
+    }
+    return nearest;
+  }
+
+  /**
+   * Finds the shortest paths from the node containing the source data to
+   * each of several destinations with a single search, which stops as soon
+   * as every destination is settled, instead of one search per destination.
+   *
+   * @param source       the data item in the starting node of every path
+   * @param destinations the data items in the destination nodes
+   * @return the path to each destination, in the same order, or null for a
+   *         destination that is not in the graph or can't be reached
+   * @throws NoSuchElementException if the source node is not in the graph
+   */
+  public List<PathResult<NodeType>> shortestPaths(NodeType source, List<NodeType> destinations) {
+    int sourceId = idOf(source);
+    int[] destinationIds = new int[destinations.size()];
+    for (int i = 0; i < destinationIds.length; i++) {
+      NodeType destination = destinations.get(i);
+      destinationIds[i] = destination != null && nodeIds.containsKey(destination)
+          ? nodeIds.get(destination) : -1;
+    }
+    // the distinct ids of the destinations in the graph, sorted so that the
+    // search can look up whether a settled node is one of them
+    int[] pending = Arrays.stream(destinationIds).filter(id -> id >= 0).sorted().distinct()
+        .toArray();
+    int remaining = pending.length;
+    List<PathResult<NodeType>> paths = new ArrayList<>(destinationIds.length);
+    Search state = acquireSearch();
+    SearchSpace forward = state.forward;
+    try {
+      forward.begin(sourceId);
+      while (remaining > 0 && !forward.frontier.isEmpty()) {
+        int currentId = forward.settleNext();
+        double currentCost = forward.cost[currentId];
+        if (Arrays.binarySearch(pending, currentId) >= 0)
+          remaining--;
+        for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++)
+          forward.relax(targets[edge], currentCost + weights[edge], currentId);
+      }
+      for (int id : destinationIds) {
+        if (id < 0 || !forward.isSettled(id)) {
+          paths.add(null);
+          continue;
+        }
+        int length = 0;
+        for (int node = id; node >= 0; node = forward.parent[node])
+          length++;
+        int[] path = new int[length];
+        for (int node = id; node >= 0; node = forward.parent[node])
+          path[--length] = node;
+        paths.add(pathResult(path));
+      }
+    } finally {
+      releaseSearch(state);
+    }
+    return paths;
+  }
+
+  /**
+   * Runs a search from the node containing the source data that settles
+   * every reachable node, and returns the resulting shortest path tree,
+   * which answers later queries from the same source without searching.
+   *
+   * @param source the data item in the node to search from
+   * @return the shortest path tree of source
+   * @throws NoSuchElementException if the source node is not in the graph
+   */
+  public ShortestPathTree<NodeType> shortestPathTree(NodeType source) {
+    int sourceId = idOf(source);
+    double[] costs = new double[nodeData.length];
+    int[] parents = new int[nodeData.length];
+    Search state = acquireSearch();
+    try {
+      searchAll(state.forward, sourceId, false, costs);
+      // parents are only valid for the nodes that the search reached
+      for (int id = 0; id < parents.length; id++)
+        parents[id] = costs[id] == Double.POSITIVE_INFINITY ? -1 : state.forward.parent[id];
+    } finally {
+      releaseSearch(state);
+    }
+    return new ShortestPathTree<>(this, sourceId, costs, parents);
+  }
+
+  /**
+   * Finds the cost of the shortest path from every source to every
+   * destination, with one backward search per destination and one forward
+   * search per source, instead of a complete search for every pair.
+   *
+   * The backward search from each destination follows entering edges and
+   * settles at most MATRIX_BACKWARD_SETTLES nodes, or fewer when there are
+   * many destinations, adding each settled node to the buckets (see
+   * DistanceBuckets) with its exact cost to the destination. Every node that
+   * it didn't settle is then at least as far from the destination as its
+   * radius, the cost of its closest unsettled node. The forward search from
+   * each source joins every node it reaches with that node's bucket, and
+   * stops once its own closest unsettled node is so far away that, plus the
+   * radius of any destination, it can't improve any cost of the row. The
+   * bucket of a node is joined as soon as the forward search lowers its
+   * cost, not when it settles it, because the forward search may stop
+   * before settling the first node of a shortest path that lies within the
+   * destination's radius.
+   *
+   * @param sources      the data items in the nodes to find paths from
+   * @param destinations the data items in the nodes to find paths to
+   * @return matrix[i][j] is the cost of the shortest path from sources[i] to
+   *         destinations[j], or infinity if there is no such path
+   * @throws NoSuchElementException if a source or destination is not in the
+   *                                graph
+   */
+  public double[][] distanceMatrix(List<NodeType> sources, List<NodeType> destinations) {
+    return distanceMatrix(sources, destinations, MATRIX_BACKWARD_SETTLES);
+  }
+
+  /**
+   * Finds the cost of the shortest path from every source to every
+   * destination, like distanceMatrix above, with a different limit on the
+   * nodes that each backward search settles. Smaller limits take less memory
+   * for buckets, and leave more of the work to the forward searches.
+   *
+   * @param sources      the data items in the nodes to find paths from
+   * @param destinations the data items in the nodes to find paths to
+   * @param settleLimit  the most nodes to settle backward from a destination
+   * @return the cost of the shortest path from each source (row) to each
+   *         destination (column), or infinity if there is no such path
+   * @throws NoSuchElementException if a source or destination is not in the
+   *                                graph
+   */
+  protected double[][] distanceMatrix(List<NodeType> sources, List<NodeType> destinations,
+      int settleLimit) {
+    int[] sourceIds = new int[sources.size()];
+    for (int i = 0; i < sourceIds.length; i++)
+      sourceIds[i] = idOf(sources.get(i));
+    int[] destinationIds = new int[destinations.size()];
+    for (int j = 0; j < destinationIds.length; j++)
+      destinationIds[j] = idOf(destinations.get(j));
+    double[][] matrix = new double[sourceIds.length][destinationIds.length];
+    if (sourceIds.length == 0 || destinationIds.length == 0)
+      return matrix;
+
+    settleLimit = Math.max(1, Math.min(settleLimit, MATRIX_BUCKET_ENTRIES / destinationIds.length));
+    DistanceBuckets buckets =
+        new DistanceBuckets(destinationIds.length * Math.min(settleLimit, nodeData.length));
+    // the cost below which each backward search settled every node, or
+    // infinity once it settled every node that can reach its destination
+    double[] radius = new double[destinationIds.length];
+    Search state = acquireSearch();
+    try {
+      if (state.backward == null)
+        state.backward = new SearchSpace(nodeData.length, heapArity);
+      SearchSpace backward = state.backward;
+      for (int j = 0; j < destinationIds.length; j++) {
+        backward.begin(destinationIds[j]);
+        while (!backward.frontier.isEmpty() && backward.settledCount < settleLimit) {
+          int currentId = backward.settleNext();
+          double currentCost = backward.cost[currentId];
+          buckets.add(currentId, j, currentCost);
+          for (int edge = reverseOffsets[currentId]; edge < reverseOffsets[currentId + 1]; edge++)
+            backward.relax(reverseSources[edge], currentCost + reverseWeights[edge], currentId);
+        }
+        radius[j] = backward.frontier.isEmpty()
+            ? Double.POSITIVE_INFINITY : backward.frontier.peekMinKey();
+      }
+      buckets.groupByNode(nodeData.length);
+
+      SearchSpace forward = state.forward;
+      for (int i = 0; i < sourceIds.length; i++) {
+        double[] row = matrix[i];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        forward.begin(sourceIds[i]);
+        join(buckets, sourceIds[i], 0.0, row);
+        double stop = stoppingCost(row, radius);
+        boolean improved = false;
+        while (!forward.frontier.isEmpty()) {
+          double nearest = forward.frontier.peekMinKey();
+          // stop is only brought up to date now and then, since that takes a
+          // pass over the row
+          if (improved && (nearest >= stop || (forward.settledCount & 63) == 0)) {
+            stop = stoppingCost(row, radius);
+            improved = false;
+          }
+          if (nearest >= stop)
+            break;
+          int currentId = forward.settleNext();
+          double currentCost = forward.cost[currentId];
+          for (int edge = offsets[currentId]; edge < offsets[currentId + 1]; edge++) {
+            int nextId = targets[edge];
+            double newCost = currentCost + weights[edge];
+            if (forward.relax(nextId, newCost, currentId))
+              improved |= join(buckets, nextId, newCost, row);
+          }
+        }
+      }
+    } finally {
+      releaseSearch(state);
+    }
+    return matrix;
+  }
+
+  /**
+   * Lowers the costs of a row of the distance matrix to the cost of reaching
+   * a node plus the cost to each destination in that node's bucket.
+   *
+   * @param buckets the buckets of the destinations, grouped by node
+   * @param id      the id of the node the forward search reached
+   * @param cost    the cost of reaching that node from the row's source
+   * @param row     the costs from the source to each destination
+   * @return true if a cost of the row was lowered
+   */
+  private static boolean join(DistanceBuckets buckets, int id, double cost, double[] row) {
+    boolean improved = false;
+    for (int entry = buckets.offsets[id]; entry < buckets.offsets[id + 1]; entry++) {
+      int column = buckets.targets[entry];
+      if (cost + buckets.costs[entry] < row[column]) {
+        row[column] = cost + buckets.costs[entry];
+        improved = true;
+      }
+    }
+    return improved;
+  }
+
+  /**
+   * Returns the cost at which the forward search of a row can stop: once
+   * its closest unsettled node is at least this far away, none of the paths
+   * it hasn't joined yet can be shorter than the costs in the row, because
+   * they all leave some destination's backward search at or beyond its
+   * radius.
+   *
+   * @param row    the costs found so far from the source to each destination
+   * @param radius the radius of the backward search of each destination
+   * @return the largest cost that may still improve the row
+   */
+  private static double stoppingCost(double[] row, double[] radius) {
+    double stop = Double.NEGATIVE_INFINITY;
+    for (int j = 0; j < row.length; j++) {
+      // a backward search that settled every node already joined the
+      // source itself, so its cost is final
+      if (radius[j] != Double.POSITIVE_INFINITY)
+        stop = Math.max(stop, row[j] - radius[j]);
+    }
+    return stop;
+  }
+
+  @Override
+  public boolean containsNode(NodeType data) {
+    return nodeIds.containsKey(data);
+  }
+
+  @Override
+  public List<NodeType> getAllNodes() {
+    return Collections.unmodifiableList(Arrays.asList(nodeData));
+  }
+
+  @Override
+  public int getNodeCount() {
+    return nodeData.length;
+  }
+
+  @Override
+  public boolean containsEdge(NodeType pred, NodeType succ) {
+    return nodeIds.containsKey(pred) && nodeIds.containsKey(succ)
+        && findEdge(nodeIds.get(pred), nodeIds.get(succ)) >= 0;
+  }
+
+  /**
+   * Return the weight of a specific edge.
+   *
+   * @param pred the data item contained in the source node for the edge
+   * @param succ the data item contained in the target node for the edge
+   * @return the weight of the edge between those nodes
+   * @throws NoSuchElementException if either node or the edge between them
+   *                                are not found within this graph
+   */
+  @Override
+  public Double getEdge(NodeType pred, NodeType succ) {
+    int edge = containsNode(pred) && containsNode(succ)
+        ? findEdge(nodeIds.get(pred), nodeIds.get(succ)) : -1;
+    if (edge < 0)
+      throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+    return weights[edge];
+  }
+
+  /**
+   * Finds the position of an edge within the forward CSR arrays.
+   *
+   * @param predId the id of the edge's predecessor
+   * @param succId the id of the edge's successor
+   * @return the position of that edge, or -1 if there is no such edge
+   */
+  protected int findEdge(int predId, int succId) {
+    for (int edge = offsets[predId]; edge < offsets[predId + 1]; edge++)
+      if (targets[edge] == succId)
+        return edge;
+    return -1;
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return targets.length;
+  }
+
+  @Override
+  public boolean insertNode(NodeType data) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean removeNode(NodeType data) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public boolean removeEdge(NodeType pred, NodeType succ) {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("This graph is immutable.");
+  }
+
+  @Override
+  public long getVersion() {
+    return 0; // this graph never changes
+  }
+}
@@ -0,0 +1,235 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a min-priority queue of int ids (such as dense graph node ids)
+ * ordered by double keys. It is stored as a d-ary heap in primitive arrays and
+ * keeps the heap position of every id, so the key of a queued id can be
+ * lowered in place (decrease-key) instead of queueing a duplicate entry. Each
+ * id can be in the queue at most once, so its size is bounded by the number
+ * of ids. No objects are allocated by any operation except capacity growth.
+ */
+public class IndexedDaryHeap {
+
+  protected final int arity;
+  protected int[] heap; // heap[slot] is the id stored in that heap slot
+  protected int[] position; // position[id] is the slot of id, or -1 when not queued
+  protected double[] keys; // keys[id] is the priority of id while it is queued
+  protected int size = 0;
+
+  /**
+   * Creates an empty heap.
+   *
+   * @param arity    the number of children per heap node (2 is a binary heap)
+   * @param capacity the number of ids (0 to capacity-1) that can be queued
+   *                 before the heap needs to grow
+   * @throws IllegalArgumentException if arity is less than 2 or capacity is
+   *                                  negative
+   */
+  public IndexedDaryHeap(int arity, int capacity) {
+    if (arity < 2)
+      throw new IllegalArgumentException("Heap arity must be at least 2.");
+    if (capacity < 0)
+      throw new IllegalArgumentException("Capacity can't be negative.");
+    this.arity = arity;
+    heap = new int[capacity];
+    position = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(position, -1);
+  }
+
+  /**
+   * Makes sure that ids 0 to capacity-1 can be queued.
+   *
+   * @param capacity the number of ids this heap must be able to hold
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity <= position.length)
+      return;
+    int oldLength = position.length;
+    int newLength = Math.max(capacity, oldLength * 2);
+    heap = Arrays.copyOf(heap, newLength);
+    keys = Arrays.copyOf(keys, newLength);
+    position = Arrays.copyOf(position, newLength);
+    Arrays.fill(position, oldLength, newLength, -1);
+  }
+
+  /**
+   * Returns the number of children per heap node.
+   *
+   * @return the arity of this heap
+   */
+  public int getArity() {
+    return arity;
+  }
+
+  /**
+   * Returns the number of ids in the queue.
+   *
+   * @return the number of queued ids
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the queue is empty.
+   *
+   * @return true if no ids are queued, or false otherwise
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Checks whether an id is currently queued.
+   *
+   * @param id the id to check for
+   * @return true if id is in the queue, or false otherwise
+   */
+  public boolean contains(int id) {
+    return id < position.length && position[id] >= 0;
+  }
+
+  /**
+   * Returns the key of a queued id.
+   *
+   * @param id a queued id
+   * @return the current key of id
+   */
+  public double getKey(int id) {
+    return keys[id];
+  }
+
+  /**
+   * Returns the smallest key in the queue without removing it.
+   *
+   * @return the smallest queued key
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public double peekMinKey() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty.");
+    return keys[heap[0]];
+  }
+
+  /**
+   * Adds id to the queue with the given key, or lowers the key of id when it
+   * is already queued with a larger key.
+   *
+   * @param id  the id to queue, between 0 and the capacity of this heap
+   * @param key the priority of id
+   * @return true if id was added or its key was lowered, or false if it was
+   *         already queued with a key that is no larger than key
+   */
+  public boolean insertOrDecrease(int id, double key) {
+    int slot = position[id];
+    if (slot < 0) {
+      // append to the end of the heap and sift up from there
+      slot = size++;
+      heap[slot] = id;
+      position[id] = slot;
+    } else if (key >= keys[id]) {
+      return false;
+    }
+    keys[id] = key;
+    siftUp(slot);
+    return true;
+  }
+
+  /**
+   * Changes the key of a queued id, which may move it either way in the
+   * queue, or adds id to the queue when it is not queued.
+   *
+   * @param id  the id to queue, between 0 and the capacity of this heap
+   * @param key the new priority of id
+   */
+  public void insertOrUpdate(int id, double key) {
+    int slot = position[id];
+    if (slot < 0 || key <= keys[id]) {
+      insertOrDecrease(id, key);
+      return;
+    }
+    keys[id] = key;
+    siftDown(slot);
+  }
+
+  /**
+   * Removes and returns the id with the smallest key.
+   *
+   * @return the queued id with the smallest key
+   * @throws NoSuchElementException if the queue is empty
+   */
+  public int pollMin() {
+    if (size == 0)
+      throw new NoSuchElementException("The heap is empty.");
+    int min = heap[0];
+    position[min] = -1;
+    size--;
+    if (size > 0) {
+      // move the last entry to the root and sift it back down
+      int last = heap[size];
+      heap[0] = last;
+      position[last] = 0;
+      siftDown(0);
+    }
+    return min;
+  }
+
+  /**
+   * Removes every id from the queue. This only touches the ids that are still
+   * queued, so it is cheap after a search that emptied most of the heap.
+   */
+  public void clear() {
+    for (int slot = 0; slot < size; slot++)
+      position[heap[slot]] = -1;
+    size = 0;
+  }
+
+  private void siftUp(int slot) {
+    int id = heap[slot];
+    double key = keys[id];
+    while (slot > 0) {
+      int parent = (slot - 1) / arity;
+      int parentId = heap[parent];
+      if (keys[parentId] <= key)
+        break;
+      // move the parent down into the hole
+      heap[slot] = parentId;
+      position[parentId] = slot;
+      slot = parent;
+    }
+    heap[slot] = id;
+    position[id] = slot;
+  }
+
+  private void siftDown(int slot) {
+    int id = heap[slot];
+    double key = keys[id];
+    while (true) {
+      int firstChild = slot * arity + 1;
+      if (firstChild >= size)
+        break;
+      // find the child with the smallest key
+      int lastChild = Math.min(firstChild + arity, size);
+      int minChild = firstChild;
+      double minKey = keys[heap[firstChild]];
+      for (int child = firstChild + 1; child < lastChild; child++) {
+        double childKey = keys[heap[child]];
+        if (childKey < minKey) {
+          minKey = childKey;
+          minChild = child;
+        }
+      }
+      if (minKey >= key)
+        break;
+      // move that child up into the hole
+      int childId = heap[minChild];
+      heap[slot] = childId;
+      position[childId] = slot;
+      slot = minChild;
+    }
+    heap[slot] = id;
+    position[id] = slot;
+  }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class stores the preprocessing for ALT searches (A*, Landmarks and the
+ * Triangle inequality) over one ImmutableCsrGraph: a few landmark nodes, along
+ * with the shortest path cost from every landmark to every node and from
+ * every node to every landmark. For any landmark L, the triangle inequality
+ * gives two lower bounds on the cost of a path from v to t:
+ *   cost(L, t) - cost(L, v)   and   cost(v, L) - cost(t, L)
+ * and the largest of these bounds is used as an A* estimate. Unlike the
+ * geographic estimate, this needs nothing but the edge weights.
+ */
+public class LandmarkIndex {
+
+  // the ids of the landmark nodes
+  protected final int[] landmarks;
+  // fromLandmark[v * k + i] is the cost from landmark i to node v, and
+  // toLandmark[v * k + i] is the cost from node v to landmark i (either is
+  // infinite when there is no such path); the costs of one node are stored
+  // next to each other, since estimates read all of them at once
+  protected final double[] fromLandmark;
+  protected final double[] toLandmark;
+
+  /**
+   * Selects landmarks and computes their distance tables. Landmarks are
+   * picked by farthest-point selection: each new landmark is the node whose
+   * cost from the closest landmark picked so far is the largest, so that the
+   * landmarks end up spread around the edges of the graph, where they give
+   * the best bounds. Picking each landmark needs the costs from the previous
+   * ones, so the forward searches run one after another, and the backward
+   * searches (half of the work) then run in parallel across landmarks.
+   *
+   * @param graph the graph to preprocess
+   * @param count the number of landmarks to select, at least 1
+   * @throws IllegalArgumentException if count is less than 1
+   */
+  public LandmarkIndex(ImmutableCsrGraph<?> graph, int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("At least one landmark is needed.");
+    int nodeCount = graph.getNodeCount();
+    int k = Math.min(count, nodeCount);
+    landmarks = new int[k];
+    fromLandmark = new double[nodeCount * k];
+    toLandmark = new double[nodeCount * k];
+    if (k == 0)
+      return;
+
+    // the cost from the closest landmark so far to each node
+    double[] closest = new double[nodeCount];
+    Arrays.fill(closest, Double.POSITIVE_INFINITY);
+    SearchSpace space = new SearchSpace(nodeCount, graph.heapArity);
+    double[] costs = new double[nodeCount];
+    int next = 0; // the first landmark is simply the node with id 0
+    for (int i = 0; i < k; i++) {
+      landmarks[i] = next;
+      graph.searchAll(space, next, false, costs);
+      for (int v = 0; v < nodeCount; v++) {
+        fromLandmark[v * k + i] = costs[v];
+        closest[v] = Math.min(closest[v], costs[v]);
+      }
+      // pick the reachable node farthest from every landmark so far; when
+      // some nodes can't be reached at all, start from one of those instead
+      next = -1;
+      for (int v = 0; v < nodeCount; v++) {
+        if (closest[v] == Double.POSITIVE_INFINITY) {
+          next = v;
+          break;
+        }
+        if (closest[v] > 0 && (next < 0 || closest[v] > closest[next]))
+          next = v;
+      }
+      if (next < 0)
+        next = (landmarks[i] + 1) % nodeCount; // every node is a landmark
+    }
+
+    // the backward searches are independent, so run them in parallel
+    IntStream.range(0, k).parallel().forEach(i -> {
+      double[] backwardCosts = new double[nodeCount];
+      graph.searchAll(new SearchSpace(nodeCount, graph.heapArity),
+          landmarks[i], true, backwardCosts);
+      for (int v = 0; v < nodeCount; v++)
+        toLandmark[v * k + i] = backwardCosts[v];
+    });
+  }
+
+  /**
+   * Returns the number of landmarks in this index.
+   *
+   * @return the number of landmarks
+   */
+  public int getLandmarkCount() {
+    return landmarks.length;
+  }
+
+  /**
+   * Returns the number of bytes used by the distance tables of this index.
+   *
+   * @return the size of the distance tables in bytes
+   */
+  public long getTableBytes() {
+    return 8L * (fromLandmark.length + toLandmark.length);
+  }
+
+  /**
+   * Computes a lower bound on the cost of any path from one node to another,
+   * from the triangle inequality over every landmark.
+   *
+   * @param fromId the id of the node to estimate from
+   * @param toId   the id of the destination node
+   * @return a lower bound on the cost of a path between those nodes, which is
+   *         infinite when the landmarks prove that no such path exists
+   */
+  public double estimate(int fromId, int toId) {
+    int k = landmarks.length;
+    int from = fromId * k;
+    int to = toId * k;
+    double best = 0.0;
+    for (int i = 0; i < k; i++) {
+      // cost(L, t) - cost(L, v), which is only a bound when L reaches v
+      double landmarkToFrom = fromLandmark[from + i];
+      if (landmarkToFrom != Double.POSITIVE_INFINITY)
+        best = Math.max(best, fromLandmark[to + i] - landmarkToFrom);
+      // cost(v, L) - cost(t, L), which is only a bound when t reaches L
+      double toToLandmark = toLandmark[to + i];
+      if (toToLandmark != Double.POSITIVE_INFINITY)
+        best = Math.max(best, toLandmark[from + i] - toToLandmark);
+    }
+    return best;
+  }
+}
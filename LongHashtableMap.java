@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * This map from primitive long keys to non-null values uses open addressing
+ * with linear probing, like ProbingHashtableMap, but keeps its keys in a
+ * long[] so that neither storing nor looking up a key boxes it. Lookups of
+ * missing keys return null instead of throwing, so that callers that expect
+ * misses (such as checking whether an edge exists) never pay for an
+ * exception. It is not a MapADT, since MapADT keys are objects.
+ *
+ * @param <ValueType> the type of the values
+ */
+public class LongHashtableMap<ValueType> {
+
+  // the table grows once more than this fraction of its slots are in use
+  protected static final double MAX_LOAD_FACTOR = 0.7;
+
+  // values[slot] is null for an empty slot
+  protected long[] keys;
+  protected Object[] values;
+  private int size = 0;
+
+  public LongHashtableMap() {
+    this(64);
+  }
+
+  public LongHashtableMap(int capacity) {
+    //checks to ensure the capacity held is correct
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than 0.");
+    }
+    //the capacity is rounded up to a power of two, so slots can be found with a mask
+    int tableLength = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    keys = new long[tableLength];
+    values = new Object[tableLength];
+  }
+
+  /**
+   * Computes the hash of a key. Keys that pack two ids into one long differ
+   * mostly in a few low bits of each half, so both halves are mixed (by
+   * multiplying with the golden ratio) before the low bits pick a slot.
+   *
+   * @param key any key
+   * @return the scrambled hash of key
+   */
+  protected static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Finds the slot holding key, or the empty slot that ends its probe
+   * sequence when key is not stored in this map.
+   *
+   * @param key the key to look for
+   * @return the slot containing key, or the empty slot where it would go
+   */
+  protected int findSlot(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    //probe until either the key or an empty slot is found
+    while (values[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Maps a key to a value, replacing the value it mapped to before.
+   *
+   * @param key   the key of the key,value pair
+   * @param value the value that key maps to
+   * @return the value that key mapped to before, or null if there was none
+   * @throws NullPointerException if value is null
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType put(long key, ValueType value) {
+    if (value == null) {
+      throw new NullPointerException("The value can't be null.");
+    }
+    int slot = findSlot(key);
+    ValueType previous = (ValueType) values[slot];
+    keys[slot] = key;
+    values[slot] = value;
+    if (previous == null) {
+      size++;
+      //doubles the capacity once the load factor is reached
+      if (size > keys.length * MAX_LOAD_FACTOR) {
+        resize(keys.length * 2);
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * Moves every entry into new arrays of the given length.
+   *
+   * @param tableLength the new number of slots, a power of two
+   */
+  protected void resize(int tableLength) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[tableLength];
+    values = new Object[tableLength];
+    int mask = tableLength - 1;
+    for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+      if (oldValues[oldSlot] != null) {
+        //place the entry in the first empty slot of its new probe sequence
+        int slot = hash(oldKeys[oldSlot]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[oldSlot];
+        values[slot] = oldValues[oldSlot];
+      }
+    }
+  }
+
+  /**
+   * Retrieves the value that a key maps to.
+   *
+   * @param key the key to look up
+   * @return the value that key maps to, or null if it is not stored in this
+   *         map
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType get(long key) {
+    return (ValueType) values[findSlot(key)];
+  }
+
+  /**
+   * Removes the mapping for a key from this map.
+   *
+   * @param key the key whose mapping to remove
+   * @return the value that the removed key mapped to, or null if it is not
+   *         stored in this map
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType remove(long key) {
+    int slot = findSlot(key);
+    ValueType removed = (ValueType) values[slot];
+    if (removed == null) {
+      return null;
+    }
+    //shift later entries of the probe sequence back into the hole, so that
+    //lookups never stop early at an empty slot
+    int mask = keys.length - 1;
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (values[next] != null) {
+      int home = hash(keys[next]) & mask;
+      //an entry may move into the hole unless its home slot lies after the hole
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    values[hole] = null;
+    size--;
+    return removed;
+  }
+
+  /**
+   * Removes all key,value pairs from this map.
+   */
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * Retrieves the number of keys stored in this map.
+   *
+   * @return the number of keys stored in this map
+   */
+  public int getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,205 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * This cache keeps the results of recent queries on a graph. It holds at most
+ * a fixed number of entries and evicts the least recently used one to make
+ * room for a new one. Entries can also expire after a time to live. Every
+ * lookup and insertion passes the current version of the graph (see
+ * GraphADT.getVersion()), and all entries are dropped as soon as the version
+ * differs from the one they were computed with, so a cached result is never
+ * out of date. Counters of hits, misses, evictions, expirations and
+ * invalidations show how well the cache works.
+ *
+ * All methods are synchronized, so one cache can be shared between threads.
+ *
+ * @param <KeyType>   the type of the query keys
+ * @param <ValueType> the type of the cached results
+ */
+public class LruCache<KeyType, ValueType> {
+
+  // a cached value along with the time it was stored
+  private static class Entry<ValueType> {
+    private final ValueType value;
+    private final long created;
+
+    private Entry(ValueType value, long created) {
+      this.value = value;
+      this.created = created;
+    }
+  }
+
+  private final int maxEntries;
+  private final long timeToLive; // in nanoseconds, or 0 for no limit
+  private final LongSupplier clock; // the current time in nanoseconds
+
+  // entries in access order, so the least recently used entry comes first
+  private final LinkedHashMap<KeyType, Entry<ValueType>> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  // the graph version that every entry was computed with
+  private long version = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long expirations = 0;
+  private long invalidations = 0;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxEntries     the most entries to keep, or 0 to cache nothing
+   * @param timeToLiveMillis the time after which an entry expires in
+   *                       milliseconds, or 0 for entries that never expire
+   * @throws IllegalArgumentException if either argument is negative
+   */
+  public LruCache(int maxEntries, long timeToLiveMillis) {
+    this(maxEntries, timeToLiveMillis, System::nanoTime);
+  }
+
+  /**
+   * Creates an empty cache that measures time with the provided clock.
+   *
+   * @param maxEntries       the most entries to keep, or 0 to cache nothing
+   * @param timeToLiveMillis the time after which an entry expires in
+   *                         milliseconds, or 0 for entries that never expire
+   * @param clock            returns the current time in nanoseconds
+   * @throws IllegalArgumentException if either number is negative
+   */
+  public LruCache(int maxEntries, long timeToLiveMillis, LongSupplier clock) {
+    if (maxEntries < 0 || timeToLiveMillis < 0)
+      throw new IllegalArgumentException("The size and time to live can't be negative.");
+    this.maxEntries = maxEntries;
+    this.timeToLive = timeToLiveMillis * 1_000_000;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the cached value for a key, if it was computed with the current
+   * version of the graph and has not expired.
+   *
+   * @param key     the key to look up
+   * @param version the current version of the graph
+   * @return the cached value, or null on a miss
+   */
+  public synchronized ValueType get(KeyType key, long version) {
+    checkVersion(version);
+    Entry<ValueType> entry = entries.get(key);
+    if (entry != null && timeToLive > 0 && clock.getAsLong() - entry.created >= timeToLive) {
+      entries.remove(key);
+      expirations++;
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Stores the value computed for a key, evicting the least recently used
+   * entry when the cache is full.
+   *
+   * @param key     the key of the value
+   * @param value   the value computed for key
+   * @param version the version of the graph that value was computed with
+   */
+  public synchronized void put(KeyType key, ValueType value, long version) {
+    checkVersion(version);
+    if (maxEntries == 0)
+      return;
+    entries.put(key, new Entry<>(value, clock.getAsLong()));
+    Iterator<Entry<ValueType>> leastRecent = entries.values().iterator();
+    while (entries.size() > maxEntries) {
+      leastRecent.next();
+      leastRecent.remove();
+      evictions++;
+    }
+  }
+
+  // drops every entry once the graph has a new version
+  private void checkVersion(long version) {
+    if (version != this.version) {
+      if (!entries.isEmpty())
+        invalidations++;
+      entries.clear();
+      this.version = version;
+    }
+  }
+
+  /**
+   * Removes every entry, for example when the cache's graph is replaced by
+   * another one.
+   */
+  public synchronized void clear() {
+    if (!entries.isEmpty())
+      invalidations++;
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of cached values
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of lookups that found a value.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that found no value (including expired
+   * ones).
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for new ones.
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of entries dropped because they outlived their time
+   * to live.
+   *
+   * @return the number of expirations
+   */
+  public synchronized long getExpirations() {
+    return expirations;
+  }
+
+  /**
+   * Returns the number of times every entry was dropped, because the graph
+   * changed or clear was called.
+   *
+   * @return the number of invalidations
+   */
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "size=" + entries.size() + " hits=" + hits + " misses=" + misses + " evictions="
+        + evictions + " expirations=" + expirations + " invalidations=" + invalidations;
+  }
+}
@@ -65,4 +65,14 @@ public interface MapADT<KeyType, ValueType> {
    */
   public List<KeyType> getKeys();
 
+  /**
+   * Checks whether this collection can be read while another thread changes
+   * it, so that callers don't need to lock around their reads.
+   * @return true if reads are safe during concurrent writes, and false by
+   *         default
+   */
+  public default boolean isThreadSafe() {
+    return false;
+  }
+
 }
@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class loads very large DOT files, such as city-scale exports with one
+ * statement per line, on several threads. The file is memory-mapped and cut
+ * at line breaks into chunks, the chunks are parsed at the same time on a
+ * fork-join pool into a buffer of nodes and edges each, and the buffers are
+ * then merged into the graph in one bulk step through a GraphBuilder.
+ *
+ * Cutting a file at line breaks only works when no statement, quoted id or
+ * comment spans several lines, and when the file holds a single graph. When
+ * a chunk can't be parsed, the whole file is parsed again in one piece, so
+ * files with another layout still load (just without the speedup), and
+ * syntax errors report the right line.
+ */
+public class ParallelDotLoader {
+
+  // chunks are at least this large, so small files are parsed in one piece
+  public static final long MIN_CHUNK_BYTES = 1 << 20;
+  // and at most this large, as a single mapping is limited to 2 GB
+  public static final long MAX_CHUNK_BYTES = 256 << 20;
+  // the number of chunks per thread, so threads that finish early can help
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /**
+   * The statements of one chunk, in the order they appear: each node
+   * statement with its coordinates, and each edge with its weight from the
+   * first of the weight attributes it has.
+   */
+  public static class Chunk implements DotParser.Handler {
+    private final String[] weightAttributes;
+
+    // nodes, with NaN coordinates when the statement has none
+    protected final List<String> nodes = new ArrayList<>();
+    protected double[] latitudes = new double[16];
+    protected double[] longitudes = new double[16];
+
+    // edges that have a weight
+    protected final List<String> preds = new ArrayList<>();
+    protected final List<String> succs = new ArrayList<>();
+    protected double[] weights = new double[16];
+
+    /**
+     * Creates an empty chunk.
+     *
+     * @param weightAttributes the edge attributes that can hold an edge's
+     *                         weight, in order of preference
+     */
+    public Chunk(String[] weightAttributes) {
+      this.weightAttributes = weightAttributes;
+    }
+
+    @Override
+    public void node(String id, DotParser.Attributes attributes) {
+      if (attributes.contains("lat") && attributes.contains("lon"))
+        addNode(id, attributes.getDouble("lat"), attributes.getDouble("lon"));
+      else
+        addNode(id, Double.NaN, Double.NaN);
+    }
+
+    @Override
+    public void edge(String from, String to, DotParser.Attributes attributes) {
+      for (String key : weightAttributes) {
+        if (attributes.contains(key)) {
+          if (preds.size() == weights.length)
+            weights = Arrays.copyOf(weights, weights.length * 2);
+          weights[preds.size()] = attributes.getDouble(key);
+          preds.add(from);
+          succs.add(to);
+          return;
+        }
+      }
+      // an edge without a weight still adds its nodes to the graph
+      addNode(from, Double.NaN, Double.NaN);
+      addNode(to, Double.NaN, Double.NaN);
+    }
+
+    private void addNode(String id, double latitude, double longitude) {
+      if (nodes.size() == latitudes.length) {
+        latitudes = Arrays.copyOf(latitudes, latitudes.length * 2);
+        longitudes = Arrays.copyOf(longitudes, longitudes.length * 2);
+      }
+      latitudes[nodes.size()] = latitude;
+      longitudes[nodes.size()] = longitude;
+      nodes.add(id);
+    }
+
+    /**
+     * Returns the number of edges with a weight in this chunk.
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+      return preds.size();
+    }
+
+    /**
+     * Adds the nodes and edges of this chunk to a graph builder, in the order
+     * they appear in the chunk.
+     *
+     * @param builder the builder to add to
+     */
+    public void addTo(GraphBuilder<String> builder) {
+      for (int i = 0; i < nodes.size(); i++) {
+        if (Double.isNaN(latitudes[i]))
+          builder.addNode(nodes.get(i));
+        else
+          builder.setNodeCoordinates(nodes.get(i), latitudes[i], longitudes[i]);
+      }
+      for (int i = 0; i < preds.size(); i++)
+        builder.addEdge(preds.get(i), succs.get(i), weights[i]);
+    }
+  }
+
+  /**
+   * Parses a DOT file on several threads and adds its nodes and edges to a
+   * graph.
+   *
+   * @param file             the DOT file (in UTF-8) to load
+   * @param threads          the number of threads to parse with
+   * @param weightAttributes the edge attributes that can hold an edge's
+   *                         weight, in order of preference
+   * @param graph            the graph to add the nodes and edges to
+   * @throws IOException if the file can't be read, or is not valid DOT
+   */
+  public static void load(Path file, int threads, String[] weightAttributes,
+      GraphADT<String, Double> graph) throws IOException {
+    GraphBuilder<String> builder = new GraphBuilder<>();
+    for (Chunk chunk : parse(file, threads, weightAttributes))
+      chunk.addTo(builder);
+    builder.addTo(graph);
+  }
+
+  /**
+   * Parses a DOT file on several threads, in chunks of a size that gives
+   * each thread a few chunks.
+   *
+   * @param file             the DOT file (in UTF-8) to parse
+   * @param threads          the number of threads to parse with
+   * @param weightAttributes the edge attributes that can hold an edge's
+   *                         weight, in order of preference
+   * @return the parsed chunks, in the order they appear in the file
+   * @throws IOException if the file can't be read, or is not valid DOT
+   */
+  public static List<Chunk> parse(Path file, int threads, String[] weightAttributes)
+      throws IOException {
+    long size;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      size = channel.size();
+    }
+    long chunkBytes = size / ((long) Math.max(threads, 1) * CHUNKS_PER_THREAD);
+    chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, chunkBytes));
+    return parse(file, threads, chunkBytes, weightAttributes);
+  }
+
+  /**
+   * Parses a DOT file on several threads, in chunks of about the provided
+   * size (each chunk is extended to the end of its last line).
+   *
+   * @param file             the DOT file (in UTF-8) to parse
+   * @param threads          the number of threads to parse with
+   * @param chunkBytes       the size of each chunk in bytes, up to
+   *                         MAX_CHUNK_BYTES
+   * @param weightAttributes the edge attributes that can hold an edge's
+   *                         weight, in order of preference
+   * @return the parsed chunks, in the order they appear in the file
+   * @throws IOException if the file can't be read, or is not valid DOT
+   * @throws IllegalArgumentException if threads or chunkBytes is out of range
+   */
+  public static List<Chunk> parse(Path file, int threads, long chunkBytes,
+      String[] weightAttributes) throws IOException {
+    if (threads < 1)
+      throw new IllegalArgumentException("There must be at least one thread.");
+    if (chunkBytes < 1 || chunkBytes > MAX_CHUNK_BYTES)
+      throw new IllegalArgumentException("The chunk size must be from 1 to " + MAX_CHUNK_BYTES);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+      long start = 0;
+      while (start < size) {
+        long end = lineEnd(channel, Math.min(start + chunkBytes, size), size);
+        long chunkStart = start;
+        tasks.add(pool.submit(() -> parseChunk(channel, chunkStart, end, weightAttributes)));
+        start = end;
+      }
+      List<Chunk> chunks = new ArrayList<>();
+      for (ForkJoinTask<Chunk> task : tasks)
+        chunks.add(task.get());
+      return chunks;
+    } catch (ExecutionException e) {
+      // fork-join tasks wrap checked exceptions in RuntimeExceptions
+      Throwable cause = e.getCause();
+      while (cause instanceof RuntimeException && cause.getCause() != null)
+        cause = cause.getCause();
+      if (!(cause instanceof IOException))
+        throw new IllegalStateException(cause);
+      // a statement may span a line break where the file was cut, so parse
+      // the file in one piece, which also reports errors with the right line
+      Chunk whole = new Chunk(weightAttributes);
+      DotParser.parse(file, whole);
+      return List.of(whole);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading " + file);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the position after the next line break at or after position, or
+   * size when there is none.
+   */
+  private static long lineEnd(FileChannel channel, long position, long size)
+      throws IOException {
+    if (position == 0)
+      return 0;
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    // a line break just before position already ends a line there
+    position--;
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0)
+        break;
+      for (int i = 0; i < read; i++)
+        if (buffer.get(i) == '\n')
+          return position + i + 1;
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Maps the bytes of one chunk, and parses them. As no byte of a multi-byte
+   * UTF-8 character is a line break, every chunk decodes on its own.
+   */
+  private static Chunk parseChunk(FileChannel channel, long start, long end,
+      String[] weightAttributes) throws IOException {
+    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+    Chunk chunk = new Chunk(weightAttributes);
+    new DotParser(chars.array(), chars.arrayOffset() + chars.position(),
+        chars.arrayOffset() + chars.limit()).parseChunk(chunk, start == 0);
+    return chunk;
+  }
+}
@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds everything known about one shortest path, so that a single
+ * search can answer every question about it: the data of the nodes along the
+ * path, the cost (walking time, for the campus graph) of each leg between two
+ * consecutive nodes, the cumulative cost from the start to each node, and the
+ * total cost of the path. Instances are immutable.
+ *
+ * @param <NodeType> the data type stored at each graph node
+ */
+public class PathResult<NodeType> {
+
+  private final List<NodeType> nodes;
+  private final List<Double> legCosts;
+  private final List<Double> cumulativeCosts;
+  private final double totalCost;
+
+  /**
+   * Creates the result for a path from its nodes and the cost of each leg.
+   * The cumulative costs and the total cost are the running sums of the leg
+   * costs, in order.
+   *
+   * @param nodes    the data of the nodes along the path, from start to end
+   * @param legCosts the cost of the edge between each two consecutive nodes,
+   *                 so one fewer than the number of nodes
+   * @throws IllegalArgumentException if nodes is empty, or if the number of
+   *                                  leg costs doesn't match the nodes
+   */
+  public PathResult(List<NodeType> nodes, List<Double> legCosts) {
+    if (nodes.isEmpty())
+      throw new IllegalArgumentException("A path has at least one node.");
+    if (legCosts.size() != nodes.size() - 1)
+      throw new IllegalArgumentException("A path needs one leg cost between each two nodes.");
+    this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+    this.legCosts = Collections.unmodifiableList(new ArrayList<>(legCosts));
+    List<Double> cumulative = new ArrayList<>(nodes.size());
+    double sum = 0.0;
+    cumulative.add(sum);
+    for (double legCost : legCosts) {
+      sum += legCost;
+      cumulative.add(sum);
+    }
+    this.cumulativeCosts = Collections.unmodifiableList(cumulative);
+    this.totalCost = sum;
+  }
+
+  /**
+   * Returns the data of the nodes along the path, starting with the start
+   * node and ending with the end node.
+   *
+   * @return an unmodifiable list of node data along the path
+   */
+  public List<NodeType> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the cost of each leg of the path: element i is the weight of the
+   * edge from node i to node i + 1.
+   *
+   * @return an unmodifiable list with one cost per edge along the path
+   */
+  public List<Double> getLegCosts() {
+    return legCosts;
+  }
+
+  /**
+   * Returns the cost of reaching each node along the path from the start:
+   * element i is the sum of the first i leg costs, so the first element is 0
+   * and the last is the total cost.
+   *
+   * @return an unmodifiable list with one cumulative cost per node
+   */
+  public List<Double> getCumulativeCosts() {
+    return cumulativeCosts;
+  }
+
+  /**
+   * Returns the total cost of the path (the sum over its edge weights).
+   *
+   * @return the cost of the whole path
+   */
+  public double getTotalCost() {
+    return totalCost;
+  }
+}
@@ -0,0 +1,258 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This MapADT implementation uses open addressing with linear probing instead
+ * of chaining. Keys, values and the hash code of each key are stored in three
+ * parallel arrays, so a lookup touches no objects other than the keys it
+ * compares, and hash codes are compared before calling equals. Resizing
+ * re-inserts every entry using its cached hash code, without calling
+ * hashCode() or equals() again. Removal shifts the following entries of the
+ * probe sequence back, so no tombstones are left behind.
+ */
+public class ProbingHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  // the table grows once more than this fraction of its slots are in use
+  protected static final double MAX_LOAD_FACTOR = 0.7;
+
+  // keys[slot] is null for an empty slot
+  protected Object[] keys;
+  protected Object[] values;
+  protected int[] hashes;
+  private int size;
+
+  public ProbingHashtableMap() {
+    this(64);
+  }
+
+  public ProbingHashtableMap(int capacity) {
+    //checks to ensure the capacity held is correct
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be greater than 0.");
+    }
+    //the capacity is rounded up to a power of two, so slots can be found with a mask
+    int tableLength = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    keys = new Object[tableLength];
+    values = new Object[tableLength];
+    hashes = new int[tableLength];
+    size = 0;
+  }
+
+  /**
+   * Computes the hash code stored for a key. Keys such as "n1", "n2", ...
+   * have consecutive hash codes, which would form long runs of full slots
+   * under linear probing, so the bits are scrambled (multiplied by the golden
+   * ratio and folded) before the low bits are used to pick a slot.
+   *
+   * @param key a non-null key
+   * @return the scrambled hash code of key
+   */
+  protected static int hash(Object key) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Finds the slot holding key, or the empty slot that ends its probe
+   * sequence when key is not stored in this collection.
+   *
+   * @param key  a non-null key
+   * @param hash the hash of key
+   * @return the slot containing key, or the empty slot where it would go
+   */
+  protected int findSlot(Object key, int hash) {
+    int mask = keys.length - 1;
+    int slot = hash & mask;
+    //probe until either the key or an empty slot is found
+    while (keys[slot] != null) {
+      if (hashes[slot] == hash && keys[slot].equals(key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Adds a new key,value pair/mapping to this collection.
+   * @param key the key of the key,value pair
+   * @param value the value that key maps to
+   * @throws IllegalArgumentException if key already maps to a value
+   * @throws NullPointerException if key is null
+   */
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    //checks to make sure the key isn't null or repeated
+    if (key == null) {
+      throw new NullPointerException("The key value can't be null.");
+    }
+    int hash = hash(key);
+    //a single probe finds either the existing key or the slot for the new one
+    int slot = findSlot(key, hash);
+    if (keys[slot] != null) {
+      throw new IllegalArgumentException("The key already exists in the program.");
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    hashes[slot] = hash;
+    size++;
+    //doubles the capacity once the load factor is reached
+    if (size > keys.length * MAX_LOAD_FACTOR) {
+      resize(keys.length * 2);
+    }
+  }
+
+  /**
+   * Moves every entry into new arrays of the given length. The cached hash
+   * codes are reused, and no duplicate checks are needed since every key is
+   * already known to be unique.
+   *
+   * @param tableLength the new number of slots, a power of two
+   */
+  protected void resize(int tableLength) {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new Object[tableLength];
+    values = new Object[tableLength];
+    hashes = new int[tableLength];
+    int mask = tableLength - 1;
+    for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+      if (oldKeys[oldSlot] != null) {
+        //place the entry in the first empty slot of its new probe sequence
+        int slot = oldHashes[oldSlot] & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[oldSlot];
+        values[slot] = oldValues[oldSlot];
+        hashes[slot] = oldHashes[oldSlot];
+      }
+    }
+  }
+
+  /**
+   * Checks whether a key maps to a value in this collection.
+   * @param key the key to check
+   * @return true if the key maps to a value, and false is the
+   *         key doesn't map to a value
+   */
+  @Override
+  public boolean containsKey(KeyType key) {
+    //checks to see if the key is null, and if so returns false
+    if (key == null) {
+      return false;
+    }
+    return keys[findSlot(key, hash(key))] != null;
+  }
+
+  /**
+   * Retrieves the specific value that a key maps to.
+   * @param key the key to look up
+   * @return the value that key maps to
+   * @throws NoSuchElementException when key is not stored in this
+   *         collection
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    //checks to see if the key is null, and if so returns exception
+    if (key == null) {
+      throw new NoSuchElementException("The key value can't be null.");
+    }
+    int slot = findSlot(key, hash(key));
+    if (keys[slot] == null) {
+      throw new NoSuchElementException("The key can't be found.");
+    }
+    return (ValueType) values[slot];
+  }
+
+  /**
+   * Remove the mapping for a key from this collection.
+   * @param key the key whose mapping to remove
+   * @return the value that the removed key mapped to
+   * @throws NoSuchElementException when key is not stored in this
+   *         collection
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    //checks to see if the key is null, and if so returns exception
+    if (key == null) {
+      throw new NoSuchElementException("The key value can't be null.");
+    }
+    int slot = findSlot(key, hash(key));
+    if (keys[slot] == null) {
+      throw new NoSuchElementException("The key can't be found.");
+    }
+    ValueType removed = (ValueType) values[slot];
+    //shift later entries of the probe sequence back into the hole, so that
+    //lookups never stop early at an empty slot
+    int mask = keys.length - 1;
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (keys[next] != null) {
+      int home = hashes[next] & mask;
+      //an entry may move into the hole unless its home slot lies after the hole
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        hashes[hole] = hashes[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[hole] = null;
+    values[hole] = null;
+    size--;
+    return removed;
+  }
+
+  /**
+   * Removes all key,value pairs from this collection.
+   */
+  @Override
+  public void clear() {
+    Arrays.fill(keys, null);
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * Retrieves the number of keys stored in this collection.
+   * @return the number of keys stored in this collection
+   */
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Retrieves this collection's capacity.
+   * @return the size of the underlying arrays for this collection
+   */
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Retrieves this collection's keys.
+   *
+   * @return a list of keys in the underlying arrays for this collection.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<KeyType> getKeys() {
+    LinkedList<KeyType> keyList = new LinkedList<>();
+    for (Object key : keys) {
+      if (key != null) {
+        keyList.add((KeyType) key);
+      }
+    }
+    return keyList;
+  }
+
+}
@@ -0,0 +1,47 @@
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Supplier;
+
+/**
+ * This class lends reusable scratch objects, such as the search spaces of a
+ * shortest path query, to any number of threads without locking. A thread
+ * takes an idle object (or a new one, when none is idle) for the length of
+ * one query and then returns it, so no two threads ever share an object, and
+ * the pool only ever holds as many objects as there were queries running at
+ * the same time. The most recently returned object is lent out first, since
+ * its arrays are the most likely to still be cached.
+ *
+ * @param <T> the type of the scratch objects
+ */
+public class ScratchPool<T> {
+
+  private final Supplier<T> factory;
+  private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<>();
+
+  /**
+   * Creates an empty pool.
+   *
+   * @param factory creates a new scratch object when none is idle
+   */
+  public ScratchPool(Supplier<T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Takes an idle scratch object out of the pool, or creates one.
+   *
+   * @return a scratch object that no other thread is using
+   */
+  public T acquire() {
+    T scratch = idle.pollFirst();
+    return scratch != null ? scratch : factory.get();
+  }
+
+  /**
+   * Returns a scratch object to the pool once the caller is done with it.
+   *
+   * @param scratch an object taken from this pool with acquire
+   */
+  public void release(T scratch) {
+    idle.offerFirst(scratch);
+  }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the per-node state of one direction of a shortest path
+ * search over nodes with dense int ids: the best known cost of every reached
+ * node, the neighbor it was reached from, and the frontier of nodes that are
+ * reached but not yet settled.
+ *
+ * The arrays are reused by every search. cost[id] and parent[id] are only
+ * valid while reachedStamp[id] == epoch, so starting a new search is O(1)
+ * and never clears or allocates anything.
+ */
+public class SearchSpace {
+
+  public final int[] reachedStamp;
+  public final double[] cost;
+  // the neighbor a node was reached from (its predecessor in a forward
+  // search, or its successor in a backward search), or -1 for the source
+  public final int[] parent;
+  public final IndexedDaryHeap frontier;
+  public int epoch = 0;
+  // the number of nodes settled by the current search
+  public int settledCount = 0;
+
+  /**
+   * Creates the state for searches over a fixed number of nodes.
+   *
+   * @param nodeCount the number of nodes, with ids 0 to nodeCount-1
+   * @param heapArity the arity of the frontier heap
+   */
+  public SearchSpace(int nodeCount, int heapArity) {
+    reachedStamp = new int[nodeCount];
+    cost = new double[nodeCount];
+    parent = new int[nodeCount];
+    frontier = new IndexedDaryHeap(heapArity, nodeCount);
+  }
+
+  /**
+   * Starts a new search from the provided source, which marks every other
+   * node as unreached in O(1). The stamps are only cleared when the epoch
+   * counter wraps around.
+   *
+   * @param sourceId the id of the node that the search starts from
+   */
+  public void begin(int sourceId) {
+    frontier.clear();
+    settledCount = 0;
+    epoch++;
+    if (epoch == 0) {
+      // stamps from 2^32 searches ago would look current again, so reset them
+      Arrays.fill(reachedStamp, 0);
+      epoch = 1;
+    }
+    relax(sourceId, 0.0, -1);
+  }
+
+  /**
+   * Checks whether the current search has reached a node.
+   *
+   * @param id the id of the node to check
+   * @return true if the node has a cost in the current search
+   */
+  public boolean isReached(int id) {
+    return reachedStamp[id] == epoch;
+  }
+
+  /**
+   * Checks whether the current search has settled a node, which means that
+   * its cost is final.
+   *
+   * @param id the id of the node to check
+   * @return true if the node was reached and removed from the frontier
+   */
+  public boolean isSettled(int id) {
+    return reachedStamp[id] == epoch && !frontier.contains(id);
+  }
+
+  /**
+   * Records that a node can be reached with the provided cost, unless it is
+   * already settled or was already reached at no greater cost.
+   *
+   * @param id       the id of the reached node
+   * @param newCost  the cost of reaching that node
+   * @param parentId the id of the neighbor the node is reached from
+   * @return true if the node's cost was lowered, or false otherwise
+   */
+  public boolean relax(int id, double newCost, int parentId) {
+    return relax(id, newCost, parentId, newCost);
+  }
+
+  /**
+   * Records that a node can be reached with the provided cost, and queues it
+   * with a separate priority (its cost plus an estimate of the remaining
+   * distance, for A* search), unless it is already settled or was already
+   * reached at no greater cost.
+   *
+   * @param id       the id of the reached node
+   * @param newCost  the cost of reaching that node
+   * @param parentId the id of the neighbor the node is reached from
+   * @param priority the key of the node within the frontier
+   * @return true if the node's cost was lowered, or false otherwise
+   */
+  public boolean relax(int id, double newCost, int parentId, double priority) {
+    if (reachedStamp[id] != epoch) {
+      // first time this node is reached
+      reachedStamp[id] = epoch;
+    } else if (!frontier.contains(id) || newCost >= cost[id]) {
+      // already settled, or already reached through a cheaper path
+      return false;
+    }
+    cost[id] = newCost;
+    parent[id] = parentId;
+    frontier.insertOrDecrease(id, priority);
+    return true;
+  }
+
+  /**
+   * Removes and settles the frontier node with the smallest key.
+   *
+   * @return the id of the settled node
+   */
+  public int settleNext() {
+    settledCount++;
+    return frontier.pollMin();
+  }
+}
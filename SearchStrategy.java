@@ -0,0 +1,20 @@
+/**
+ * The algorithms that a graph can use to answer point-to-point shortest path
+ * queries. Every strategy finds a path with the same (shortest) cost, but
+ * they differ in how many nodes they settle before finding it.
+ */
+public enum SearchStrategy {
+  // Dijkstra's algorithm, searching forward from the start node only
+  DIJKSTRA,
+  // Dijkstra's algorithm, alternating between a forward search from the start
+  // node and a backward search (over entering edges) from the end node
+  BIDIRECTIONAL,
+  // A* search, which settles nodes in order of their cost plus the walking
+  // time along a straight line to the end node at the fastest speed found on
+  // any edge; graphs without coordinates for every node use DIJKSTRA instead
+  ASTAR,
+  // A* search, with a lower bound on the remaining cost taken from the
+  // precomputed costs to and from a few landmark nodes (see LandmarkIndex);
+  // graphs without landmarks use DIJKSTRA instead
+  ALT
+}
@@ -0,0 +1,118 @@
+import java.util.NoSuchElementException;
+
+/**
+ * This class holds the complete shortest path tree of one source node within
+ * an ImmutableCsrGraph: the cost of the shortest path from the source to
+ * every node, and the node before it on that path. It is built by a single
+ * search that settles every reachable node, after which the path to any
+ * destination is found by walking the tree back from that destination, in
+ * time proportional to the length of the path and without any search.
+ *
+ * @param <NodeType> the data type stored at each graph node
+ */
+public class ShortestPathTree<NodeType> {
+
+  private final ImmutableCsrGraph<NodeType> graph;
+  private final int sourceId;
+  // costs[id] is the cost of the shortest path to node id, or infinity when
+  // it can't be reached, and parents[id] is the node before it on that path
+  // (-1 for the source and for unreachable nodes)
+  private final double[] costs;
+  private final int[] parents;
+
+  /**
+   * Creates a tree from the results of a search over graph.
+   *
+   * @param graph    the graph that was searched
+   * @param sourceId the id of the node the search started from
+   * @param costs    the cost of reaching every node from the source
+   * @param parents  the id of the node before every node on its path
+   */
+  ShortestPathTree(ImmutableCsrGraph<NodeType> graph, int sourceId, double[] costs,
+      int[] parents) {
+    this.graph = graph;
+    this.sourceId = sourceId;
+    this.costs = costs;
+    this.parents = parents;
+  }
+
+  /**
+   * Returns the number of bytes that the tree of a graph with nodeCount
+   * nodes takes up on the heap: 8 bytes per node for its cost and 4 for its
+   * parent, plus the headers of the objects.
+   *
+   * @param nodeCount the number of nodes in the graph
+   * @return the approximate size of one tree in bytes
+   */
+  public static long estimateBytes(int nodeCount) {
+    return 12L * nodeCount + 64;
+  }
+
+  /**
+   * Returns the number of bytes that this tree takes up on the heap.
+   *
+   * @return the approximate size of this tree in bytes
+   */
+  public long getMemoryBytes() {
+    return estimateBytes(costs.length);
+  }
+
+  /**
+   * Returns the data of the source node of this tree.
+   *
+   * @return the node that every path in this tree starts from
+   */
+  public NodeType getSource() {
+    return graph.nodeData[sourceId];
+  }
+
+  /**
+   * Checks whether the node containing the end data can be reached from the
+   * source.
+   *
+   * @param end the data item in the destination node
+   * @return true if there is a path to end, or false otherwise
+   * @throws NoSuchElementException if end is not in the graph
+   */
+  public boolean canReach(NodeType end) {
+    return costs[graph.idOf(end)] != Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns the cost of the shortest path from the source to the node
+   * containing the end data, in O(1).
+   *
+   * @param end the data item in the destination node
+   * @return the cost of the shortest path to end
+   * @throws NoSuchElementException if end is not in the graph, or if there
+   *                                is no path from the source to end
+   */
+  public double costTo(NodeType end) {
+    double cost = costs[graph.idOf(end)];
+    if (cost == Double.POSITIVE_INFINITY)
+      throw new NoSuchElementException("No path here exists");
+    return cost;
+  }
+
+  /**
+   * Returns the shortest path from the source to the node containing the end
+   * data, found by following the parent of each node back to the source.
+   *
+   * @param end the data item in the destination node
+   * @return the nodes and costs along this shortest path
+   * @throws NoSuchElementException if end is not in the graph, or if there
+   *                                is no path from the source to end
+   */
+  public PathResult<NodeType> pathTo(NodeType end) {
+    int endId = graph.idOf(end);
+    if (costs[endId] == Double.POSITIVE_INFINITY)
+      throw new NoSuchElementException("No path here exists");
+    int length = 0;
+    for (int id = endId; id >= 0; id = parents[id])
+      length++;
+    int[] path = new int[length];
+    for (int id = endId; id >= 0; id = parents[id])
+      path[--length] = id;
+    return graph.pathResult(path);
+  }
+}
@@ -2,10 +2,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.engine.config.DefaultJupiterConfiguration;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TeamTests {
@@ -86,4 +94,397 @@ public class TeamTests {
     assertTrue(closestLocations.size() <= 10);
   }
 
+  /**
+   * This test method will test that the cached results of the backend are not reused after the
+   * placeholder graph changes.
+   */
+  @Test
+  public void testPlaceholderChangesVersion() {
+    Graph_Placeholder testGraph = new Graph_Placeholder();
+    Backend backend = new Backend(testGraph);
+    long version = backend.getGraphVersion();
+    assertEquals(2, backend.getTenClosestDestinations("Union South").size());
+    assertEquals(List.of("Union South", "Computer Sciences and Statistics"),
+        backend.findLocationsOnShortestPath("Union South", "Computer Sciences and Statistics"));
+
+    //a new node changes the version, so the closest destinations include it
+    assertTrue(testGraph.insertNode("Memorial Union"));
+    assertTrue(backend.getGraphVersion() != version);
+    assertTrue(backend.getTenClosestDestinations("Union South").contains("Memorial Union"));
+    version = backend.getGraphVersion();
+    assertTrue(testGraph.removeNode("Memorial Union"));
+    assertTrue(backend.getGraphVersion() != version);
+    assertEquals(2, backend.getTenClosestDestinations("Union South").size());
+  }
+
+  /**
+   * This test method will test that loadGraphData() reads the quoted names and seconds= weights
+   * of campus.dot into a DijkstraGraph, and replaces the graph when it's called again.
+   */
+  @Test
+  public void testLoadCampusGraph() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph);
+    backend.loadGraphData("campus.dot");
+    assertEquals(160, graph.getNodeCount());
+    assertEquals(800, graph.getEdgeCount());
+    assertTrue(backend.getListOfAllLocations().contains("Memorial Union"));
+    assertEquals(List.of(105.8), backend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+
+    //loading the file again doesn't add anything
+    backend.loadGraphData("campus.dot");
+    assertEquals(160, graph.getNodeCount());
+    assertEquals(800, graph.getEdgeCount());
+  }
+
+  /**
+   * This test method will test that loading campus.dot on several threads, and parsing it in
+   * chunks of a few bytes, gives the same graph as loading it in one piece.
+   */
+  @Test
+  public void testParallelLoad() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph);
+    backend.loadGraphData("campus.dot", 4);
+    assertEquals(160, graph.getNodeCount());
+    assertEquals(800, graph.getEdgeCount());
+    assertEquals(List.of(105.8), backend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+
+    //tiny chunks cut the file after almost every line
+    String[] weights = {"seconds"};
+    List<ParallelDotLoader.Chunk> chunks =
+        ParallelDotLoader.parse(Path.of("campus.dot"), 4, 16, weights);
+    assertTrue(chunks.size() > 100);
+    GraphBuilder<String> builder = new GraphBuilder<>();
+    for (ParallelDotLoader.Chunk chunk : chunks)
+      chunk.addTo(builder);
+    DijkstraGraph<String, Double> chunked = builder.build();
+    assertEquals(160, chunked.getNodeCount());
+    assertEquals(800, chunked.getEdgeCount());
+    for (String from : graph.getAllNodes())
+      for (String to : graph.getAllNodes())
+        if (graph.containsEdge(from, to))
+          assertEquals(graph.getEdge(from, to), chunked.getEdge(from, to));
+  }
+
+  /**
+   * This test method will test that a statement spanning a line break where the file is cut
+   * still loads, by parsing the file in one piece instead.
+   */
+  @Test
+  public void testParallelLoadMultiLineStatement() throws IOException {
+    Path file = Files.createTempFile("graph", ".dot");
+    try {
+      Files.writeString(file, "digraph {\n  a -> b [\n    seconds=2\n  ];\n  b -> c [seconds=3];\n}\n");
+      List<ParallelDotLoader.Chunk> chunks =
+          ParallelDotLoader.parse(file, 2, 1, new String[] {"seconds"});
+      assertEquals(1, chunks.size());
+      assertEquals(2, chunks.get(0).getEdgeCount());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * This test method will test that a snapshot written after loading campus.dot reads back
+   * into the same graph, that damaged snapshots are rejected, and that loading a dot file
+   * afterwards goes back to the original graph.
+   */
+  @Test
+  public void testSnapshot() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph);
+    backend.loadGraphData("campus.dot");
+    Path file = Files.createTempFile("campus", ".csrg");
+    try {
+      backend.writeSnapshot(file.toString());
+      DijkstraGraph<String, Double> dotGraph = new DijkstraGraph<>();
+      Backend snapshotBackend = new Backend(dotGraph);
+      snapshotBackend.loadSnapshot(file.toString());
+      assertEquals(160, snapshotBackend.getListOfAllLocations().size());
+      assertEquals(List.of(105.8),
+          snapshotBackend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+      for (String start : List.of("Memorial Union", "Union South", "Science Hall"))
+        assertEquals(backend.getClosestDestinations(start, 20),
+            snapshotBackend.getClosestDestinations(start, 20));
+
+      //a query that was answered from the previous snapshot caches its result too late, but every
+      //snapshot has version 0, so only the number of loads tells the two apart
+      long stale = snapshotBackend.getGraphVersion();
+      snapshotBackend.loadSnapshot(file.toString());
+      snapshotBackend.getPathCache().put(Arrays.asList("Memorial Union", "Science Hall"),
+          new PathResult<>(List.of("Memorial Union", "Science Hall"), List.of(1.0)), stale);
+      assertEquals(List.of(105.8),
+          snapshotBackend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+      assertTrue(snapshotBackend.getPathCache().get(Arrays.asList("Memorial Union", "Science Hall"),
+          snapshotBackend.getGraphVersion()) != null);
+
+      //a single changed byte fails the checksum
+      byte[] bytes = Files.readAllBytes(file);
+      bytes[bytes.length / 2] ^= 1;
+      Files.write(file, bytes);
+      try {
+        snapshotBackend.loadSnapshot(file.toString());
+        fail("A damaged snapshot was loaded");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("Damaged"));
+      }
+
+      //loading a dot file replaces the snapshot again
+      snapshotBackend.loadGraphData("campus.dot");
+      assertEquals(800, dotGraph.getEdgeCount());
+      assertEquals(List.of(105.8),
+          snapshotBackend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * This test method will test that the backend answers repeated queries from its caches, drops
+   * cached results once the graph changes, and evicts the least recently used result when full.
+   */
+  @Test
+  public void testResultCache() throws IOException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph, 2, 0);
+    backend.loadGraphData("campus.dot");
+    List<String> locations = backend.getListOfAllLocations();
+    String start = "Memorial Union";
+    String end = locations.get(locations.size() - 1);
+
+    //the second query is answered by the cache with the same result
+    PathResult<String> path = backend.findShortestPath(start, end);
+    assertTrue(path.getNodes().size() > 2);
+    assertTrue(path == backend.findShortestPath(start, end));
+    assertEquals(1, backend.getPathCache().getHits());
+    assertEquals(1, backend.getPathCache().getMisses());
+
+    //a new edge changes the graph's version, so the path is searched for again
+    graph.insertEdge(start, end, 1.0);
+    assertEquals(List.of(start, end), backend.findLocationsOnShortestPath(start, end));
+    assertEquals(List.of(1.0), backend.findTimesOnShortestPath(start, end));
+    assertEquals(1, backend.getPathCache().getInvalidations());
+
+    //changing a returned list of closest destinations doesn't change the cached one
+    List<String> closest = backend.getClosestDestinations(start, 5);
+    closest.clear();
+    assertEquals(5, backend.getClosestDestinations(start, 5).size());
+    assertEquals(1, backend.getNearestCache().getHits());
+
+    //the cache holds two results, so a third evicts the least recently used one
+    backend.findShortestPath(start, locations.get(1));
+    backend.findShortestPath(start, end);
+    backend.findShortestPath(start, locations.get(2));
+    assertEquals(1, backend.getPathCache().getEvictions());
+    assertEquals(2, backend.getPathCache().size());
+    long misses = backend.getPathCache().getMisses();
+    backend.findShortestPath(start, end);
+    assertEquals(misses, backend.getPathCache().getMisses());
+    backend.findShortestPath(start, locations.get(1));
+    assertEquals(misses + 1, backend.getPathCache().getMisses());
+
+    //entries expire after their time to live
+    long[] now = {0};
+    LruCache<String, String> cache = new LruCache<>(10, 5, () -> now[0]);
+    cache.put("a", "b", 0);
+    now[0] = 4_000_000;
+    assertEquals("b", cache.get("a", 0));
+    now[0] = 5_000_000;
+    assertEquals(null, cache.get("a", 0));
+    assertEquals(1, cache.getExpirations());
+  }
+
+  /**
+   * This test method will test that the backend answers queries from an all-pairs index once
+   * campus.dot is loaded, and builds a new index in the background after the graph changes.
+   */
+  @Test
+  public void testAllPairsIndex() throws IOException, InterruptedException {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph, 0, 0);
+    backend.loadGraphData("campus.dot");
+    AllPairsIndex<String> index = backend.getAllPairsIndex();
+    assertTrue(index != null);
+    assertEquals(List.of(105.8), backend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+    assertEquals(new ArrayList<>(graph.nearestK("Memorial Union", 10).keySet()),
+        backend.getTenClosestDestinations("Memorial Union"));
+
+    //after a change, the graph is searched until the new index is built
+    graph.insertEdge("Memorial Union", "Union South", 1.0);
+    assertEquals(null, backend.getAllPairsIndex());
+    assertEquals(List.of("Memorial Union", "Union South"),
+        backend.findLocationsOnShortestPath("Memorial Union", "Union South"));
+    AllPairsIndex<String> rebuilt = backend.awaitAllPairsIndex();
+    assertTrue(rebuilt != null && rebuilt != index);
+    assertEquals(1.0, rebuilt.shortestPathCost("Memorial Union", "Union South"));
+    assertEquals(List.of("Union South"), backend.getClosestDestinations("Memorial Union", 1));
+
+    //graphs above the threshold are not indexed
+    backend.setAllPairsThreshold(100);
+    assertEquals(null, backend.awaitAllPairsIndex());
+    assertEquals(List.of(105.8), backend.findTimesOnShortestPath("Memorial Union", "Science Hall"));
+  }
+
+  /**
+   * This test method will test that findShortestPaths finds the same paths as findShortestPath
+   * for every pair, by searching the graph, by using an all-pairs index, and by asking a graph
+   * that has no snapshot, and that it hands over the results on the calling thread.
+   */
+  @Test
+  public void testBatchRouting() throws IOException, InterruptedException {
+    Backend backend = new Backend(new DijkstraGraph<>(), 0, 0);
+    backend.setAllPairsThreshold(0);
+    backend.setBatchThreads(3);
+    backend.loadGraphData("campus.dot");
+    List<String> locations = backend.getListOfAllLocations();
+    List<List<String>> pairs = new ArrayList<>();
+    for (int i = 0; i < 300; i++)
+      pairs.add(List.of(locations.get(i * 7 % 20), locations.get(i * 13 % locations.size())));
+    pairs.add(List.of("Memorial Union", "Memorial Union"));
+    pairs.add(List.of("Memorial Union", "Nowhere"));
+    pairs.add(List.of("Nowhere", "Memorial Union"));
+
+    for (int threshold : new int[] {0, Backend.DEFAULT_ALL_PAIRS_THRESHOLD}) {
+      backend.setAllPairsThreshold(threshold);
+      backend.awaitAllPairsIndex();
+      List<String> seen = new ArrayList<>();
+      Thread caller = Thread.currentThread();
+      List<PathResult<String>> paths = new ArrayList<>();
+      for (int i = 0; i < pairs.size(); i++)
+        paths.add(null);
+      backend.findShortestPaths(pairs, (i, path) -> {
+        assertTrue(Thread.currentThread() == caller);
+        seen.add(pairs.get(i).get(0) + i);
+        paths.set(i, path);
+      });
+      assertEquals(pairs.size(), seen.size());
+      List<PathResult<String>> ordered = backend.findShortestPaths(pairs);
+      for (int i = 0; i < pairs.size(); i++) {
+        List<String> pair = pairs.get(i);
+        PathResult<String> expected;
+        try {
+          expected = backend.findShortestPath(pair.get(0), pair.get(1));
+        } catch (NoSuchElementException e) {
+          expected = null;
+        }
+        if (expected == null) {
+          assertEquals(null, paths.get(i));
+          assertEquals(null, ordered.get(i));
+          continue;
+        }
+        assertEquals(expected.getTotalCost(), paths.get(i).getTotalCost(), 1e-9);
+        assertEquals(pair.get(0), paths.get(i).getNodes().get(0));
+        assertEquals(pair.get(1), paths.get(i).getNodes().get(paths.get(i).getNodes().size() - 1));
+        assertEquals(paths.get(i).getNodes(), ordered.get(i).getNodes());
+      }
+      assertEquals(null, paths.get(pairs.size() - 1));
+    }
+
+    //a graph that can't be turned into a snapshot is searched once per pair
+    Backend placeholder = new Backend(new Graph_Placeholder());
+    List<PathResult<String>> paths = placeholder.findShortestPaths(List.of(
+        List.of("Union South", "Atmospheric, Oceanic and Space Sciences"),
+        List.of("Nowhere", "Union South")));
+    assertEquals(List.of(1.0, 2.0), paths.get(0).getLegCosts());
+    assertEquals(null, paths.get(1));
+  }
+
+  /**
+   * This test method will test that queries never wait for the locks of the backend or of its
+   * graph, whether or not the graph has an all-pairs index.
+   */
+  @Test
+  public void testQueriesDoNotLock() throws Exception {
+    DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+    Backend backend = new Backend(graph, 0, 0);
+    backend.loadGraphData("campus.dot");
+    for (int threshold : new int[] {0, Backend.DEFAULT_ALL_PAIRS_THRESHOLD}) {
+      backend.setAllPairsThreshold(threshold);
+      backend.awaitAllPairsIndex();
+      //the first query after the threshold changes may request an index
+      backend.findShortestPath("Memorial Union", "Science Hall");
+      synchronized (backend) {
+        synchronized (graph) {
+          FutureTask<Double> query = new FutureTask<>(
+              () -> backend.findShortestPath("Memorial Union", "Science Hall").getTotalCost());
+          new Thread(query).start();
+          assertEquals(105.8, query.get(10, TimeUnit.SECONDS), 1e-9);
+          FutureTask<List<String>> closest =
+              new FutureTask<>(() -> backend.getClosestDestinations("Memorial Union", 3));
+          new Thread(closest).start();
+          assertEquals(3, closest.get(10, TimeUnit.SECONDS).size());
+          FutureTask<double[][]> matrix = new FutureTask<>(() -> backend.findTravelTimeMatrix(
+              List.of("Memorial Union"), List.of("Science Hall")));
+          new Thread(matrix).start();
+          assertEquals(105.8, matrix.get(10, TimeUnit.SECONDS)[0][0], 1e-9);
+        }
+      }
+    }
+  }
+
+  /**
+   * This test method will test that the travel time matrix of the backend has the cost of the
+   * shortest path between every source and target, with and without an all-pairs index.
+   */
+  @Test
+  public void testTravelTimeMatrix() throws IOException, InterruptedException {
+    Backend backend = new Backend(new DijkstraGraph<>(), 0, 0);
+    backend.setAllPairsThreshold(0);
+    backend.loadGraphData("campus.dot");
+    List<String> locations = backend.getListOfAllLocations();
+    List<String> sources = new ArrayList<>(locations.subList(0, 15));
+    List<String> targets = new ArrayList<>(locations.subList(10, 40));
+    sources.add(sources.get(0));
+
+    for (int threshold : new int[] {0, Backend.DEFAULT_ALL_PAIRS_THRESHOLD}) {
+      backend.setAllPairsThreshold(threshold);
+      backend.awaitAllPairsIndex();
+      double[][] matrix = backend.findTravelTimeMatrix(sources, targets);
+      assertEquals(sources.size(), matrix.length);
+      for (int i = 0; i < sources.size(); i++) {
+        assertEquals(targets.size(), matrix[i].length);
+        for (int j = 0; j < targets.size(); j++) {
+          double expected;
+          try {
+            expected = backend.findShortestPath(sources.get(i), targets.get(j)).getTotalCost();
+          } catch (NoSuchElementException e) {
+            expected = Double.POSITIVE_INFINITY;
+          }
+          assertEquals(expected, matrix[i][j], 1e-9);
+        }
+      }
+    }
+    assertThrows(NoSuchElementException.class,
+        () -> backend.findTravelTimeMatrix(List.of("Memorial Union"), List.of("Nowhere")));
+    assertEquals(0, backend.findTravelTimeMatrix(List.of(), locations).length);
+  }
+
+  /**
+   * This test method will test that DotParser handles quoted ids with escaped quotes, edge
+   * chains, comments, graph attributes and multiple attribute lists.
+   */
+  @Test
+  public void testDotParser() throws IOException {
+    List<String> statements = new ArrayList<>();
+    DotParser.parse("digraph \"g\" {\n"
+        + "  // a comment\n"
+        + "  rankdir=LR; node [shape=box]\n"
+        + "  a -> \"b \\\"c\\\"\" -> d [seconds=\"5.5\", color=red][weight=2];\n"
+        + "  /* another\n comment */ e [lat=43.07, lon=-89.40];\n"
+        + "}", new DotParser.Handler() {
+          @Override
+          public void node(String id, DotParser.Attributes attributes) {
+            statements.add(id + " " + attributes.getDouble("lat") + " " + attributes.getDouble("lon"));
+          }
+
+          @Override
+          public void edge(String from, String to, DotParser.Attributes attributes) {
+            statements.add(from + " -> " + to + " " + attributes.getDouble("seconds") + " "
+                + attributes.getString("color") + " " + attributes.size());
+          }
+        });
+    assertEquals(List.of("a -> b \"c\" 5.5 red 3", "b \"c\" -> d 5.5 red 3", "e 43.07 -89.4"),
+        statements);
+  }
 }